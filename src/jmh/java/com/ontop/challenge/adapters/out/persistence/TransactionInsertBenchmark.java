@@ -0,0 +1,132 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.infrastructure.persistence.UuidV7;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second when inserting PENDING transactions the way a batch chunk does: one DB transaction
+ * of {@value #CHUNK_SIZE} rows, written row by row, as a plain JDBC batch, or as a JDBC batch the driver
+ * rewrites into multi-row INSERTs (reWriteBatchedInserts, as configured in application.yaml).
+ * <p>
+ * Needs a PostgreSQL instance, by default the one from docker-compose:
+ * {@code ./gradlew jmh -PjmhIncludes=TransactionInsert}. Override with -Dbench.db.url, -Dbench.db.user
+ * and -Dbench.db.password. Rows go to bench_transactions, which has the columns of transactions and is
+ * dropped after each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransactionInsertBenchmark {
+
+    private static final int CHUNK_SIZE = 100;
+
+    private static final String INSERT = """
+            INSERT INTO bench_transactions (id, user_id, amount, fee, net_amount, currency, status,
+                                            destination_account_id, created_at, updated_at, version)
+            VALUES (?, ?, ?, ?, ?, ?, 'PENDING', ?, ?, ?, 0)
+            """;
+
+    @Param({"row", "batch", "rewritten"})
+    private String mode;
+
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", System.getProperty("bench.db.user", "postgres"));
+        properties.setProperty("password", System.getProperty("bench.db.password", "postgres"));
+        properties.setProperty("reWriteBatchedInserts", Boolean.toString("rewritten".equals(mode)));
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.db.url", "jdbc:postgresql://localhost:5433/ontop"), properties);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_transactions");
+            statement.execute("""
+                    CREATE TABLE bench_transactions (
+                        id UUID PRIMARY KEY,
+                        user_id BIGINT NOT NULL,
+                        amount NUMERIC(19, 2) NOT NULL,
+                        fee NUMERIC(19, 2) NOT NULL,
+                        net_amount NUMERIC(19, 2) NOT NULL,
+                        currency VARCHAR(3) NOT NULL,
+                        status VARCHAR(20) NOT NULL,
+                        provider_payment_id VARCHAR(255),
+                        wallet_tx_id BIGINT,
+                        failure_reason VARCHAR(500),
+                        destination_account_id UUID NOT NULL,
+                        created_at TIMESTAMP NOT NULL,
+                        updated_at TIMESTAMP NOT NULL,
+                        version BIGINT NOT NULL
+                    )""");
+            statement.execute("CREATE INDEX idx_bench_transactions_user_id ON bench_transactions(user_id)");
+            statement.execute("CREATE INDEX idx_bench_transactions_status ON bench_transactions(status)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement(INSERT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void insertChunk() throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            insert.setObject(1, UuidV7.generate());
+            insert.setLong(2, 1000L + i);
+            insert.setBigDecimal(3, new BigDecimal("1000.00"));
+            insert.setBigDecimal(4, new BigDecimal("100.00"));
+            insert.setBigDecimal(5, new BigDecimal("900.00"));
+            insert.setString(6, "USD");
+            insert.setObject(7, UUID.randomUUID());
+            insert.setTimestamp(8, now);
+            insert.setTimestamp(9, now);
+            if ("row".equals(mode)) {
+                insert.executeUpdate();
+            } else {
+                insert.addBatch();
+            }
+        }
+        if (!"row".equals(mode)) {
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_transactions");
+        }
+        connection.close();
+    }
+}
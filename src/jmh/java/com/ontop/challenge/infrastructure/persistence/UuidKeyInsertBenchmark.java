@@ -0,0 +1,148 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput into a table shaped like transactions once it already holds many rows, keyed by
+ * random version 4 UUIDs or by time-ordered version 7 ones. Scores are rows per second. The size of the
+ * primary key index, and the share of its pages read from disk rather than shared buffers, are printed
+ * after each trial.
+ * <p>
+ * Needs a PostgreSQL instance, by default the one from docker-compose:
+ * {@code ./gradlew jmh -PjmhIncludes=UuidKeyInsert}. Override with -Dbench.db.url, -Dbench.db.user and
+ * -Dbench.db.password. The tables are kept between runs, so the 10M-row preload is only paid once;
+ * drop bench_uuid_v4 and bench_uuid_v7 to start over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class UuidKeyInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"v4", "v7"})
+    private String keyType;
+
+    @Param({"10000000"})
+    private long preloadRows;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private Supplier<UUID> keys;
+    private String table;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.db.url", "jdbc:postgresql://localhost:5433/ontop?reWriteBatchedInserts=true"),
+                System.getProperty("bench.db.user", "postgres"),
+                System.getProperty("bench.db.password", "postgres"));
+        connection.setAutoCommit(false);
+        keys = "v7".equals(keyType) ? UuidV7::generate : UUID::randomUUID;
+        table = "bench_uuid_" + keyType;
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %s (
+                        id UUID PRIMARY KEY,
+                        user_id BIGINT NOT NULL,
+                        amount NUMERIC(19, 2) NOT NULL,
+                        created_at TIMESTAMP NOT NULL DEFAULT now()
+                    )""".formatted(table));
+            connection.commit();
+        }
+        insert = connection.prepareStatement("INSERT INTO " + table + " (id, user_id, amount) VALUES (?, ?, ?)");
+
+        long existing = count();
+        for (long loaded = existing; loaded < preloadRows; loaded += BATCH_SIZE) {
+            insertBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (existing < preloadRows) {
+                connection.setAutoCommit(true);
+                statement.execute("VACUUM ANALYZE " + table);
+                connection.setAutoCommit(false);
+            }
+            // Only the measured inserts count towards the buffer hit ratio
+            statement.execute("SELECT pg_stat_reset_single_table_counters('" + table + "_pkey'::regclass)");
+            connection.commit();
+        }
+        System.out.printf("%n%s: %,d rows before measuring%n", table, count());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertRows() throws SQLException {
+        insertBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet stats = statement.executeQuery("""
+                     SELECT pg_relation_size('%1$s_pkey') AS index_bytes,
+                            (SELECT count(*) FROM %1$s) AS row_count,
+                            idx_blks_read, idx_blks_hit
+                     FROM pg_statio_user_indexes WHERE indexrelname = '%1$s_pkey'
+                     """.formatted(table))) {
+            if (stats.next()) {
+                long indexBytes = stats.getLong("index_bytes");
+                long rows = stats.getLong("row_count");
+                long read = stats.getLong("idx_blks_read");
+                long hit = stats.getLong("idx_blks_hit");
+                System.out.printf("%n%s: %,d rows, primary key %,d MB (%.1f bytes per row), %.2f%% of index pages read from disk%n",
+                        table, rows, indexBytes / (1024 * 1024), (double) indexBytes / rows,
+                        read + hit == 0 ? 0.0 : 100.0 * read / (read + hit));
+            }
+        }
+        connection.close();
+    }
+
+    private void insertBatch() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setObject(1, keys.get());
+            insert.setLong(2, random.nextLong(1, 100_000));
+            insert.setBigDecimal(3, BigDecimal.valueOf(random.nextLong(1, 1_000_000), 2));
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+
+    private long count() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
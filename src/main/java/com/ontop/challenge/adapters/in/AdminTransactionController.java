@@ -0,0 +1,65 @@
+package com.ontop.challenge.adapters.in;
+
+import com.ontop.challenge.application.service.TransactionExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/v1/admin/transactions")
+@Slf4j
+public class AdminTransactionController {
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final String CSV_CONTENT_TYPE = "text/csv";
+
+    private final TransactionExportService exportService;
+
+    public AdminTransactionController(TransactionExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Export every transaction created in [from, to), for reconciliation. Rows are written to the
+     * response as they are read, so the export is not held in memory whatever its size. The request
+     * thread stays busy until the last row is written, which avoids the async request timeout.
+     *
+     * @param from inclusive lower bound on the creation time, ISO-8601
+     * @param to exclusive upper bound on the creation time, ISO-8601
+     * @param format ndjson (default) or csv
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportTransactions(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+
+        // Checked before the first byte is written, while a 400 can still be returned
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.parse(format);
+        exportService.validateRange(from, to);
+
+        log.info("Transaction export requested, from: {}, to: {}, format: {}", from, to, exportFormat);
+
+        boolean csv = exportFormat == TransactionExportService.Format.CSV;
+        response.setContentType(csv ? CSV_CONTENT_TYPE : NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(csv ? "transactions.csv" : "transactions.ndjson")
+                .build()
+                .toString());
+
+        exportService.export(from, to, exportFormat, response.getOutputStream());
+    }
+}
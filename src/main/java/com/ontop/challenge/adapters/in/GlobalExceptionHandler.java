@@ -4,7 +4,10 @@ import com.ontop.challenge.adapters.in.dto.ErrorResponse;
 import com.ontop.challenge.application.exception.ExternalServiceException;
 import com.ontop.challenge.application.exception.IdempotentConflictException;
 import com.ontop.challenge.application.exception.InsufficientFundsException;
+import com.ontop.challenge.application.exception.ServiceOverloadedException;
+import com.ontop.challenge.application.exception.WithdrawalNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -51,6 +54,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(error);
     }
 
+    /**
+     * Handle ServiceOverloadedException - 503 Service Unavailable
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloaded(ServiceOverloadedException ex) {
+        ErrorResponse error = ErrorResponse.builder()
+                .code("SERVICE_OVERLOADED")
+                .message(ex.getMessage())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(error);
+    }
+
     /**
      * Handle IdempotentConflictException - 409 Conflict
      */
@@ -66,6 +84,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
     }
 
+    /**
+     * Handle WithdrawalNotFoundException - 404 Not Found
+     */
+    @ExceptionHandler(WithdrawalNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleWithdrawalNotFound(WithdrawalNotFoundException ex) {
+        log.warn("Withdrawal not found: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .code("NOT_FOUND")
+                .message(ex.getMessage())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+
     /**
      * Handle validation errors - 400 Bad Request
      */
@@ -1,39 +1,70 @@
 package com.ontop.challenge.adapters.in;
 
-import com.ontop.challenge.adapters.in.dto.EventMessage;
+import com.ontop.challenge.adapters.in.dto.BatchWithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.BatchWithdrawalResponse;
+import com.ontop.challenge.adapters.in.dto.DailyWithdrawalTotalResponse;
 import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalPageResponse;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
-import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.exception.WithdrawalNotFoundException;
+import com.ontop.challenge.application.service.BatchWithdrawalService;
 import com.ontop.challenge.application.service.IdempotencyService;
-import com.ontop.challenge.application.service.WithdrawService;
-import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.application.service.RequestFingerprint;
+import com.ontop.challenge.application.service.WithdrawalAdmissionLimiter;
+import com.ontop.challenge.application.service.WithdrawalHistoryService;
+import com.ontop.challenge.application.service.WithdrawalRollupService;
+import com.ontop.challenge.application.service.WithdrawalStatusService;
+import com.ontop.challenge.application.service.WithdrawalSubmissionService;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/withdrawals")
 @Slf4j
 public class WithdrawalController {
 
-    private final ApplicationEventPublisher applicationEventPublisher;
-    private final WithdrawService withdrawService;
+    private final WithdrawalSubmissionService submissionService;
     private final IdempotencyService idempotencyService;
-    private final TransactionMapper mapper;
+    private final BatchWithdrawalService batchWithdrawalService;
+    private final WithdrawalStatusService withdrawalStatusService;
+    private final WithdrawalHistoryService withdrawalHistoryService;
+    private final WithdrawalRollupService withdrawalRollupService;
+    private final WithdrawalAdmissionLimiter admissionLimiter;
+    private final WithdrawalConfig config;
 
-    public WithdrawalController(ApplicationEventPublisher applicationEventPublisher, WithdrawService withdrawService,
-                                IdempotencyService idempotencyService, TransactionMapper mapper) {
-        this.applicationEventPublisher = applicationEventPublisher;
-        this.withdrawService = withdrawService;
+    public WithdrawalController(WithdrawalSubmissionService submissionService,
+                                IdempotencyService idempotencyService,
+                                BatchWithdrawalService batchWithdrawalService,
+                                WithdrawalStatusService withdrawalStatusService,
+                                WithdrawalHistoryService withdrawalHistoryService,
+                                WithdrawalRollupService withdrawalRollupService,
+                                WithdrawalAdmissionLimiter admissionLimiter,
+                                WithdrawalConfig config) {
+        this.submissionService = submissionService;
         this.idempotencyService = idempotencyService;
-        this.mapper = mapper;
+        this.batchWithdrawalService = batchWithdrawalService;
+        this.withdrawalStatusService = withdrawalStatusService;
+        this.withdrawalHistoryService = withdrawalHistoryService;
+        this.withdrawalRollupService = withdrawalRollupService;
+        this.admissionLimiter = admissionLimiter;
+        this.config = config;
     }
 
     /**
@@ -56,15 +87,162 @@ public class WithdrawalController {
 
         Optional<WithdrawalResponse> cachedResponse = idempotencyService.getResponse(idempotencyKey);
         if (cachedResponse.isPresent()) {
+            // A replay must carry the same body as the request that created the response
+            RequestFingerprint.verify(req, cachedResponse.get());
             log.info("Returning cached response for idempotency key: {}", idempotencyKey);
-            return ResponseEntity.status(HttpStatus.CREATED).body(cachedResponse.get());
+            return ResponseEntity.status(statusOf(cachedResponse.get())).body(cachedResponse.get());
         }
 
-        Transaction response = withdrawService.createInitialTransaction(req);
-        EventMessage message = EventMessage.builder().req(req).transaction(response).build();
-        applicationEventPublisher.publishEvent(message);
+        // Sheds with 503 before the PENDING row is written when the limit is reached
+        try (WithdrawalAdmissionLimiter.Permit permit = admissionLimiter.acquire()) {
+            // The outbox entry is committed with the PENDING row, WithdrawalOutboxDispatcher picks it up.
+            // Concurrent requests with the same key get this submission's response instead of creating another
+            WithdrawalResponse response = submissionService.submit(req);
 
-        return ResponseEntity.status(HttpStatus.ACCEPTED).body(mapper.transactionToWithdrawalResponse(response));
+            return ResponseEntity.status(statusOf(response)).body(response);
+        }
+    }
+
+    /**
+     * Create a batch of withdrawals
+     *
+     * @param req batch request, every item carries its own idempotency_key
+     * @return one result per item, in request order
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<BatchWithdrawalResponse> withdrawBatch(@RequestBody @Valid BatchWithdrawRequest req) {
+        log.info("Batch withdrawal request with {} items", req.getWithdrawals().size());
+
+        // Every item may become a PENDING row, so the batch weighs one permit per item, up to its share of the limit
+        try (WithdrawalAdmissionLimiter.Permit permit = admissionLimiter.acquire(req.getWithdrawals().size())) {
+            BatchWithdrawalResponse response = batchWithdrawalService.submit(req.getWithdrawals());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        }
+    }
+
+    /**
+     * List a user's withdrawals, newest first
+     *
+     * @param userId user whose withdrawals are listed
+     * @param cursor nextCursor of the previous page, omitted for the first page
+     * @param limit page size, capped by configuration
+     * @return one page of withdrawals and the cursor of the next one
+     */
+    @GetMapping(params = "userId")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<WithdrawalPageResponse> listWithdrawals(
+            @RequestParam("userId") Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(withdrawalHistoryService.getHistory(userId, cursor, limit));
     }
-}
 
+    /**
+     * Daily totals of a user's finished withdrawals
+     *
+     * @param userId user whose totals are returned
+     * @param from first day, inclusive, ISO date
+     * @param to last day, inclusive, ISO date
+     * @return totals per day, currency and final status, days without withdrawals are absent
+     */
+    @GetMapping("/daily-totals")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<List<DailyWithdrawalTotalResponse>> getDailyTotals(
+            @RequestParam("userId") Long userId,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(withdrawalRollupService.getDailyTotals(userId, from, to));
+    }
+
+    /**
+     * Get the current state of a withdrawal
+     *
+     * @param id transaction id
+     * @return withdrawal response
+     */
+    @GetMapping(value = "/{id}", params = "!waitSeconds")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<WithdrawalResponse> getWithdrawal(@PathVariable UUID id) {
+        WithdrawalResponse response = withdrawalStatusService.getWithdrawal(id)
+                .orElseThrow(() -> new WithdrawalNotFoundException(id));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Long-poll variant of {@link #getWithdrawal(UUID)}: the request is held open until the
+     * withdrawal is COMPLETED or FAILED, or until the wait elapses
+     *
+     * @param id transaction id
+     * @param waitSeconds how long to wait for the final state, capped by configuration
+     * @return withdrawal response
+     */
+    @GetMapping(value = "/{id}", params = "waitSeconds")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public DeferredResult<ResponseEntity<WithdrawalResponse>> awaitWithdrawal(
+            @PathVariable UUID id,
+            @RequestParam("waitSeconds") int waitSeconds) {
+
+        Duration wait = capWait(Duration.ofSeconds(Math.max(waitSeconds, 0)));
+        // Outlives the wait, so the latest state is always returned before the container times out
+        DeferredResult<ResponseEntity<WithdrawalResponse>> result = new DeferredResult<>(wait.plusSeconds(5).toMillis());
+
+        withdrawalStatusService.awaitTerminal(id, wait)
+                .orElseThrow(() -> new WithdrawalNotFoundException(id))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        result.setErrorResult(e);
+                    } else {
+                        result.setResult(ResponseEntity.ok(response));
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Stream the outcome of a withdrawal as Server-Sent Events. A single "status" event is sent
+     * once the withdrawal is COMPLETED or FAILED, or with the latest state when the wait elapses
+     *
+     * @param id transaction id
+     * @return event stream
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public SseEmitter withdrawalEvents(@PathVariable UUID id) {
+        Duration wait = config.getStatusMaxWait();
+        SseEmitter emitter = new SseEmitter(wait.plusSeconds(5).toMillis());
+
+        withdrawalStatusService.awaitTerminal(id, wait)
+                .orElseThrow(() -> new WithdrawalNotFoundException(id))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                    try {
+                        emitter.send(SseEmitter.event()
+                                .name("status")
+                                .data(response, MediaType.APPLICATION_JSON));
+                        emitter.complete();
+                    } catch (IOException ex) {
+                        log.debug("Client disconnected from withdrawal events, transactionId: {}", id);
+                        emitter.completeWithError(ex);
+                    }
+                });
+        return emitter;
+    }
+
+    /**
+     * 201 for a finished withdrawal, 202 while it is still being processed
+     */
+    private HttpStatus statusOf(WithdrawalResponse response) {
+        return response.getStatus() == TransactionStatus.PENDING || response.getStatus() == TransactionStatus.PROCESSING
+                ? HttpStatus.ACCEPTED
+                : HttpStatus.CREATED;
+    }
+
+    private Duration capWait(Duration requested) {
+        Duration max = config.getStatusMaxWait();
+        return requested.compareTo(max) > 0 ? max : requested;
+    }
+}
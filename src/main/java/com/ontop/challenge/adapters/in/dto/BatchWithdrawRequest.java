@@ -0,0 +1,24 @@
+package com.ontop.challenge.adapters.in.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch withdrawal requests, every item carries its own idempotency key
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchWithdrawRequest {
+
+    @NotEmpty(message = "At least one withdrawal is required")
+    @Valid
+    private List<WithdrawRequest> withdrawals;
+}
@@ -0,0 +1,49 @@
+package com.ontop.challenge.adapters.in.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch withdrawal responses, one result per request item in the same order
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchWithdrawalResponse {
+
+    private int accepted;
+    private int rejected;
+    private List<ItemResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private String idempotencyKey;
+        private Outcome outcome;
+        private WithdrawalResponse withdrawal;
+        private ErrorResponse error;
+    }
+
+    public enum Outcome {
+        /**
+         * PENDING transaction created, processing continues in the background
+         */
+        ACCEPTED,
+        /**
+         * Idempotency key already processed, the cached response is returned
+         */
+        CACHED,
+        /**
+         * Item rejected, see the error
+         */
+        REJECTED
+    }
+}
@@ -0,0 +1,28 @@
+package com.ontop.challenge.adapters.in.dto;
+
+import com.ontop.challenge.domain.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO for the totals of a user's finished withdrawals on one day, in one currency and final status
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyWithdrawalTotalResponse {
+
+    private LocalDate day;
+    private String currency;
+    private TransactionStatus status;
+    private long count;
+    private BigDecimal totalAmount;
+    private BigDecimal totalFee;
+    private BigDecimal totalNetAmount;
+}
@@ -6,11 +6,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class EventMessage {
+    private UUID outboxId;
+    /**
+     * Number of times the outbox entry was claimed, this dispatch included
+     */
+    private int attempts;
     private WithdrawRequest req;
     private Transaction transaction;
 }
@@ -0,0 +1,25 @@
+package com.ontop.challenge.adapters.in.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a page of a user's withdrawals, newest first
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WithdrawalPageResponse {
+
+    private List<WithdrawalResponse> withdrawals;
+
+    /**
+     * Opaque cursor of the next page, null on the last page
+     */
+    private String nextCursor;
+}
@@ -1,5 +1,6 @@
 package com.ontop.challenge.adapters.in.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ontop.challenge.domain.TransactionStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -27,5 +28,12 @@ public class WithdrawalResponse implements Serializable {
     private BigDecimal netAmount;
     private String currency;
     private Instant createdAt;
+
+    /**
+     * Fingerprint of the request this response answers, see RequestFingerprint. Only stored
+     * with the cached copy, never returned to clients.
+     */
+    @JsonIgnore
+    private Long requestFingerprint;
 }
 
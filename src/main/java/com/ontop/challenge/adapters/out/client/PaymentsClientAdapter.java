@@ -13,6 +13,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Arrays;
+import java.util.List;
+
 @Service
 @Slf4j
 public class PaymentsClientAdapter implements PaymentsClientPort {
@@ -69,6 +72,53 @@ public class PaymentsClientAdapter implements PaymentsClientPort {
         }
     }
 
+    @Override
+    @Retry(name = "paymentsService", fallbackMethod = "createPaymentsFallback")
+    @CircuitBreaker(name = "paymentsService", fallbackMethod = "createPaymentsFallback")
+    public List<PaymentResponse> createPayments(List<PaymentRequest> requests) {
+        log.info("Creating batch of {} payments", requests.size());
+
+        try {
+            String url = paymentsBaseUrl + "/payments/batch";
+
+            ResponseEntity<PaymentResponse[]> response = restTemplate.postForEntity(
+                    url,
+                    requests,
+                    PaymentResponse[].class
+            );
+
+            if (response.getBody() != null && response.getBody().length == requests.size()) {
+                log.info("Batch of {} payments created successfully", requests.size());
+                return Arrays.asList(response.getBody());
+            }
+
+            log.error("Unexpected batch response from payment provider, expected {} payments", requests.size());
+            throw new ExternalServiceException("Incomplete batch response from payment provider");
+
+        } catch (HttpServerErrorException e) {
+            log.error("Payment provider returned 5xx error for batch, status: {}, message: {}",
+                    e.getStatusCode(), e.getMessage(), e);
+            throw new ExternalServiceException(
+                    "Payment provider server error: " + e.getStatusCode() + " - " + e.getMessage(), e);
+
+        } catch (ExternalServiceException e) {
+            throw e;
+
+        } catch (Exception e) {
+            log.error("Unexpected error creating payment batch: {}", e.getMessage(), e);
+            throw new ExternalServiceException("Failed to create payment batch", e);
+        }
+    }
+
+    /**
+     * Fallback method for createPayments when circuit is open or retries exhausted
+     */
+    private List<PaymentResponse> createPaymentsFallback(List<PaymentRequest> requests, Exception e) {
+        log.error("Fallback triggered for createPayments, batch size: {}, error: {}",
+                requests.size(), e.getMessage());
+        throw new ExternalServiceException("Payment service is currently unavailable. Please try again later.", e);
+    }
+
     /**
      * Fallback method for createPayment when circuit is open or retries exhausted
      */
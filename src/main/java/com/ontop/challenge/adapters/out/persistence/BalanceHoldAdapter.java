@@ -0,0 +1,89 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.adapters.out.persistence.entity.JpaBalanceHoldEntity;
+import com.ontop.challenge.application.port.out.BalanceHoldPort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Adapter implementing BalanceHoldPort on top of the balance_holds table.
+ * Per-user serialization uses a PostgreSQL advisory lock, so concurrent withdrawals
+ * of the same user cannot both pass the funds check.
+ */
+@Component
+public class BalanceHoldAdapter implements BalanceHoldPort {
+
+    private final JpaBalanceHoldRepository holdRepository;
+
+    public BalanceHoldAdapter(JpaBalanceHoldRepository holdRepository) {
+        this.holdRepository = holdRepository;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal lockAndSumActiveHolds(Long userId, Instant balanceReadAt) {
+        holdRepository.lockUser(userId);
+        return holdRepository.sumAmount(userId, JpaBalanceHoldEntity.Status.ACTIVE, Instant.now(),
+                JpaBalanceHoldEntity.Status.DEBITED, balanceReadAt);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, BigDecimal> lockAndSumActiveHolds(Collection<Long> userIds, Instant balanceReadAt) {
+        TreeSet<Long> orderedUserIds = new TreeSet<>(userIds);
+        orderedUserIds.forEach(holdRepository::lockUser);
+
+        Map<Long, BigDecimal> held = new HashMap<>();
+        orderedUserIds.forEach(userId -> held.put(userId, BigDecimal.ZERO));
+        for (Object[] row : holdRepository.sumAmountByUser(orderedUserIds, JpaBalanceHoldEntity.Status.ACTIVE,
+                Instant.now(), JpaBalanceHoldEntity.Status.DEBITED, balanceReadAt)) {
+            held.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        return held;
+    }
+
+    @Override
+    public void hold(UUID transactionId, Long userId, BigDecimal amount, Instant expiresAt) {
+        JpaBalanceHoldEntity entity = JpaBalanceHoldEntity.builder()
+                .transactionId(transactionId)
+                .userId(userId)
+                .amount(amount)
+                .status(JpaBalanceHoldEntity.Status.ACTIVE)
+                .expiresAt(expiresAt)
+                .build();
+        holdRepository.save(entity);
+    }
+
+    @Override
+    public boolean hasActiveHold(UUID transactionId) {
+        return holdRepository.existsByTransactionIdAndStatusAndExpiresAtAfter(
+                transactionId, JpaBalanceHoldEntity.Status.ACTIVE, Instant.now());
+    }
+
+    @Override
+    @Transactional
+    public void release(UUID transactionId, Long userId) {
+        holdRepository.lockUser(userId);
+        holdRepository.release(transactionId,
+                JpaBalanceHoldEntity.Status.ACTIVE, JpaBalanceHoldEntity.Status.RELEASED, Instant.now());
+    }
+
+    @Override
+    @Transactional
+    public void markDebited(UUID transactionId, Long userId) {
+        // Same lock as the funds check: a check either sees the hold ACTIVE or sees when it was debited,
+        // and counts it against any balance read before that
+        holdRepository.lockUser(userId);
+        holdRepository.release(transactionId,
+                JpaBalanceHoldEntity.Status.ACTIVE, JpaBalanceHoldEntity.Status.DEBITED, Instant.now());
+    }
+}
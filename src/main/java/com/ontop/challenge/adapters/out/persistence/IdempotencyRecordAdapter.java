@@ -0,0 +1,111 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.port.out.IdempotencyRecordPort;
+import com.ontop.challenge.infrastructure.redis.WithdrawalResponseCodec;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Adapter implementing IdempotencyRecordPort on top of the idempotency_records table.
+ * Responses are stored in the same compact binary format as the Redis copy. Plain JDBC is used
+ * because the table is keyed by a byte array, which JPA identifiers handle poorly.
+ */
+@Component
+public class IdempotencyRecordAdapter implements IdempotencyRecordPort {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    // A final response is never replaced, neither by an in-flight one nor by another final one
+    private static final String UPSERT = """
+            INSERT INTO idempotency_records (key_hash, status, response, updated_at, expires_at)
+            VALUES (:keyHash, :status, :response, :now, :expiresAt)
+            ON CONFLICT (key_hash) DO UPDATE
+            SET status = EXCLUDED.status, response = EXCLUDED.response,
+                updated_at = EXCLUDED.updated_at, expires_at = EXCLUDED.expires_at
+            WHERE idempotency_records.status NOT IN ('COMPLETED', 'FAILED')
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate streamingJdbc;
+    private final WithdrawalResponseCodec codec = new WithdrawalResponseCodec();
+
+    public IdempotencyRecordAdapter(DataSource dataSource) {
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingJdbc = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    @Override
+    public Optional<WithdrawalResponse> find(byte[] keyHash, Instant now) {
+        List<WithdrawalResponse> responses = jdbc.query("""
+                        SELECT response FROM idempotency_records
+                        WHERE key_hash = :keyHash AND expires_at > :now
+                        """,
+                new MapSqlParameterSource("keyHash", keyHash).addValue("now", Timestamp.from(now)),
+                (rs, rowNum) -> decode(rs.getBytes("response")));
+        return responses.stream().findFirst();
+    }
+
+    @Override
+    public List<IdempotencyRecord> findAll(Collection<byte[]> keyHashes, Instant now) {
+        if (keyHashes.isEmpty()) {
+            return List.of();
+        }
+        return jdbc.query("""
+                        SELECT key_hash, response FROM idempotency_records
+                        WHERE key_hash IN (:keyHashes) AND expires_at > :now
+                        """,
+                new MapSqlParameterSource("keyHashes", keyHashes).addValue("now", Timestamp.from(now)),
+                (rs, rowNum) -> new IdempotencyRecord(rs.getBytes("key_hash"), decode(rs.getBytes("response"))));
+    }
+
+    @Override
+    public void save(byte[] keyHash, WithdrawalResponse response, Instant expiresAt) {
+        jdbc.update(UPSERT, new MapSqlParameterSource("keyHash", keyHash)
+                .addValue("status", response.getStatus() != null ? response.getStatus().name() : "FAILED")
+                .addValue("response", codec.encode(response))
+                .addValue("now", Timestamp.from(Instant.now()))
+                .addValue("expiresAt", Timestamp.from(expiresAt)));
+    }
+
+    /**
+     * Runs in a transaction so the PostgreSQL driver streams rows with a cursor instead of loading the
+     * whole result. Not read-only: the key filter must see every key, so this reads from the primary
+     * rather than from a replica that may lag behind.
+     */
+    @Override
+    @Transactional
+    public void forEachKeyHash(Instant now, Consumer<byte[]> consumer) {
+        streamingJdbc.query("SELECT key_hash FROM idempotency_records WHERE expires_at > :now",
+                new MapSqlParameterSource("now", Timestamp.from(now)),
+                rs -> {
+                    consumer.accept(rs.getBytes("key_hash"));
+                });
+    }
+
+    @Override
+    public int deleteExpired(Instant now, int limit) {
+        return jdbc.update("""
+                        DELETE FROM idempotency_records WHERE key_hash IN (
+                            SELECT key_hash FROM idempotency_records WHERE expires_at <= :now LIMIT :limit)
+                        """,
+                new MapSqlParameterSource("now", Timestamp.from(now)).addValue("limit", limit));
+    }
+
+    private WithdrawalResponse decode(byte[] bytes) {
+        return (WithdrawalResponse) codec.decode(bytes);
+    }
+}
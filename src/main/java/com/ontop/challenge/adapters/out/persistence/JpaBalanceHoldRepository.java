@@ -0,0 +1,66 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.adapters.out.persistence.entity.JpaBalanceHoldEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface JpaBalanceHoldRepository extends JpaRepository<JpaBalanceHoldEntity, UUID> {
+
+    /**
+     * Take a transaction-scoped advisory lock on the user, released on commit or rollback.
+     * Selecting from the function avoids mapping its void result.
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:userId)", nativeQuery = true)
+    Integer lockUser(@Param("userId") Long userId);
+
+    /**
+     * Sum the active holds, plus the holds debited after debitedAfter
+     */
+    @Query("""
+            SELECT COALESCE(SUM(h.amount), 0) FROM JpaBalanceHoldEntity h
+            WHERE h.userId = :userId
+              AND ((h.status = :active AND h.expiresAt > :now) OR (h.status = :debited AND h.releasedAt > :debitedAfter))
+            """)
+    BigDecimal sumAmount(@Param("userId") Long userId,
+                         @Param("active") JpaBalanceHoldEntity.Status active,
+                         @Param("now") Instant now,
+                         @Param("debited") JpaBalanceHoldEntity.Status debited,
+                         @Param("debitedAfter") Instant debitedAfter);
+
+    @Query("""
+            SELECT h.userId, SUM(h.amount) FROM JpaBalanceHoldEntity h
+            WHERE h.userId IN :userIds
+              AND ((h.status = :active AND h.expiresAt > :now) OR (h.status = :debited AND h.releasedAt > :debitedAfter))
+            GROUP BY h.userId
+            """)
+    List<Object[]> sumAmountByUser(@Param("userIds") Collection<Long> userIds,
+                                   @Param("active") JpaBalanceHoldEntity.Status active,
+                                   @Param("now") Instant now,
+                                   @Param("debited") JpaBalanceHoldEntity.Status debited,
+                                   @Param("debitedAfter") Instant debitedAfter);
+
+    boolean existsByTransactionIdAndStatusAndExpiresAtAfter(UUID transactionId,
+                                                            JpaBalanceHoldEntity.Status status,
+                                                            Instant now);
+
+    @Modifying
+    @Query("""
+            UPDATE JpaBalanceHoldEntity h
+            SET h.status = :released, h.releasedAt = :now
+            WHERE h.transactionId = :transactionId AND h.status = :active
+            """)
+    int release(@Param("transactionId") UUID transactionId,
+                @Param("active") JpaBalanceHoldEntity.Status active,
+                @Param("released") JpaBalanceHoldEntity.Status released,
+                @Param("now") Instant now);
+}
@@ -1,12 +1,140 @@
 package com.ontop.challenge.adapters.out.persistence;
 
 import com.ontop.challenge.adapters.out.persistence.entity.JpaTransactionEntity;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Transaction repository. State transitions are conditional bulk UPDATEs guarded by
+ * id, expected status and version, so no SELECT precedes them and only changed columns are written.
+ * History pages are keyset queries on idx_transactions_user_history returning projections.
+ * <p>
+ * transactions is partitioned by month on created_at: every lookup by id also binds createdAt,
+ * so PostgreSQL touches a single partition instead of probing the primary key of each one.
+ */
 @Repository
 public interface JpaTransactionRepository extends JpaRepository<JpaTransactionEntity, UUID> {
-}
 
+    // Both lookups by id run in the repository's read-only transaction by default, which would route
+    // them to the replica. Transactions are read back right after being written, by the outbox
+    // dispatcher, the listener and status polls, so keep them on the primary.
+    @Transactional
+    Optional<JpaTransactionEntity> findByIdAndCreatedAt(UUID id, Instant createdAt);
+
+    @Override
+    @Transactional
+    Optional<JpaTransactionEntity> findById(UUID id);
+
+    @Query("""
+            SELECT t.id AS id, t.status AS status, t.amount AS amount, t.fee AS fee, t.netAmount AS netAmount,
+                   t.currency AS currency, t.createdAt AS createdAt
+            FROM JpaTransactionEntity t
+            WHERE t.userId = :userId
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<TransactionHistoryRow> findHistoryFirstPage(@Param("userId") Long userId, Limit limit);
+
+    // The plain createdAt bound is what lets PostgreSQL start the index scan at the cursor,
+    // the OR alone would only filter rows read from the newest one on
+    @Query("""
+            SELECT t.id AS id, t.status AS status, t.amount AS amount, t.fee AS fee, t.netAmount AS netAmount,
+                   t.currency AS currency, t.createdAt AS createdAt
+            FROM JpaTransactionEntity t
+            WHERE t.userId = :userId
+              AND t.createdAt <= :createdAt
+              AND (t.createdAt < :createdAt OR t.id < :id)
+            ORDER BY t.createdAt DESC, t.id DESC
+            """)
+    List<TransactionHistoryRow> findHistoryPageAfter(@Param("userId") Long userId,
+                                                     @Param("createdAt") Instant createdAt,
+                                                     @Param("id") UUID id,
+                                                     Limit limit);
+
+    @Query("""
+            SELECT COUNT(t) FROM JpaTransactionEntity t
+            WHERE t.status = :status AND t.updatedAt < :updatedBefore
+            """)
+    long countByStatusUpdatedBefore(@Param("status") TransactionStatus status,
+                                    @Param("updatedBefore") Instant updatedBefore);
+
+    @Query("""
+            SELECT t.id FROM JpaTransactionEntity t
+            WHERE t.status = :status AND t.updatedAt < :updatedBefore
+            ORDER BY t.updatedAt
+            """)
+    List<UUID> findIdsByStatusUpdatedBefore(@Param("status") TransactionStatus status,
+                                            @Param("updatedBefore") Instant updatedBefore,
+                                            Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE JpaTransactionEntity t
+            SET t.status = :to, t.updatedAt = :now, t.version = t.version + 1
+            WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = :from AND t.version = :version
+            """)
+    int transitionStatus(@Param("id") UUID id,
+                         @Param("createdAt") Instant createdAt,
+                         @Param("from") TransactionStatus from,
+                         @Param("version") Long version,
+                         @Param("to") TransactionStatus to,
+                         @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE JpaTransactionEntity t
+            SET t.walletTxId = :walletTxId, t.updatedAt = :now, t.version = t.version + 1
+            WHERE t.id = :id AND t.createdAt = :createdAt AND t.status = :status AND t.version = :version
+            """)
+    int recordWalletTransaction(@Param("id") UUID id,
+                                @Param("createdAt") Instant createdAt,
+                                @Param("status") TransactionStatus status,
+                                @Param("version") Long version,
+                                @Param("walletTxId") Long walletTxId,
+                                @Param("now") Instant now);
+
+    // Moves the transaction to its final status and counts it in withdrawal_daily_rollups in one statement:
+    // the rollup is only touched when the guarded UPDATE matched, and both commit together.
+    // Returns the number of rollup rows written, 1 when the transition applied and 0 otherwise.
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            WITH finished AS (
+                UPDATE transactions
+                SET status = :#{#to.name()}, provider_payment_id = :providerPaymentId,
+                    failure_reason = :failureReason, updated_at = :now, version = version + 1
+                WHERE id = :id AND created_at = :createdAt AND status = :#{#from.name()} AND version = :version
+                RETURNING user_id, created_at, currency, status, amount, fee, net_amount, updated_at
+            )
+            INSERT INTO withdrawal_daily_rollups AS r (user_id, day, currency, status, withdrawal_count,
+                                                       total_amount, total_fee, total_net_amount, updated_at)
+            SELECT user_id, CAST(created_at AS DATE), currency, status, 1, amount, fee, net_amount, updated_at
+            FROM finished
+            ON CONFLICT (user_id, day, currency, status) DO UPDATE
+            SET withdrawal_count = r.withdrawal_count + 1,
+                total_amount = r.total_amount + EXCLUDED.total_amount,
+                total_fee = r.total_fee + EXCLUDED.total_fee,
+                total_net_amount = r.total_net_amount + EXCLUDED.total_net_amount,
+                updated_at = EXCLUDED.updated_at
+            """)
+    int finish(@Param("id") UUID id,
+               @Param("createdAt") Instant createdAt,
+               @Param("from") TransactionStatus from,
+               @Param("version") Long version,
+               @Param("to") TransactionStatus to,
+               @Param("providerPaymentId") String providerPaymentId,
+               @Param("failureReason") String failureReason,
+               @Param("now") Instant now);
+}
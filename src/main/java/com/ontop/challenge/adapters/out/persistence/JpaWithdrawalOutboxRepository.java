@@ -0,0 +1,71 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.adapters.out.persistence.entity.JpaWithdrawalOutboxEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface JpaWithdrawalOutboxRepository extends JpaRepository<JpaWithdrawalOutboxEntity, UUID> {
+
+    /**
+     * Lock the next batch of claimable rows: never dispatched or due for a retry, or dispatched by a node
+     * whose lease has expired. Rows locked by other nodes are skipped instead of waited on.
+     *
+     * @param now current time, used to detect expired leases
+     * @param batchSize maximum number of rows to lock
+     * @return locked rows, oldest first
+     */
+    @Query(value = """
+            SELECT * FROM withdrawal_outbox
+            WHERE (status = 'PENDING' AND (locked_until IS NULL OR locked_until < :now))
+               OR (status = 'IN_PROGRESS' AND locked_until < :now)
+            ORDER BY created_at
+            LIMIT :batchSize
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<JpaWithdrawalOutboxEntity> lockNextBatch(@Param("now") Instant now, @Param("batchSize") int batchSize);
+
+    @Modifying
+    @Query("""
+            UPDATE JpaWithdrawalOutboxEntity o
+            SET o.status = :status, o.lockedUntil = null, o.processedAt = :processedAt
+            WHERE o.id = :id
+            """)
+    int updateStatus(@Param("id") UUID id,
+                     @Param("status") JpaWithdrawalOutboxEntity.Status status,
+                     @Param("processedAt") Instant processedAt);
+
+    @Modifying
+    @Query("""
+            UPDATE JpaWithdrawalOutboxEntity o
+            SET o.lockedUntil = :lockedUntil
+            WHERE o.id = :id AND o.status = :status
+            """)
+    int renewLease(@Param("id") UUID id,
+                   @Param("status") JpaWithdrawalOutboxEntity.Status status,
+                   @Param("lockedUntil") Instant lockedUntil);
+
+    @Modifying
+    @Query("""
+            UPDATE JpaWithdrawalOutboxEntity o
+            SET o.status = :status, o.lockedUntil = :notBefore
+            WHERE o.id = :id
+            """)
+    int reschedule(@Param("id") UUID id,
+                   @Param("status") JpaWithdrawalOutboxEntity.Status status,
+                   @Param("notBefore") Instant notBefore);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM withdrawal_outbox WHERE id IN (
+                SELECT id FROM withdrawal_outbox WHERE status = 'PROCESSED' AND processed_at < :cutoff LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteProcessedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,78 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.application.port.out.TransactionExportPort;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Adapter implementing TransactionExportPort with a forward-only JDBC cursor. Going through JPA would
+ * keep every entity in the persistence context until the end of the export; here each row is mapped,
+ * handed over and dropped, so memory use does not depend on the number of rows.
+ */
+@Component
+public class TransactionExportAdapter implements TransactionExportPort {
+
+    private static final int FETCH_SIZE = 1000;
+
+    // No ORDER BY: sorting would have to read the whole range before returning the first row.
+    // The created_at bounds prune the scan to the partitions of the requested months.
+    private static final String SELECT_CREATED_BETWEEN = """
+            SELECT id, user_id, amount, fee, net_amount, currency, status, provider_payment_id, wallet_tx_id,
+                   failure_reason, destination_account_id, created_at, updated_at, version
+            FROM transactions
+            WHERE created_at >= :from AND created_at < :to
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public TransactionExportAdapter(DataSource dataSource) {
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(FETCH_SIZE);
+        this.jdbc = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    /**
+     * Runs in a read-only transaction: the PostgreSQL driver only honours the fetch size with autocommit
+     * off, and read-only transactions are served by the read replica when one is configured
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCreatedBetween(Instant from, Instant to, Consumer<Transaction> consumer) {
+        jdbc.query(SELECT_CREATED_BETWEEN,
+                new MapSqlParameterSource("from", Timestamp.from(from)).addValue("to", Timestamp.from(to)),
+                rs -> {
+                    consumer.accept(toTransaction(rs));
+                });
+    }
+
+    private Transaction toTransaction(ResultSet rs) throws SQLException {
+        return new Transaction(
+                rs.getObject("id", UUID.class),
+                rs.getLong("user_id"),
+                rs.getBigDecimal("amount"),
+                rs.getBigDecimal("fee"),
+                rs.getBigDecimal("net_amount"),
+                rs.getString("currency"),
+                TransactionStatus.valueOf(rs.getString("status")),
+                rs.getString("provider_payment_id"),
+                rs.getObject("wallet_tx_id", Long.class),
+                rs.getString("failure_reason"),
+                rs.getObject("destination_account_id", UUID.class),
+                rs.getTimestamp("created_at").toInstant(),
+                rs.getTimestamp("updated_at").toInstant(),
+                rs.getObject("version", Long.class));
+    }
+}
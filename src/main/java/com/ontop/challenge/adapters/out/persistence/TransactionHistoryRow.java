@@ -0,0 +1,27 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.domain.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Projection of the columns covered by idx_transactions_user_history, read without loading the entity
+ */
+public interface TransactionHistoryRow {
+
+    UUID getId();
+
+    TransactionStatus getStatus();
+
+    BigDecimal getAmount();
+
+    BigDecimal getFee();
+
+    BigDecimal getNetAmount();
+
+    String getCurrency();
+
+    Instant getCreatedAt();
+}
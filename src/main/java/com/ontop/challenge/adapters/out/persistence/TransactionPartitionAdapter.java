@@ -0,0 +1,80 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.application.port.out.TransactionPartitionPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adapter implementing TransactionPartitionPort with PostgreSQL DDL. Partitions are named
+ * transactions_YYYY_MM, as created by the V8 migration.
+ * <p>
+ * Statements run in autocommit: DETACH PARTITION CONCURRENTLY is not allowed inside a transaction block.
+ */
+@Component
+public class TransactionPartitionAdapter implements TransactionPartitionPort {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("transactions_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter NAME_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbc;
+
+    public TransactionPartitionAdapter(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public List<YearMonth> findPartitions() {
+        return jdbc.queryForList("""
+                        SELECT c.relname FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = 'transactions'::regclass
+                        """, String.class).stream()
+                .map(TransactionPartitionAdapter::monthOf)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    public void createPartition(YearMonth month) {
+        jdbc.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF transactions FOR VALUES FROM ('%s') TO ('%s')",
+                nameOf(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    /**
+     * Detaches without blocking writes to the other partitions. A detach interrupted half-way leaves
+     * the partition pending, which only FINALIZE can complete.
+     */
+    @Override
+    public void detachPartition(YearMonth month) {
+        String name = nameOf(month);
+        Boolean pending = jdbc.queryForObject("""
+                        SELECT i.inhdetachpending FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = 'transactions'::regclass AND c.relname = ?
+                        """, Boolean.class, name);
+        jdbc.execute(String.format("ALTER TABLE transactions DETACH PARTITION %s %s",
+                name, Boolean.TRUE.equals(pending) ? "FINALIZE" : "CONCURRENTLY"));
+    }
+
+    static String nameOf(YearMonth month) {
+        return "transactions_" + month.format(NAME_SUFFIX);
+    }
+
+    static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
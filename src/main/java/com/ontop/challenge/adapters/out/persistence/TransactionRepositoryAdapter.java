@@ -4,9 +4,17 @@ import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
 import com.ontop.challenge.adapters.out.persistence.entity.JpaTransactionEntity;
 import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.persistence.UuidV7;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Adapter implementing TransactionRepositoryPort by delegating to JPA repository
@@ -29,5 +37,106 @@ public class TransactionRepositoryAdapter implements TransactionRepositoryPort {
         JpaTransactionEntity response = jpaTransactionRepository.save(jpaTransactionEntity);
         return transactionMapper.JpaToTransaction(response);
     }
+
+    @Override
+    public List<Transaction> saveAll(List<Transaction> txs) {
+        List<JpaTransactionEntity> entities = txs.stream().map(JpaTransactionEntity::new).toList();
+        return jpaTransactionRepository.saveAll(entities).stream()
+                .map(transactionMapper::JpaToTransaction)
+                .toList();
+    }
+
+    /**
+     * Rows written since transactions was partitioned have createdAt equal to the timestamp of their
+     * UUIDv7 id and are read from one partition. Older rows fall back to a lookup across all partitions.
+     * Both reads share one read-write transaction so they stay on the primary.
+     */
+    @Override
+    @Transactional
+    public Optional<Transaction> findById(UUID id) {
+        Optional<JpaTransactionEntity> entity = id.version() == 7
+                ? jpaTransactionRepository.findByIdAndCreatedAt(id, UuidV7.timestampOf(id))
+                : Optional.empty();
+        if (entity.isEmpty()) {
+            entity = jpaTransactionRepository.findById(id);
+        }
+        return entity.map(transactionMapper::JpaToTransaction);
+    }
+
+    /**
+     * Read-only, so it is served by the read replica when one is configured
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TransactionSummary> findHistory(Long userId, HistoryPosition after, int limit) {
+        List<TransactionHistoryRow> rows = after == null
+                ? jpaTransactionRepository.findHistoryFirstPage(userId, Limit.of(limit))
+                : jpaTransactionRepository.findHistoryPageAfter(userId, after.createdAt(), after.id(), Limit.of(limit));
+        return rows.stream()
+                .map(row -> new TransactionSummary(row.getId(), row.getStatus(), row.getAmount(), row.getFee(),
+                        row.getNetAmount(), row.getCurrency(), row.getCreatedAt()))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countByStatusUpdatedBefore(TransactionStatus status, Instant updatedBefore) {
+        return jpaTransactionRepository.countByStatusUpdatedBefore(status, updatedBefore);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UUID> findIdsByStatusUpdatedBefore(TransactionStatus status, Instant updatedBefore, int limit) {
+        return jpaTransactionRepository.findIdsByStatusUpdatedBefore(status, updatedBefore, Limit.of(limit));
+    }
+
+    @Override
+    public Transaction transitionStatus(Transaction tx, TransactionStatus to) {
+        Instant now = Instant.now();
+        int updated = jpaTransactionRepository.transitionStatus(
+                tx.getId(), tx.getCreatedAt(), tx.getStatus(), tx.getVersion(), to, now);
+        ensureApplied(updated, tx);
+
+        tx.setStatus(to);
+        return advance(tx, now);
+    }
+
+    @Override
+    public Transaction recordWalletTransaction(Transaction tx, Long walletTxId) {
+        Instant now = Instant.now();
+        int updated = jpaTransactionRepository.recordWalletTransaction(
+                tx.getId(), tx.getCreatedAt(), tx.getStatus(), tx.getVersion(), walletTxId, now);
+        ensureApplied(updated, tx);
+
+        tx.setWalletTxId(walletTxId);
+        return advance(tx, now);
+    }
+
+    @Override
+    public Transaction finish(Transaction tx, TransactionStatus to, String providerPaymentId, String failureReason) {
+        Instant now = Instant.now();
+        int updated = jpaTransactionRepository.finish(
+                tx.getId(), tx.getCreatedAt(), tx.getStatus(), tx.getVersion(), to, providerPaymentId, failureReason,
+                now);
+        ensureApplied(updated, tx);
+
+        tx.setStatus(to);
+        tx.setProviderPaymentId(providerPaymentId);
+        tx.setFailureReason(failureReason);
+        return advance(tx, now);
+    }
+
+    private void ensureApplied(int updatedRows, Transaction tx) {
+        if (updatedRows == 0) {
+            throw new OptimisticLockingFailureException(String.format(
+                    "Transaction %s is no longer %s at version %s", tx.getId(), tx.getStatus(), tx.getVersion()));
+        }
+    }
+
+    private Transaction advance(Transaction tx, Instant now) {
+        tx.setUpdatedAt(now);
+        tx.setVersion(tx.getVersion() + 1);
+        return tx;
+    }
 }
 
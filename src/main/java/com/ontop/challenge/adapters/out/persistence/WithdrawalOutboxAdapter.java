@@ -0,0 +1,98 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.out.persistence.entity.JpaWithdrawalOutboxEntity;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
+import com.ontop.challenge.domain.Transaction;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Adapter implementing WithdrawalOutboxPort on top of the withdrawal_outbox table
+ */
+@Component
+public class WithdrawalOutboxAdapter implements WithdrawalOutboxPort {
+
+    private final JpaWithdrawalOutboxRepository outboxRepository;
+
+    public WithdrawalOutboxAdapter(JpaWithdrawalOutboxRepository outboxRepository) {
+        this.outboxRepository = outboxRepository;
+    }
+
+    @Override
+    public void enqueue(Transaction transaction, WithdrawRequest request) {
+        JpaWithdrawalOutboxEntity entity = JpaWithdrawalOutboxEntity.builder()
+                .transactionId(transaction.getId())
+                .userId(request.getUserId())
+                .accountId(request.getAccountId())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .idempotencyKey(request.getIdempotencyKey())
+                .status(JpaWithdrawalOutboxEntity.Status.PENDING)
+                .attempts(0)
+                .build();
+        outboxRepository.save(entity);
+    }
+
+    @Override
+    @Transactional
+    public List<OutboxEntry> claimBatch(int batchSize, Duration lease) {
+        Instant now = Instant.now();
+        List<JpaWithdrawalOutboxEntity> rows = outboxRepository.lockNextBatch(now, batchSize);
+
+        // Rows are managed, the claim is flushed when the row locks are released on commit
+        for (JpaWithdrawalOutboxEntity row : rows) {
+            row.setStatus(JpaWithdrawalOutboxEntity.Status.IN_PROGRESS);
+            row.setLockedUntil(now.plus(lease));
+            row.setAttempts(row.getAttempts() + 1);
+        }
+
+        return rows.stream().map(this::toEntry).toList();
+    }
+
+    @Override
+    @Transactional
+    public void markProcessed(UUID id) {
+        outboxRepository.updateStatus(id, JpaWithdrawalOutboxEntity.Status.PROCESSED, Instant.now());
+    }
+
+    @Override
+    @Transactional
+    public void renewLease(UUID id, Duration lease) {
+        outboxRepository.renewLease(id, JpaWithdrawalOutboxEntity.Status.IN_PROGRESS, Instant.now().plus(lease));
+    }
+
+    @Override
+    @Transactional
+    public void release(UUID id) {
+        outboxRepository.updateStatus(id, JpaWithdrawalOutboxEntity.Status.PENDING, null);
+    }
+
+    @Override
+    @Transactional
+    public void retryLater(UUID id, Duration delay) {
+        outboxRepository.reschedule(id, JpaWithdrawalOutboxEntity.Status.PENDING, Instant.now().plus(delay));
+    }
+
+    @Override
+    @Transactional
+    public int deleteProcessedBefore(Instant cutoff, int limit) {
+        return outboxRepository.deleteProcessedBefore(cutoff, limit);
+    }
+
+    private OutboxEntry toEntry(JpaWithdrawalOutboxEntity row) {
+        WithdrawRequest request = WithdrawRequest.builder()
+                .userId(row.getUserId())
+                .accountId(row.getAccountId())
+                .amount(row.getAmount())
+                .currency(row.getCurrency())
+                .idempotencyKey(row.getIdempotencyKey())
+                .build();
+        return new OutboxEntry(row.getId(), row.getTransactionId(), request, row.getAttempts());
+    }
+}
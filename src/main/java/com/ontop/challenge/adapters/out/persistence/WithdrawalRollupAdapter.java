@@ -0,0 +1,49 @@
+package com.ontop.challenge.adapters.out.persistence;
+
+import com.ontop.challenge.application.port.out.WithdrawalRollupPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Adapter implementing WithdrawalRollupPort on top of the withdrawal_daily_rollups table.
+ * A range read is a scan of the primary key from (user_id, from) to (user_id, to).
+ */
+@Component
+public class WithdrawalRollupAdapter implements WithdrawalRollupPort {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public WithdrawalRollupAdapter(DataSource dataSource) {
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /**
+     * Read-only, so it is served by the read replica when one is configured
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<DailyTotal> findDailyTotals(Long userId, LocalDate from, LocalDate to) {
+        return jdbc.query("""
+                        SELECT day, currency, status, withdrawal_count, total_amount, total_fee, total_net_amount
+                        FROM withdrawal_daily_rollups
+                        WHERE user_id = :userId AND day BETWEEN :from AND :to
+                        ORDER BY day, currency, status
+                        """,
+                new MapSqlParameterSource("userId", userId).addValue("from", from).addValue("to", to),
+                (rs, rowNum) -> new DailyTotal(
+                        rs.getObject("day", LocalDate.class),
+                        rs.getString("currency"),
+                        TransactionStatus.valueOf(rs.getString("status")),
+                        rs.getLong("withdrawal_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("total_fee"),
+                        rs.getBigDecimal("total_net_amount")));
+    }
+}
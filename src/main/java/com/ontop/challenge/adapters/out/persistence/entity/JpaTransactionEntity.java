@@ -2,12 +2,11 @@ package com.ontop.challenge.adapters.out.persistence.entity;
 
 import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.persistence.UuidV7;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.EnumType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.persistence.Version;
@@ -16,7 +15,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.Builder;
-import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
@@ -32,8 +30,9 @@ import java.util.UUID;
 @Builder
 public class JpaTransactionEntity {
 
+    // Time-ordered, so new rows are appended to transactions_pkey instead of splitting random pages.
+    // Assigned together with createdAt when a new transaction is mapped, see the constructor
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     @Column(nullable = false)
@@ -67,7 +66,7 @@ public class JpaTransactionEntity {
     @Column(nullable = false)
     private UUID destinationAccountId;
 
-    @CreationTimestamp
+    // Partition key of transactions
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -78,6 +77,10 @@ public class JpaTransactionEntity {
     @Version
     private Long version;
 
+    /**
+     * A new transaction gets a UUIDv7 id and a createdAt equal to the timestamp in that id, so the
+     * partition holding a row can be derived from its id alone.
+     */
     public JpaTransactionEntity(Transaction transaction) {
         this.id = transaction.getId();
         this.userId = transaction.getUserId();
@@ -93,5 +96,9 @@ public class JpaTransactionEntity {
         this.createdAt = transaction.getCreatedAt();
         this.updatedAt = transaction.getUpdatedAt();
         this.version = transaction.getVersion();
+        if (this.id == null) {
+            this.id = UuidV7.generate();
+            this.createdAt = UuidV7.timestampOf(this.id);
+        }
     }
 }
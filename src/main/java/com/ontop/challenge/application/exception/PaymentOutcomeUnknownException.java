@@ -0,0 +1,16 @@
+package com.ontop.challenge.application.exception;
+
+/**
+ * Exception thrown when a payment may have reached the provider but no response came back,
+ * so it can be treated neither as sent nor as failed
+ */
+public class PaymentOutcomeUnknownException extends ExternalServiceException {
+
+    public PaymentOutcomeUnknownException(String message) {
+        super(message);
+    }
+
+    public PaymentOutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
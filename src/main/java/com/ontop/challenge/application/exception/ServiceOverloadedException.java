@@ -0,0 +1,20 @@
+package com.ontop.challenge.application.exception;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown when a request is shed because the service is at its concurrency limit
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ontop.challenge.application.exception;
+
+import java.util.UUID;
+
+/**
+ * Exception thrown when a withdrawal does not exist
+ */
+public class WithdrawalNotFoundException extends RuntimeException {
+
+    public WithdrawalNotFoundException(UUID transactionId) {
+        super("Withdrawal not found: " + transactionId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ontop.challenge.application.port.out;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Port interface for the local balance reservation ledger.
+ * A hold reserves a withdrawal amount against the user's wallet balance from the moment
+ * the PENDING transaction is created until the wallet is actually debited.
+ */
+public interface BalanceHoldPort {
+
+    /**
+     * Lock the user's holds until the surrounding DB transaction ends and return the
+     * total of the user's active holds. Holds debited after balanceReadAt are included too,
+     * since a wallet balance read at that time may not reflect their debit yet.
+     * Must be called inside a transaction.
+     *
+     * @param userId The user ID
+     * @param balanceReadAt When the wallet balance the holds are subtracted from was requested
+     * @return Sum of active, non-expired holds and of holds debited after balanceReadAt
+     */
+    BigDecimal lockAndSumActiveHolds(Long userId, Instant balanceReadAt);
+
+    /**
+     * Batch variant of {@link #lockAndSumActiveHolds(Long, Instant)}. Users are locked in ascending
+     * order so concurrent batches cannot deadlock. Must be called inside a transaction.
+     *
+     * @param userIds The user IDs
+     * @param balanceReadAt When the wallet balances were requested
+     * @return Sum of held amounts per user, users without holds map to zero
+     */
+    Map<Long, BigDecimal> lockAndSumActiveHolds(Collection<Long> userIds, Instant balanceReadAt);
+
+    /**
+     * Place a hold for a transaction
+     *
+     * @param transactionId The transaction the amount is held for
+     * @param userId The user ID
+     * @param amount The held amount
+     * @param expiresAt When the hold stops counting against the balance
+     */
+    void hold(UUID transactionId, Long userId, BigDecimal amount, Instant expiresAt);
+
+    /**
+     * Check whether a transaction still has an active, non-expired hold
+     *
+     * @param transactionId The transaction ID
+     * @return true if the amount is still held
+     */
+    boolean hasActiveHold(UUID transactionId);
+
+    /**
+     * Release the hold of a transaction that was not debited. Releasing twice is a no-op.
+     *
+     * @param transactionId The transaction ID
+     * @param userId The user ID
+     */
+    void release(UUID transactionId, Long userId);
+
+    /**
+     * Record that the held amount was debited from the wallet. The hold stops counting against
+     * balances read afterwards. Calling it on a released or debited hold is a no-op.
+     *
+     * @param transactionId The transaction ID
+     * @param userId The user ID
+     */
+    void markDebited(UUID transactionId, Long userId);
+}
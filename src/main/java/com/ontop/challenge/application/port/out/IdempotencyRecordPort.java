@@ -0,0 +1,56 @@
+package com.ontop.challenge.application.port.out;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Port interface for the durable store of idempotency records.
+ * Records are addressed by the hash of the idempotency key, the key itself is never stored.
+ */
+public interface IdempotencyRecordPort {
+
+    /**
+     * Find the response stored for a key
+     *
+     * @param keyHash The idempotency key hash
+     * @param now Records expiring before this instant are ignored
+     * @return The stored response, if any
+     */
+    Optional<WithdrawalResponse> find(byte[] keyHash, Instant now);
+
+    /**
+     * Batch variant of {@link #find(byte[], Instant)}
+     *
+     * @return Stored records, keys without a record are absent
+     */
+    List<IdempotencyRecord> findAll(Collection<byte[]> keyHashes, Instant now);
+
+    /**
+     * Insert or replace the response of a key. A final response is never replaced by an in-flight one.
+     *
+     * @param keyHash The idempotency key hash
+     * @param response The response to store
+     * @param expiresAt End of the dedupe window for this key
+     */
+    void save(byte[] keyHash, WithdrawalResponse response, Instant expiresAt);
+
+    /**
+     * Stream the hashes of all unexpired records
+     */
+    void forEachKeyHash(Instant now, Consumer<byte[]> consumer);
+
+    /**
+     * Delete up to limit expired records
+     *
+     * @return Number of records deleted
+     */
+    int deleteExpired(Instant now, int limit);
+
+    record IdempotencyRecord(byte[] keyHash, WithdrawalResponse response) {
+    }
+}
@@ -3,6 +3,8 @@ package com.ontop.challenge.application.port.out;
 import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
 import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
 
+import java.util.List;
+
 /**
  * Port interface for payment provider operations
  */
@@ -15,5 +17,13 @@ public interface PaymentsClientPort {
      * @return The payment response from the provider
      */
     PaymentResponse createPayment(PaymentRequest request);
+
+    /**
+     * Create several payments with a single call to the payment provider
+     *
+     * @param requests The payment request details
+     * @return The payment responses, in the same order as the requests
+     */
+    List<PaymentResponse> createPayments(List<PaymentRequest> requests);
 }
 
@@ -0,0 +1,22 @@
+package com.ontop.challenge.application.port.out;
+
+import com.ontop.challenge.domain.Transaction;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Port interface for bulk reads of transactions, e.g. for reconciliation exports
+ */
+public interface TransactionExportPort {
+
+    /**
+     * Stream every transaction created in [from, to). Rows are handed to the consumer one at a time
+     * as they are read and are not retained, in no particular order.
+     *
+     * @param from Inclusive lower bound on the creation time
+     * @param to Exclusive upper bound on the creation time
+     * @param consumer Receives each transaction
+     */
+    void forEachCreatedBetween(Instant from, Instant to, Consumer<Transaction> consumer);
+}
@@ -0,0 +1,26 @@
+package com.ontop.challenge.application.port.out;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Port interface for the monthly partitions of the transactions table.
+ * A partition holds the transactions created within one calendar month.
+ */
+public interface TransactionPartitionPort {
+
+    /**
+     * @return Months that currently have a partition attached, oldest first
+     */
+    List<YearMonth> findPartitions();
+
+    /**
+     * Create and attach the partition of a month, if it does not exist yet
+     */
+    void createPartition(YearMonth month);
+
+    /**
+     * Detach the partition of a month. The detached table is kept, so its rows can still be archived.
+     */
+    void detachPartition(YearMonth month);
+}
@@ -1,6 +1,13 @@
 package com.ontop.challenge.application.port.out;
 
 import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 public interface TransactionRepositoryPort {
     /**
@@ -10,4 +17,97 @@ public interface TransactionRepositoryPort {
      * @return The saved transaction
      */
     Transaction save(Transaction tx);
+
+    /**
+     * Save several new transactions, flushed as one JDBC batch
+     *
+     * @param txs The transactions to save
+     * @return The saved transactions, in the same order
+     */
+    List<Transaction> saveAll(List<Transaction> txs);
+
+    /**
+     * Find a transaction by ID
+     *
+     * @param id The transaction ID
+     * @return Optional containing the transaction if found
+     */
+    Optional<Transaction> findById(UUID id);
+
+    /**
+     * Find a page of a user's transactions, newest first, by keyset rather than offset
+     *
+     * @param userId The user ID
+     * @param after Position of the last transaction of the previous page, null for the first page
+     * @param limit Maximum number of transactions
+     * @return Summaries ordered by creation time and ID, both descending
+     */
+    List<TransactionSummary> findHistory(Long userId, HistoryPosition after, int limit);
+
+    /**
+     * Count the transactions in a status that have not changed since updatedBefore
+     *
+     * @param status The status
+     * @param updatedBefore Exclusive upper bound on the last update
+     * @return Number of matching transactions
+     */
+    long countByStatusUpdatedBefore(TransactionStatus status, Instant updatedBefore);
+
+    /**
+     * IDs of the transactions in a status that have not changed since updatedBefore, least recently updated first
+     *
+     * @param status The status
+     * @param updatedBefore Exclusive upper bound on the last update
+     * @param limit Maximum number of IDs
+     * @return The transaction IDs
+     */
+    List<UUID> findIdsByStatusUpdatedBefore(TransactionStatus status, Instant updatedBefore, int limit);
+
+    /*
+     * State transitions below are applied with a single conditional UPDATE guarded by the
+     * transaction's current status and version. On success the given transaction is updated
+     * in place (status, changed columns, updatedAt, version) and returned. If the row was
+     * changed concurrently, OptimisticLockingFailureException is thrown.
+     */
+
+    /**
+     * Move a transaction to a new status, writing only the status
+     *
+     * @param tx The transaction in its current state
+     * @param to The new status
+     * @return The updated transaction
+     */
+    Transaction transitionStatus(Transaction tx, TransactionStatus to);
+
+    /**
+     * Record the wallet debit of a transaction without changing its status
+     *
+     * @param tx The transaction in its current state
+     * @param walletTxId The wallet transaction ID
+     * @return The updated transaction
+     */
+    Transaction recordWalletTransaction(Transaction tx, Long walletTxId);
+
+    /**
+     * Move a transaction to its final status together with the payment outcome, and count it in the
+     * daily withdrawal totals of its user in the same DB transaction
+     *
+     * @param tx The transaction in its current state
+     * @param to The final status, COMPLETED or FAILED
+     * @param providerPaymentId The payment provider ID, may be null
+     * @param failureReason The failure reason, null unless FAILED
+     * @return The updated transaction
+     */
+    Transaction finish(Transaction tx, TransactionStatus to, String providerPaymentId, String failureReason);
+
+    /**
+     * Position of a transaction in a user's history
+     */
+    record HistoryPosition(Instant createdAt, UUID id) {}
+
+    /**
+     * The columns of a transaction shown in its history
+     */
+    record TransactionSummary(UUID id, TransactionStatus status, BigDecimal amount, BigDecimal fee,
+                              BigDecimal netAmount, String currency, Instant createdAt) {}
 }
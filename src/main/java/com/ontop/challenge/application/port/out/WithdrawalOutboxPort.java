@@ -0,0 +1,82 @@
+package com.ontop.challenge.application.port.out;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.domain.Transaction;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Port interface for the durable withdrawal outbox
+ */
+public interface WithdrawalOutboxPort {
+
+    /**
+     * Enqueue a withdrawal for background processing.
+     * Must be called inside the transaction that creates the PENDING transaction.
+     *
+     * @param transaction The PENDING transaction
+     * @param request The original withdrawal request
+     */
+    void enqueue(Transaction transaction, WithdrawRequest request);
+
+    /**
+     * Claim a batch of entries for this node. Entries claimed by other nodes are skipped,
+     * and entries whose lease expired (e.g. the owning node crashed) are claimed again.
+     *
+     * @param batchSize Maximum number of entries to claim
+     * @param lease How long the claim is held before other nodes may take it over
+     * @return The claimed entries
+     */
+    List<OutboxEntry> claimBatch(int batchSize, Duration lease);
+
+    /**
+     * Mark an entry as processed so it is never dispatched again
+     *
+     * @param id The outbox entry ID
+     */
+    void markProcessed(UUID id);
+
+    /**
+     * Push back the lease of a claimed entry, e.g. when its processing starts after waiting in a lane,
+     * so other nodes do not claim it again meanwhile. Entries no longer in progress are left untouched.
+     *
+     * @param id The outbox entry ID
+     * @param lease How long the claim is held from now
+     */
+    void renewLease(UUID id, Duration lease);
+
+    /**
+     * Release a claimed entry so it can be dispatched again right away
+     *
+     * @param id The outbox entry ID
+     */
+    void release(UUID id);
+
+    /**
+     * Put a claimed entry back for another attempt once the delay has passed, e.g. after a transient failure
+     *
+     * @param id The outbox entry ID
+     * @param delay How long the entry is not claimable
+     */
+    void retryLater(UUID id, Duration delay);
+
+    /**
+     * Delete up to limit entries processed before the cutoff
+     *
+     * @return Number of entries deleted
+     */
+    int deleteProcessedBefore(Instant cutoff, int limit);
+
+    /**
+     * Outbox entry claimed for dispatch
+     */
+    record OutboxEntry(
+            UUID id,
+            UUID transactionId,
+            WithdrawRequest request,
+            int attempts
+    ) {}
+}
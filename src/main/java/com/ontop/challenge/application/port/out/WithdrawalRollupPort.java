@@ -0,0 +1,28 @@
+package com.ontop.challenge.application.port.out;
+
+import com.ontop.challenge.domain.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Port interface for the per-user, per-day totals of finished withdrawals.
+ * The totals are maintained by {@link TransactionRepositoryPort#finish}; this port only reads them.
+ */
+public interface WithdrawalRollupPort {
+
+    /**
+     * Get a user's daily totals
+     *
+     * @param userId The user ID
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @return One entry per day, currency and final status that had withdrawals, by day
+     */
+    List<DailyTotal> findDailyTotals(Long userId, LocalDate from, LocalDate to);
+
+    record DailyTotal(LocalDate day, String currency, TransactionStatus status, long count,
+                      BigDecimal totalAmount, BigDecimal totalFee, BigDecimal totalNetAmount) {
+    }
+}
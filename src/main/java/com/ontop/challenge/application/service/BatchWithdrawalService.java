@@ -0,0 +1,176 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.BatchWithdrawalResponse;
+import com.ontop.challenge.adapters.in.dto.ErrorResponse;
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.IdempotentConflictException;
+import com.ontop.challenge.application.exception.InsufficientFundsException;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service to ingest batches of withdrawals, e.g. payroll runs.
+ * Items are checked against the idempotency cache in one round trip, then claimed and persisted in chunks
+ * through WithdrawalSubmissionService and processed in the background like single withdrawals.
+ */
+@Service
+@Slf4j
+public class BatchWithdrawalService {
+
+    private final WithdrawalSubmissionService submissionService;
+    private final IdempotencyService idempotencyService;
+    private final WithdrawalConfig config;
+
+    public BatchWithdrawalService(WithdrawalSubmissionService submissionService,
+                                  IdempotencyService idempotencyService,
+                                  WithdrawalConfig config) {
+        this.submissionService = submissionService;
+        this.idempotencyService = idempotencyService;
+        this.config = config;
+    }
+
+    /**
+     * Submit a batch of withdrawals
+     *
+     * @param requests The withdrawal requests, each with its own idempotency key
+     * @return One result per request, in the same order
+     */
+    public BatchWithdrawalResponse submit(List<WithdrawRequest> requests) {
+        int maxItems = config.getBatch().getMaxItems();
+        if (requests.size() > maxItems) {
+            throw new IllegalArgumentException(
+                    String.format("Batch has %d withdrawals, maximum is %d", requests.size(), maxItems));
+        }
+
+        BatchWithdrawalResponse.ItemResult[] results = new BatchWithdrawalResponse.ItemResult[requests.size()];
+        List<String> keys = requests.stream()
+                .map(WithdrawRequest::getIdempotencyKey)
+                .filter(key -> key != null && !key.isBlank())
+                .distinct()
+                .toList();
+        Map<String, WithdrawalResponse> cachedResponses = idempotencyService.getResponses(keys);
+
+        Set<String> seenKeys = new HashSet<>();
+        List<Integer> pendingIndexes = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String key = requests.get(i).getIdempotencyKey();
+
+            if (key == null || key.isBlank()) {
+                results[i] = rejected(i, key, "BAD_REQUEST", "Idempotency key is required");
+            } else if (!seenKeys.add(key)) {
+                results[i] = rejected(i, key, "IDEMPOTENT_CONFLICT", "Duplicate idempotency key in batch");
+            } else if (cachedResponses.containsKey(key)
+                    && !RequestFingerprint.matches(requests.get(i), cachedResponses.get(key))) {
+                results[i] = rejected(i, key, "IDEMPOTENT_CONFLICT",
+                        "Idempotency key was already used with a different request body");
+            } else if (cachedResponses.containsKey(key)) {
+                results[i] = result(i, key, BatchWithdrawalResponse.Outcome.CACHED, cachedResponses.get(key));
+            } else {
+                pendingIndexes.add(i);
+            }
+        }
+
+        int chunkSize = config.getBatch().getChunkSize();
+        for (int from = 0; from < pendingIndexes.size(); from += chunkSize) {
+            List<Integer> chunk = pendingIndexes.subList(from, Math.min(from + chunkSize, pendingIndexes.size()));
+            processChunk(requests, chunk, results);
+        }
+
+        List<BatchWithdrawalResponse.ItemResult> resultList = Arrays.asList(results);
+        long accepted = resultList.stream()
+                .filter(r -> r.getOutcome() == BatchWithdrawalResponse.Outcome.ACCEPTED)
+                .count();
+        log.info("Batch of {} withdrawals processed, accepted: {}", requests.size(), accepted);
+
+        return BatchWithdrawalResponse.builder()
+                .accepted((int) accepted)
+                .rejected((int) resultList.stream()
+                        .filter(r -> r.getOutcome() == BatchWithdrawalResponse.Outcome.REJECTED)
+                        .count())
+                .results(resultList)
+                .build();
+    }
+
+    private void processChunk(List<WithdrawRequest> requests, List<Integer> chunk,
+                              BatchWithdrawalResponse.ItemResult[] results) {
+        List<WithdrawRequest> chunkRequests = chunk.stream().map(requests::get).toList();
+
+        List<WithdrawalSubmissionService.SubmissionOutcome> outcomes;
+        try {
+            outcomes = submissionService.submitAll(chunkRequests);
+        } catch (RuntimeException e) {
+            // The whole chunk was rolled back, no item of it was accepted
+            log.error("Failed to persist batch chunk of {} withdrawals: {}", chunk.size(), e.getMessage(), e);
+            for (int index : chunk) {
+                ErrorResponse error = errorFor(e);
+                results[index] = rejected(index, requests.get(index).getIdempotencyKey(),
+                        error.getCode(), error.getMessage());
+            }
+            return;
+        }
+
+        for (int j = 0; j < chunk.size(); j++) {
+            int index = chunk.get(j);
+            String key = requests.get(index).getIdempotencyKey();
+            WithdrawalSubmissionService.SubmissionOutcome outcome = outcomes.get(j);
+
+            if (outcome.error() != null) {
+                ErrorResponse error = errorFor(outcome.error());
+                results[index] = rejected(index, key, error.getCode(), error.getMessage());
+            } else {
+                results[index] = result(index, key, BatchWithdrawalResponse.Outcome.ACCEPTED, outcome.response());
+            }
+        }
+    }
+
+    /**
+     * Map an item failure to the same codes GlobalExceptionHandler uses for single withdrawals
+     */
+    private ErrorResponse errorFor(RuntimeException e) {
+        if (e instanceof IdempotentConflictException) {
+            return ErrorResponse.builder().code("IDEMPOTENT_CONFLICT").message(e.getMessage()).build();
+        }
+        if (e instanceof InsufficientFundsException) {
+            return ErrorResponse.builder().code("INSUFFICIENT_FUNDS").message(e.getMessage()).build();
+        }
+        if (e instanceof IllegalArgumentException) {
+            return ErrorResponse.builder().code("BAD_REQUEST").message(e.getMessage()).build();
+        }
+        if (e instanceof ExternalServiceException) {
+            return ErrorResponse.builder()
+                    .code("EXTERNAL_SERVICE_ERROR")
+                    .message("An error occurred while communicating with external services")
+                    .build();
+        }
+        return ErrorResponse.builder().code("INTERNAL_SERVER_ERROR").message("An unexpected error occurred").build();
+    }
+
+    private BatchWithdrawalResponse.ItemResult result(int index, String key, BatchWithdrawalResponse.Outcome outcome,
+                                                      WithdrawalResponse withdrawal) {
+        return BatchWithdrawalResponse.ItemResult.builder()
+                .index(index)
+                .idempotencyKey(key)
+                .outcome(outcome)
+                .withdrawal(withdrawal)
+                .build();
+    }
+
+    private BatchWithdrawalResponse.ItemResult rejected(int index, String key, String code, String message) {
+        return BatchWithdrawalResponse.ItemResult.builder()
+                .index(index)
+                .idempotencyKey(key)
+                .outcome(BatchWithdrawalResponse.Outcome.REJECTED)
+                .error(ErrorResponse.builder().code(code).message(message).build())
+                .build();
+    }
+}
@@ -1,27 +1,133 @@
 package com.ontop.challenge.application.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.port.out.IdempotencyRecordPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.IdempotencyConfig;
+import com.ontop.challenge.infrastructure.redis.IdempotencyJournal;
+import com.ontop.challenge.infrastructure.redis.RedisAccess;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 /**
- * Service to handle idempotency using Redis
+ * Service to handle idempotency.
+ * Postgres holds every response for the whole dedupe window, keyed by the SHA-256 of the idempotency key.
+ * Redis, reached through RedisAccess, is a hot tier with status-dependent TTLs: final responses stay a
+ * while, in-flight ones only briefly. Redis misses are read through from Postgres. In both stores an
+ * in-flight response only fills an empty slot, so it never replaces the final one of the same key.
+ * Responses are also kept in a bounded in-process near cache, so retries of a hot key are answered
+ * without a Redis round trip. Writes are announced on a Redis channel and every other node drops
+ * its near copy of the key.
+ * <p>
+ * Keys within the dedupe window are also tracked in a rotating Bloom filter, loaded from Postgres on
+ * startup and fed by local saves and the announcements of other nodes. Most keys are new, so a lookup
+ * the filter rules out skips the Redis GET. It is still confirmed against Postgres, which stays the
+ * source of truth: a key saved while an announcement was lost is missing from this node's filter.
+ * Concurrent duplicates are still caught by the in-flight marker.
+ * <p>
+ * Redis calls go through the "redis" circuit breaker, so an outage fails fast instead of waiting out the
+ * client timeout on every call. Responses saved meanwhile go to a local journal, which also answers
+ * lookups until it is replayed into Redis after recovery.
  */
 @Service
 @Slf4j
-public class IdempotencyService {
+public class IdempotencyService implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "idempotency:invalidate";
 
     private static final String IDEMPOTENCY_PREFIX = "idempotency:";
-    private static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+    private static final String IN_FLIGHT_PREFIX = "idempotency:inflight:";
+    private static final String SEPARATOR = "|";
+
+    private final RedisAccess redisAccess;
+    private final IdempotencyRecordPort recordPort;
+    private final IdempotencyConfig.Retention retention;
+    private final Cache<String, WithdrawalResponse> nearCache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Counter nearHits;
+    private final Counter nearMisses;
+    private final Counter nearEvictions;
+    private final RotatingBloomFilter keyFilter;
+    private final Counter filterSkips;
+    private final CircuitBreaker redisBreaker;
+    private final IdempotencyJournal journal;
+    private final Counter journalReplayed;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    public IdempotencyService(RedisAccess redisAccess,
+                              IdempotencyRecordPort recordPort,
+                              IdempotencyConfig config,
+                              CircuitBreakerRegistry circuitBreakerRegistry,
+                              IdempotencyJournal journal,
+                              MeterRegistry meterRegistry) {
+        this.redisAccess = redisAccess;
+        this.recordPort = recordPort;
+        this.retention = config.getRetention();
+        this.redisBreaker = circuitBreakerRegistry.circuitBreaker("redis");
+        this.journal = journal;
+        this.nearHits = Counter.builder("idempotency.near_cache.hits")
+                .description("Idempotency lookups answered by the near cache")
+                .register(meterRegistry);
+        this.nearMisses = Counter.builder("idempotency.near_cache.misses")
+                .description("Idempotency lookups that went to Redis")
+                .register(meterRegistry);
+        this.nearEvictions = Counter.builder("idempotency.near_cache.evictions")
+                .description("Near cache entries evicted by size or TTL")
+                .register(meterRegistry);
+        this.filterSkips = Counter.builder("idempotency.key_filter.skipped")
+                .description("Redis lookups avoided because the key filter ruled the key out")
+                .register(meterRegistry);
+        this.journalReplayed = Counter.builder("idempotency.journal.replayed")
+                .description("Journaled responses written back to Redis after an outage")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.journal.entries", journal, IdempotencyJournal::size)
+                .description("Responses held in the local journal waiting for Redis")
+                .register(meterRegistry);
 
-    public IdempotencyService(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+        IdempotencyConfig.NearCache near = config.getNearCache();
+        this.nearCache = near.isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(near.getMaxSize())
+                        .expireAfterWrite(near.getTtl())
+                        .executor(Runnable::run)
+                        .<String, WithdrawalResponse>removalListener((key, value, cause) -> {
+                            if (cause.wasEvicted()) {
+                                nearEvictions.increment();
+                            }
+                        })
+                        .build()
+                : null;
+
+        IdempotencyConfig.KeyFilter filter = config.getKeyFilter();
+        this.keyFilter = filter.isEnabled()
+                ? new RotatingBloomFilter(retention.getDurable(), filter.getExpectedKeys(), filter.getFalsePositiveRate())
+                : null;
     }
 
     /**
@@ -36,29 +142,76 @@ public class IdempotencyService {
             return Optional.empty();
         }
 
+        WithdrawalResponse near = getNear(idempotencyKey);
+        if (near != null) {
+            log.debug("Found near cached response for idempotency key: {}", idempotencyKey);
+            return Optional.of(near);
+        }
+
+        byte[] keyHash = keyHash(idempotencyKey);
+        if (definitelyAbsent(keyHash)) {
+            log.debug("Key filter ruled out idempotency key: {}, confirming with Postgres", idempotencyKey);
+            return readThrough(idempotencyKey, keyHash);
+        }
+
         String key = buildKey(idempotencyKey);
-        
+
         try {
-            Object value = redisTemplate.opsForValue().get(key);
+            Object value = redisBreaker.executeSupplier(() -> redisAccess.get(key));
 
             if (value == null) {
-                log.info("No cached response found for idempotency key: {}", idempotencyKey);
-                return Optional.empty();
+                Optional<WithdrawalResponse> stored = readThrough(idempotencyKey, keyHash);
+                if (stored.isEmpty()) {
+                    log.info("No cached response found for idempotency key: {}", idempotencyKey);
+                }
+                return stored;
             }
-            
-            if (value instanceof WithdrawalResponse) {
+
+            if (value instanceof WithdrawalResponse response) {
                 log.info("Found cached response for idempotency key: {}", idempotencyKey);
-                return Optional.of((WithdrawalResponse) value);
+                putNear(idempotencyKey, response);
+                return Optional.of(response);
             }
-            
+
             log.warn("Value in Redis is not a WithdrawalResponse, it's a: {}", value.getClass().getName());
             return Optional.empty();
         } catch (Exception e) {
-            log.error("Error retrieving idempotency key {} from Redis: {}", idempotencyKey, e.getMessage(), e);
-            return Optional.empty();
+            logRedisFailure("retrieving idempotency key " + idempotencyKey, e);
+            return readThrough(idempotencyKey, keyHash);
         }
     }
 
+    /**
+     * Fetch the cached responses of several idempotency keys in a single Redis round trip
+     *
+     * @param idempotencyKeys The idempotency keys
+     * @return Cached responses by idempotency key, keys without a response are absent
+     */
+    public Map<String, WithdrawalResponse> getResponses(List<String> idempotencyKeys) {
+        Map<String, WithdrawalResponse> responses = new HashMap<>();
+        if (idempotencyKeys == null || idempotencyKeys.isEmpty()) {
+            return responses;
+        }
+
+        List<String> remoteKeys = new ArrayList<>();
+        List<String> missedKeys = new ArrayList<>();
+        for (String idempotencyKey : idempotencyKeys) {
+            WithdrawalResponse near = getNear(idempotencyKey);
+            if (near != null) {
+                responses.put(idempotencyKey, near);
+            } else if (definitelyAbsent(keyHash(idempotencyKey))) {
+                missedKeys.add(idempotencyKey);
+            } else {
+                remoteKeys.add(idempotencyKey);
+            }
+        }
+
+        getRemote(remoteKeys, responses, missedKeys);
+        readThrough(missedKeys, responses);
+        log.info("Found {} cached responses for {} idempotency keys", responses.size(), idempotencyKeys.size());
+        return responses;
+    }
+
     /**
      * Save a withdrawal response with the idempotency key
      *
@@ -66,30 +219,429 @@ public class IdempotencyService {
      * @param response The withdrawal response to cache
      */
     public void saveResponse(String idempotencyKey, WithdrawalResponse response) {
+        if (!isSavable(idempotencyKey, response)) {
+            return;
+        }
+
+        persist(idempotencyKey, response);
+        try {
+            boolean written = redisBreaker.executeSupplier(() -> writeHot(idempotencyKey, response));
+            if (written) {
+                onSaved(idempotencyKey, response);
+            } else {
+                log.info("Kept the stored response for idempotency key: {} over in-flight status: {}",
+                        idempotencyKey, response.getStatus());
+                rememberKey(idempotencyKey);
+            }
+        } catch (Exception e) {
+            onSaveFailed(idempotencyKey, response, e);
+        }
+    }
+
+    /**
+     * Save a withdrawal response without waiting for Redis. The Postgres write is synchronous, the Redis
+     * write joins the next pipeline of RedisAccess, so concurrent background completions share round trips.
+     * In-flight responses need a conditional write and are saved synchronously.
+     *
+     * @param idempotencyKey The idempotency key
+     * @param response The withdrawal response to cache
+     */
+    public void saveResponseAsync(String idempotencyKey, WithdrawalResponse response) {
+        if (!isSavable(idempotencyKey, response)) {
+            return;
+        }
+        if (!isTerminal(response)) {
+            saveResponse(idempotencyKey, response);
+            return;
+        }
+
+        persist(idempotencyKey, response);
+        redisBreaker.executeCompletionStage(() ->
+                        redisAccess.setPipelined(buildKey(idempotencyKey), response, hotTtl(response)))
+                .whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        onSaved(idempotencyKey, response);
+                    } else {
+                        onSaveFailed(idempotencyKey, response,
+                                e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                });
+    }
+
+    /**
+     * Atomically mark an idempotency key as being processed (SET NX with a lease)
+     *
+     * @param idempotencyKey The idempotency key
+     * @param lease How long the marker lives if it is never cleared
+     * @return true if this caller owns the key, false if another request is already processing it
+     */
+    public boolean tryMarkInFlight(String idempotencyKey, Duration lease) {
+        try {
+            Boolean marked = redisBreaker.executeSupplier(() ->
+                    redisAccess.setIfAbsent(IN_FLIGHT_PREFIX + idempotencyKey, nodeId, lease));
+            return Boolean.TRUE.equals(marked);
+        } catch (Exception e) {
+            // Same trade-off as getResponse: without Redis the request is processed rather than rejected
+            logRedisFailure("marking idempotency key " + idempotencyKey + " in flight", e);
+            return true;
+        }
+    }
+
+    /**
+     * Clear the in-flight marker of a request that failed, so the client can retry with the same key
+     *
+     * @param idempotencyKey The idempotency key
+     */
+    public void clearInFlight(String idempotencyKey) {
+        try {
+            redisBreaker.executeSupplier(() -> redisAccess.delete(IN_FLIGHT_PREFIX + idempotencyKey));
+        } catch (Exception e) {
+            logRedisFailure("clearing in-flight idempotency key " + idempotencyKey, e);
+        }
+    }
+
+    /**
+     * Write the responses journaled during an outage back to Redis once the breaker has closed.
+     * A key written after recovery is kept when it is final or the journaled response is not;
+     * a journaled COMPLETED or FAILED response replaces a PENDING or PROCESSING one.
+     */
+    @Scheduled(fixedDelayString = "${ontop.idempotency.journal.replay-interval-ms:1000}")
+    public void replayJournal() {
+        if (journal.isEmpty() || redisBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            return;
+        }
+
+        try {
+            int replayed = journal.replay(entry -> redisBreaker.executeRunnable(() -> restore(entry)));
+            journalReplayed.increment(replayed);
+            log.info("Replayed {} journaled idempotency responses into Redis", replayed);
+        } catch (Exception e) {
+            logRedisFailure("replaying the idempotency journal", e);
+        }
+    }
+
+    private void restore(IdempotencyJournal.Entry entry) {
+        String key = buildKey(entry.key());
+        if (Boolean.TRUE.equals(redisAccess.setIfAbsent(key, entry.response(), entry.ttl()))
+                || !isTerminal(entry.response())) {
+            return;
+        }
+
+        // Every final response of a key carries the same outcome, so only a non-final value is replaced
+        if (redisAccess.get(key) instanceof WithdrawalResponse current && isTerminal(current)) {
+            return;
+        }
+        redisAccess.set(key, entry.response(), entry.ttl());
+        putNear(entry.key(), entry.response());
+        publishInvalidation(entry.key());
+    }
+
+    /**
+     * Delete the Postgres records whose dedupe window has passed. Every node runs the purge;
+     * overlapping deletes are harmless.
+     */
+    @Scheduled(fixedDelayString = "${ontop.idempotency.retention.purge-interval-ms:60000}")
+    public void purgeExpiredRecords() {
+        try {
+            Instant now = Instant.now();
+            int purged = 0;
+            int deleted;
+            do {
+                deleted = recordPort.deleteExpired(now, retention.getPurgeBatchSize());
+                purged += deleted;
+            } while (deleted == retention.getPurgeBatchSize());
+
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency records", purged);
+            }
+        } catch (Exception e) {
+            log.error("Error purging expired idempotency records: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load the keys of the dedupe window into the key filter, so it can rule keys out right away instead
+     * of after a full window. Runs before the node reports ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadKeyFilter() {
+        if (keyFilter == null) {
+            return;
+        }
+
+        try {
+            long[] loaded = {0};
+            recordPort.forEachKeyHash(Instant.now(), keyHash -> {
+                keyFilter.add(filterHash(keyHash));
+                loaded[0]++;
+            });
+            keyFilter.markWarm();
+            log.info("Loaded {} idempotency keys into the key filter", loaded[0]);
+        } catch (Exception e) {
+            // The filter keeps deferring to the stores until it has seen a full window
+            log.warn("Could not load idempotency keys into the key filter: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the near copy of a key written by another node and add it to the key filter
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (nearCache == null && keyFilter == null) {
+            return;
+        }
+
+        Object payload = redisAccess.deserialize(message.getBody());
+        if (!(payload instanceof String invalidation)) {
+            return;
+        }
+
+        int separator = invalidation.indexOf(SEPARATOR);
+        if (separator < 0 || invalidation.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        String idempotencyKey = invalidation.substring(separator + 1);
+        rememberKey(idempotencyKey);
+        if (nearCache != null) {
+            nearCache.invalidate(idempotencyKey);
+        }
+    }
+
+    private boolean isSavable(String idempotencyKey, WithdrawalResponse response) {
         if (idempotencyKey == null || idempotencyKey.isEmpty()) {
             log.warn("Attempted to save response with null or empty idempotency key");
-            return;
+            return false;
         }
 
         if (response == null) {
             log.warn("Attempted to save null response for idempotency key: {}", idempotencyKey);
+            return false;
+        }
+        return true;
+    }
+
+    private void persist(String idempotencyKey, WithdrawalResponse response) {
+        try {
+            recordPort.save(keyHash(idempotencyKey), response, Instant.now().plus(retention.getDurable()));
+        } catch (Exception e) {
+            // Redis and the journal still hold the response for its hot TTL
+            log.error("Error persisting idempotency key {}: {}", idempotencyKey, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Look a key up behind Redis: first the journal of responses saved during an outage, then Postgres.
+     * A Postgres hit is copied back to Redis.
+     */
+    private Optional<WithdrawalResponse> readThrough(String idempotencyKey, byte[] keyHash) {
+        Optional<WithdrawalResponse> journaled = journal.get(idempotencyKey);
+        if (journaled.isPresent()) {
+            return journaled;
+        }
+
+        try {
+            Optional<WithdrawalResponse> stored = recordPort.find(keyHash, Instant.now());
+            stored.ifPresent(response -> {
+                log.info("Found stored response for idempotency key: {}", idempotencyKey);
+                putNear(idempotencyKey, response);
+                warmRedis(idempotencyKey, response);
+            });
+            return stored;
+        } catch (Exception e) {
+            log.error("Error retrieving idempotency key {} from Postgres: {}", idempotencyKey, e.getMessage(), e);
+            return Optional.empty();
+        }
+    }
+
+    private void readThrough(List<String> idempotencyKeys, Map<String, WithdrawalResponse> responses) {
+        Map<ByteBuffer, String> keysByHash = new HashMap<>();
+        for (String idempotencyKey : idempotencyKeys) {
+            Optional<WithdrawalResponse> journaled = journal.get(idempotencyKey);
+            if (journaled.isPresent()) {
+                responses.put(idempotencyKey, journaled.get());
+            } else {
+                keysByHash.put(ByteBuffer.wrap(keyHash(idempotencyKey)), idempotencyKey);
+            }
+        }
+        if (keysByHash.isEmpty()) {
             return;
         }
 
-        String key = buildKey(idempotencyKey);
+        try {
+            List<byte[]> keyHashes = keysByHash.keySet().stream().map(ByteBuffer::array).toList();
+            for (IdempotencyRecordPort.IdempotencyRecord stored : recordPort.findAll(keyHashes, Instant.now())) {
+                String idempotencyKey = keysByHash.get(ByteBuffer.wrap(stored.keyHash()));
+                if (idempotencyKey != null) {
+                    responses.put(idempotencyKey, stored.response());
+                    putNear(idempotencyKey, stored.response());
+                    warmRedis(idempotencyKey, stored.response());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error retrieving {} idempotency keys from Postgres: {}", keysByHash.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetch keys from Redis in one MGET, adding the keys Redis does not answer to missedKeys
+     */
+    private void getRemote(List<String> remoteKeys, Map<String, WithdrawalResponse> responses, List<String> missedKeys) {
+        if (remoteKeys.isEmpty()) {
+            return;
+        }
 
         try {
-            redisTemplate.opsForValue().set(key, response, DEFAULT_TTL);
-            log.info("Successfully saved response for idempotency key: {} with TTL: {}, status: {}", 
-                    idempotencyKey, DEFAULT_TTL, response.getStatus());
+            List<Object> values = redisBreaker.executeSupplier(() ->
+                    redisAccess.multiGet(remoteKeys.stream().map(this::buildKey).toList()));
 
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                String idempotencyKey = remoteKeys.get(i);
+                if (values != null && values.get(i) instanceof WithdrawalResponse response) {
+                    responses.put(idempotencyKey, response);
+                    putNear(idempotencyKey, response);
+                } else {
+                    missedKeys.add(idempotencyKey);
+                }
+            }
         } catch (Exception e) {
-            log.error("Error saving idempotency key {} to Redis: {}", idempotencyKey, e.getMessage(), e);
+            logRedisFailure("retrieving " + remoteKeys.size() + " idempotency keys", e);
+            missedKeys.addAll(remoteKeys);
+        }
+    }
+
+    /**
+     * Write the Redis copy of a response. A final response always wins; an in-flight one is only set
+     * when the key holds nothing yet, so it cannot replace a final response written meanwhile.
+     *
+     * @return false if an in-flight response was not written because the key was already set
+     */
+    private boolean writeHot(String idempotencyKey, WithdrawalResponse response) {
+        if (isTerminal(response)) {
+            redisAccess.set(buildKey(idempotencyKey), response, hotTtl(response));
+            return true;
+        }
+        return Boolean.TRUE.equals(redisAccess.setIfAbsent(buildKey(idempotencyKey), response, hotTtl(response)));
+    }
+
+    /**
+     * Copy a stored final response back to Redis. In-flight ones are short-lived and not worth a
+     * conditional write on the read path.
+     */
+    private void warmRedis(String idempotencyKey, WithdrawalResponse response) {
+        if (!isTerminal(response)) {
+            return;
+        }
+        redisBreaker.executeCompletionStage(() ->
+                        redisAccess.setPipelined(buildKey(idempotencyKey), response, hotTtl(response)))
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        log.debug("Could not copy idempotency key {} back to Redis: {}", idempotencyKey, e.getMessage());
+                    }
+                });
+    }
+
+    private Duration hotTtl(WithdrawalResponse response) {
+        return isTerminal(response) ? retention.getTerminalHotTtl() : retention.getInFlightHotTtl();
+    }
+
+    private static boolean isTerminal(WithdrawalResponse response) {
+        TransactionStatus status = response.getStatus();
+        return status == TransactionStatus.COMPLETED || status == TransactionStatus.FAILED;
+    }
+
+    private void onSaved(String idempotencyKey, WithdrawalResponse response) {
+        log.info("Successfully saved response for idempotency key: {} with TTL: {}, status: {}",
+                idempotencyKey, hotTtl(response), response.getStatus());
+
+        putNear(idempotencyKey, response);
+        rememberKey(idempotencyKey);
+        publishInvalidation(idempotencyKey);
+    }
+
+    private void onSaveFailed(String idempotencyKey, WithdrawalResponse response, Throwable e) {
+        logRedisFailure("saving idempotency key " + idempotencyKey, e);
+        if (journal.append(idempotencyKey, response, hotTtl(response))) {
+            log.warn("Journaled response for idempotency key {} until Redis recovers", idempotencyKey);
+            putNear(idempotencyKey, response);
+            rememberKey(idempotencyKey);
+        } else if (journal.isEnabled()) {
+            log.error("Idempotency journal is full, response for key {} was not kept", idempotencyKey);
+        }
+    }
+
+    private WithdrawalResponse getNear(String idempotencyKey) {
+        if (nearCache == null) {
+            return null;
+        }
+
+        WithdrawalResponse response = nearCache.getIfPresent(idempotencyKey);
+        if (response != null) {
+            nearHits.increment();
+        } else {
+            nearMisses.increment();
         }
+        return response;
+    }
+
+    private void putNear(String idempotencyKey, WithdrawalResponse response) {
+        if (nearCache != null) {
+            nearCache.put(idempotencyKey, response);
+        }
+    }
+
+    private boolean definitelyAbsent(byte[] keyHash) {
+        if (keyFilter == null || keyFilter.mightContain(filterHash(keyHash))) {
+            return false;
+        }
+        filterSkips.increment();
+        return true;
+    }
+
+    private void rememberKey(String idempotencyKey) {
+        if (keyFilter != null) {
+            keyFilter.add(filterHash(keyHash(idempotencyKey)));
+        }
+    }
+
+    private void publishInvalidation(String idempotencyKey) {
+        if (nearCache == null && keyFilter == null) {
+            return;
+        }
+
+        redisBreaker.executeCompletionStage(() ->
+                        redisAccess.publishPipelined(INVALIDATION_CHANNEL, nodeId + SEPARATOR + idempotencyKey))
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        // Other nodes still drop the stale copy when its TTL expires, and their key filter misses
+                        // this key until the in-flight marker or a later save covers it
+                        log.warn("Could not publish near cache invalidation for idempotency key {}: {}",
+                                idempotencyKey, e.getMessage());
+                    }
+                });
+    }
+
+    private void logRedisFailure(String operation, Throwable e) {
+        if (e instanceof CallNotPermittedException) {
+            log.debug("Redis circuit open, skipped {}", operation);
+        } else {
+            log.error("Error {} in Redis: {}", operation, e.getMessage(), e);
+        }
+    }
+
+    private static byte[] keyHash(String idempotencyKey) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static long filterHash(byte[] keyHash) {
+        return ByteBuffer.wrap(keyHash).getLong();
     }
 
     private String buildKey(String idempotencyKey) {
         return IDEMPOTENCY_PREFIX + idempotencyKey;
     }
 }
-
@@ -0,0 +1,106 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.exception.ExternalServiceException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Fork/join scope for independent downstream lookups, shaped after StructuredTaskScope.ShutdownOnFailure
+ * (still a preview API in Java 21). The first failing lookup cancels and interrupts its siblings, and
+ * join() rethrows that failure. Not thread-safe: fork and join are called by the owning thread only.
+ */
+final class LookupScope {
+
+    private final Executor executor;
+    private final List<FutureTask<?>> tasks = new ArrayList<>();
+    private int pending;
+    private Throwable failure;
+
+    LookupScope(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Start a lookup
+     *
+     * @param lookup The lookup to run
+     * @return Supplier of the result, only valid after a successful join()
+     */
+    <T> Supplier<T> fork(Callable<T> lookup) {
+        FutureTask<T> task = new FutureTask<>(lookup) {
+            @Override
+            protected void done() {
+                onDone(this);
+            }
+        };
+
+        synchronized (this) {
+            if (failure != null) {
+                return task::resultNow;
+            }
+            tasks.add(task);
+            pending++;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The task will never run, so it fails the scope like a failing lookup would
+            synchronized (this) {
+                tasks.remove(task);
+                pending--;
+                if (failure == null) {
+                    failure = new ExternalServiceException("Lookup was rejected by its executor", e);
+                    tasks.forEach(other -> other.cancel(true));
+                }
+                notifyAll();
+            }
+        }
+        return task::resultNow;
+    }
+
+    /**
+     * Wait for all lookups, or for the first failure
+     *
+     * @throws RuntimeException The first failure, as thrown by the lookup
+     */
+    synchronized void join() {
+        try {
+            while (pending > 0 && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(task -> task.cancel(true));
+            throw new ExternalServiceException("Interrupted while waiting for lookups", e);
+        }
+
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure != null) {
+            throw new ExternalServiceException("Lookup failed", failure);
+        }
+    }
+
+    private synchronized void onDone(FutureTask<?> task) {
+        pending--;
+        if (failure == null && !task.isCancelled()) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+                tasks.stream().filter(other -> other != task).forEach(other -> other.cancel(true));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        notifyAll();
+    }
+}
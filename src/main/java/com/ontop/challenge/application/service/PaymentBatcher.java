@@ -0,0 +1,184 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
+import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.PaymentOutcomeUnknownException;
+import com.ontop.challenge.application.port.out.PaymentsClientPort;
+import com.ontop.challenge.infrastructure.config.PaymentBatchingConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Micro-batching stage in front of PaymentsClientPort.createPayments.
+ * Concurrent withdrawals hand in their payment and block; a collector groups them for up to
+ * maxWait or maxItems, sends one batch call and hands each withdrawal its own response.
+ * A withdrawal waits at most responseTimeout for its response.
+ */
+@Service
+@Slf4j
+public class PaymentBatcher {
+
+    private final PaymentsClientPort paymentsClient;
+    private final PaymentBatchingConfig config;
+    private final Executor lookupExecutor;
+    private final DistributionSummary batchSize;
+    private final BlockingQueue<PendingPayment> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread collector;
+
+    public PaymentBatcher(PaymentsClientPort paymentsClient,
+                          PaymentBatchingConfig config,
+                          @Qualifier("lookupExecutor") Executor lookupExecutor,
+                          MeterRegistry meterRegistry) {
+        this.paymentsClient = paymentsClient;
+        this.config = config;
+        this.lookupExecutor = lookupExecutor;
+        this.batchSize = DistributionSummary.builder("payments.batch.size")
+                .description("Payments sent per batch call")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        running = true;
+        collector = Thread.ofPlatform().name("payment-batcher").daemon().start(this::collect);
+        log.info("Payment batching enabled, maxItems: {}, maxWait: {}", config.getMaxItems(), config.getMaxWait());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+        PendingPayment pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new ExternalServiceException("Payment batcher stopped"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Submit a payment to the next batch and wait for its response
+     *
+     * @param request The payment request details
+     * @return The payment response from the provider
+     * @throws ExternalServiceException if the batch failed, or the payment was never sent
+     * @throws PaymentOutcomeUnknownException if the payment was sent but not answered within responseTimeout
+     */
+    public PaymentResponse createPayment(PaymentRequest request) {
+        PendingPayment pending = new PendingPayment(request, new CompletableFuture<>());
+        queue.add(pending);
+
+        try {
+            return pending.result().get(config.getResponseTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ExternalServiceException("Failed to create payment", e.getCause());
+        } catch (TimeoutException e) {
+            // Still queued means it was never sent; otherwise the batch may yet reach the provider
+            if (queue.remove(pending)) {
+                throw new ExternalServiceException(String.format(
+                        "No payment response within %s, payment was not sent", config.getResponseTimeout()), e);
+            }
+            throw new PaymentOutcomeUnknownException(String.format(
+                    "No payment response within %s, payment may have been sent", config.getResponseTimeout()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (queue.remove(pending)) {
+                throw new ExternalServiceException("Interrupted while waiting for payment response, payment was not sent", e);
+            }
+            throw new PaymentOutcomeUnknownException("Interrupted while waiting for payment response", e);
+        }
+    }
+
+    private void collect() {
+        while (running) {
+            List<PendingPayment> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                // Sending happens off the collector so a slow provider call does not delay the next batch
+                lookupExecutor.execute(() -> send(batch));
+            } catch (RuntimeException e) {
+                // The collector must survive, otherwise every later payment waits for nothing
+                log.error("Could not hand off payment batch of {}: {}", batch.size(), e.getMessage());
+                ExternalServiceException failure = new ExternalServiceException("Failed to send payment batch", e);
+                batch.forEach(pending -> pending.result().completeExceptionally(failure));
+            }
+        }
+    }
+
+    private List<PendingPayment> nextBatch() throws InterruptedException {
+        List<PendingPayment> batch = new ArrayList<>(config.getMaxItems());
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + config.getMaxWait().toNanos();
+        while (batch.size() < config.getMaxItems()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingPayment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void send(List<PendingPayment> batch) {
+        batchSize.record(batch.size());
+        try {
+            List<PaymentResponse> responses = paymentsClient.createPayments(
+                    batch.stream().map(PendingPayment::request).toList());
+
+            if (responses.size() != batch.size()) {
+                throw new ExternalServiceException(String.format(
+                        "Payment provider returned %d responses for %d payments", responses.size(), batch.size()));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(responses.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.error("Payment batch of {} failed: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private record PendingPayment(
+            PaymentRequest request,
+            CompletableFuture<PaymentResponse> result
+    ) {}
+}
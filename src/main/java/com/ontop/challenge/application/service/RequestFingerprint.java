@@ -0,0 +1,82 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.exception.IdempotentConflictException;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * 64-bit fingerprint of the fields that define a withdrawal: userId, accountId, amount and currency.
+ * The fingerprint is stored inside the cached response, so a replay is checked against the original
+ * request without any extra lookup.
+ * <p>
+ * Fields are canonicalized first: amounts are compared by value (1000 and 1000.00 match) and currencies
+ * case-insensitively. Each field is then folded in with the SplitMix64 finalizer, which is enough to tell
+ * two bodies apart; it is not meant to resist deliberate collisions.
+ */
+public final class RequestFingerprint {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private RequestFingerprint() {
+    }
+
+    /**
+     * @param req The withdrawal request
+     * @return Fingerprint of the request, equal for requests that describe the same withdrawal
+     */
+    public static long of(WithdrawRequest req) {
+        long hash = SEED;
+        hash = fold(hash, req.getUserId() != null ? req.getUserId() : 0);
+        UUID accountId = req.getAccountId();
+        hash = fold(hash, accountId != null ? accountId.getMostSignificantBits() : 0);
+        hash = fold(hash, accountId != null ? accountId.getLeastSignificantBits() : 0);
+        if (req.getAmount() != null) {
+            BigDecimal amount = req.getAmount().stripTrailingZeros();
+            hash = fold(hash, amount.scale());
+            hash = fold(hash, amount.unscaledValue().longValue());
+            hash = fold(hash, amount.unscaledValue().bitLength());
+        }
+        if (req.getCurrency() != null) {
+            hash = fold(hash, req.getCurrency().toUpperCase(Locale.ROOT).hashCode());
+        }
+        return hash;
+    }
+
+    /**
+     * Stamp a response with the fingerprint of the request it answers
+     */
+    public static WithdrawalResponse stamp(WithdrawalResponse response, WithdrawRequest req) {
+        response.setRequestFingerprint(of(req));
+        return response;
+    }
+
+    /**
+     * Check that a cached response answers this request. Responses cached before fingerprints were
+     * stored carry none and are accepted.
+     *
+     * @throws IdempotentConflictException if the response was stored for a different request body
+     */
+    public static void verify(WithdrawRequest req, WithdrawalResponse response) {
+        if (!matches(req, response)) {
+            throw new IdempotentConflictException(
+                    "Idempotency-Key was already used with a different request body");
+        }
+    }
+
+    public static boolean matches(WithdrawRequest req, WithdrawalResponse response) {
+        Long stored = response.getRequestFingerprint();
+        return stored == null || stored == of(req);
+    }
+
+    private static long fold(long hash, long value) {
+        long z = hash ^ value;
+        z += SEED;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ontop.challenge.application.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Bloom filter of the keys added within a time window, built from two generations. Keys are given as
+ * uniformly distributed 64-bit hashes, such as a prefix of a cryptographic digest. Keys go into
+ * the current generation and are looked up in both; once the current generation is a window old it
+ * becomes the previous one and the oldest is dropped. A key is therefore remembered for at least one
+ * window after it was last added, and at most two.
+ * <p>
+ * The filter only answers "definitely absent" once it has been running for a full window, since keys
+ * added before it started are unknown to it, unless the owner loads those keys and calls markWarm().
+ * Adds and lookups are lock-free, rotation is serialized.
+ */
+final class RotatingBloomFilter {
+
+    private final long windowNanos;
+    private final int bits;
+    private final int hashes;
+    private final LongSupplier clock;
+    private volatile long warmUntil;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    RotatingBloomFilter(Duration window, long expectedKeys, double falsePositiveRate) {
+        this(window, expectedKeys, falsePositiveRate, System::nanoTime);
+    }
+
+    RotatingBloomFilter(Duration window, long expectedKeys, double falsePositiveRate, LongSupplier clock) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false positive rate within (0, 1)");
+        }
+
+        // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hash functions
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (int) Math.min(Math.max(optimalBits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+        this.windowNanos = window.toNanos();
+        this.clock = clock;
+
+        long now = clock.getAsLong();
+        this.warmUntil = now + windowNanos;
+        this.current = new Generation(bits, now);
+        this.previous = new Generation(bits, now);
+    }
+
+    void add(long hash) {
+        Generation generation = rotateIfNeeded();
+        for (int i = 0; i < hashes; i++) {
+            generation.set(index(hash, i));
+        }
+    }
+
+    /**
+     * @return false only if the key was definitely not added within the last window
+     */
+    boolean mightContain(long hash) {
+        if (clock.getAsLong() - warmUntil < 0) {
+            return true;
+        }
+
+        Generation newest = rotateIfNeeded();
+        Generation oldest = previous;
+        return newest.containsAll(this, hash) || oldest.containsAll(this, hash);
+    }
+
+    /**
+     * Start answering "definitely absent" now, once every key of the last window has been added
+     */
+    void markWarm() {
+        warmUntil = clock.getAsLong();
+    }
+
+    int bitsPerGeneration() {
+        return bits;
+    }
+
+    int hashFunctions() {
+        return hashes;
+    }
+
+    private Generation rotateIfNeeded() {
+        Generation generation = current;
+        if (clock.getAsLong() - generation.startedAt < windowNanos) {
+            return generation;
+        }
+
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (now - current.startedAt >= windowNanos) {
+                // After more than two idle windows both generations are stale
+                previous = now - current.startedAt >= 2 * windowNanos ? new Generation(bits, now) : current;
+                current = new Generation(bits, now);
+            }
+            return current;
+        }
+    }
+
+    // Kirsch-Mitzenmacher double hashing over two halves of a 64-bit hash
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + i * h2, bits);
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray words;
+        private final long startedAt;
+
+        Generation(int bits, long startedAt) {
+            this.words = new AtomicLongArray((bits + Long.SIZE - 1) / Long.SIZE);
+            this.startedAt = startedAt;
+        }
+
+        void set(int bit) {
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long value;
+            do {
+                value = words.get(word);
+                if ((value & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, value, value | mask));
+        }
+
+        boolean containsAll(RotatingBloomFilter filter, long hash) {
+            for (int i = 0; i < filter.hashes; i++) {
+                int bit = filter.index(hash, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports withdrawals stuck in PROCESSING, e.g. after a crash between the wallet debit and the payment.
+ * The outbox never replays a withdrawal once it left PENDING, since the wallet may already have been
+ * debited, so these need reconciliation against the wallet and the payment provider.
+ * The withdrawal.processing.stale gauge is meant for alerting.
+ */
+@Service
+@Slf4j
+public class StaleWithdrawalMonitor {
+
+    private static final int LOGGED_IDS = 20;
+
+    private final TransactionRepositoryPort transactionRepositoryPort;
+    private final OutboxConfig config;
+    private final AtomicLong stale = new AtomicLong();
+
+    public StaleWithdrawalMonitor(TransactionRepositoryPort transactionRepositoryPort,
+                                  OutboxConfig config,
+                                  MeterRegistry meterRegistry) {
+        this.transactionRepositoryPort = transactionRepositoryPort;
+        this.config = config;
+
+        Gauge.builder("withdrawal.processing.stale", stale, AtomicLong::get)
+                .description("Withdrawals PROCESSING for longer than stale-processing-after")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "#{@outboxConfig.staleCheckIntervalMs}")
+    public void checkStaleProcessing() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        try {
+            Instant updatedBefore = Instant.now().minus(config.getStaleProcessingAfter());
+            long count = transactionRepositoryPort.countByStatusUpdatedBefore(TransactionStatus.PROCESSING, updatedBefore);
+            stale.set(count);
+
+            if (count > 0) {
+                List<UUID> oldest = transactionRepositoryPort.findIdsByStatusUpdatedBefore(
+                        TransactionStatus.PROCESSING, updatedBefore, LOGGED_IDS);
+                log.error("{} withdrawals stuck in PROCESSING since before {} need reconciliation, oldest: {}",
+                        count, updatedBefore, oldest);
+            }
+        } catch (Exception e) {
+            log.error("Error checking for withdrawals stuck in PROCESSING: {}", e.getMessage(), e);
+        }
+    }
+}
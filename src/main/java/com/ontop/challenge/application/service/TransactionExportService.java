@@ -0,0 +1,213 @@
+package com.ontop.challenge.application.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.ontop.challenge.application.port.out.TransactionExportPort;
+import com.ontop.challenge.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Exports the transactions created in a time range, for finance reconciliation.
+ * Each row is written to the output as soon as it is read from the database, so an export of any size
+ * runs in constant memory.
+ * The response is already committed once rows are written, so a failure mid-export cannot turn into an
+ * error status. Every complete export therefore ends with a trailer record carrying the row count; an
+ * export without it was cut off.
+ */
+@Service
+@Slf4j
+public class TransactionExportService {
+
+    private static final String CSV_HEADER = "id,user_id,amount,fee,net_amount,currency,status,provider_payment_id,"
+            + "wallet_tx_id,failure_reason,destination_account_id,created_at,updated_at";
+    private static final String CSV_TRAILER = "#row_count,";
+    private static final String JSON_TRAILER_TYPE = "trailer";
+
+    private final TransactionExportPort exportPort;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public TransactionExportService(TransactionExportPort exportPort) {
+        this.exportPort = exportPort;
+    }
+
+    public enum Format {
+        NDJSON,
+        CSV;
+
+        /**
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is empty or reversed
+     */
+    public void validateRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+    }
+
+    /**
+     * Write the transactions created in [from, to) to the output
+     *
+     * @param from Inclusive lower bound on the creation time
+     * @param to Exclusive upper bound on the creation time
+     * @param format Output format
+     * @param out Destination, flushed but not closed
+     * @return Number of transactions written
+     * @throws IOException if the output fails; no trailer is written then
+     */
+    public long export(Instant from, Instant to, Format format, OutputStream out) throws IOException {
+        validateRange(from, to);
+        long started = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long[] rows = {0};
+
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                exportPort.forEachCreatedBetween(from, to, unchecked(tx -> {
+                    writeCsv(writer, tx);
+                    rows[0]++;
+                }));
+                writer.write(CSV_TRAILER);
+                writer.write(Long.toString(rows[0]));
+                writer.write('\n');
+            } else {
+                JsonGenerator json = jsonFactory.createGenerator(writer);
+                // The generator only hands its buffer to the writer; the writer decides when the response is flushed
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+                json.setRootValueSeparator(null);
+                exportPort.forEachCreatedBetween(from, to, unchecked(tx -> {
+                    writeJson(json, tx);
+                    json.flush();
+                    writer.write('\n');
+                    rows[0]++;
+                }));
+                json.writeStartObject();
+                json.writeStringField("type", JSON_TRAILER_TYPE);
+                json.writeNumberField("rowCount", rows[0]);
+                json.writeEndObject();
+                json.close();
+                writer.write('\n');
+            }
+        } catch (UncheckedIOException e) {
+            // Mostly the client going away mid-export
+            log.warn("Transaction export cut off after {} rows: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            // The rows written so far reach the client without a trailer, which marks the export as truncated
+            log.error("Transaction export failed after {} rows: {}", rows[0], e.getMessage(), e);
+            throw e;
+        }
+        writer.flush();
+
+        log.info("Exported {} transactions created between {} and {} as {} in {} ms",
+                rows[0], from, to, format, (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+
+    private void writeJson(JsonGenerator json, Transaction tx) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("id", tx.getId().toString());
+        json.writeNumberField("userId", tx.getUserId());
+        json.writeNumberField("amount", tx.getAmount());
+        json.writeNumberField("fee", tx.getFee());
+        json.writeNumberField("netAmount", tx.getNetAmount());
+        json.writeStringField("currency", tx.getCurrency());
+        json.writeStringField("status", tx.getStatus().name());
+        json.writeStringField("providerPaymentId", tx.getProviderPaymentId());
+        if (tx.getWalletTxId() != null) {
+            json.writeNumberField("walletTxId", tx.getWalletTxId());
+        } else {
+            json.writeNullField("walletTxId");
+        }
+        json.writeStringField("failureReason", tx.getFailureReason());
+        json.writeStringField("destinationAccountId", tx.getDestinationAccountId().toString());
+        json.writeStringField("createdAt", tx.getCreatedAt().toString());
+        json.writeStringField("updatedAt", tx.getUpdatedAt().toString());
+        json.writeEndObject();
+    }
+
+    private void writeCsv(Writer writer, Transaction tx) throws IOException {
+        writer.write(tx.getId().toString());
+        writer.write(',');
+        writer.write(tx.getUserId().toString());
+        writer.write(',');
+        writer.write(tx.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(tx.getFee().toPlainString());
+        writer.write(',');
+        writer.write(tx.getNetAmount().toPlainString());
+        writer.write(',');
+        writer.write(tx.getCurrency());
+        writer.write(',');
+        writer.write(tx.getStatus().name());
+        writer.write(',');
+        writeCsvField(writer, tx.getProviderPaymentId());
+        writer.write(',');
+        writer.write(tx.getWalletTxId() != null ? tx.getWalletTxId().toString() : "");
+        writer.write(',');
+        writeCsvField(writer, tx.getFailureReason());
+        writer.write(',');
+        writer.write(tx.getDestinationAccountId().toString());
+        writer.write(',');
+        writer.write(tx.getCreatedAt().toString());
+        writer.write(',');
+        writer.write(tx.getUpdatedAt().toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Free-text fields are quoted per RFC 4180 when they contain a separator, a quote or a line break
+     */
+    private void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static Consumer<Transaction> unchecked(RowWriter rowWriter) {
+        return tx -> {
+            try {
+                rowWriter.write(tx);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Transaction tx) throws IOException;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.port.out.TransactionPartitionPort;
+import com.ontop.challenge.infrastructure.config.PartitionConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of transactions ahead of time and detaches the ones past retention.
+ * Partitions are created months before they are needed, so an insert never finds its month missing
+ * even if the job does not run for a while. Every node runs the maintenance; creation is idempotent
+ * and a detach that lost the race to another node fails harmlessly.
+ */
+@Service
+@Slf4j
+public class TransactionPartitionMaintenanceService {
+
+    private final TransactionPartitionPort partitionPort;
+    private final PartitionConfig config;
+
+    public TransactionPartitionMaintenanceService(TransactionPartitionPort partitionPort, PartitionConfig config) {
+        this.partitionPort = partitionPort;
+        this.config = config;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${ontop.partitions.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        maintainPartitions(YearMonth.now());
+    }
+
+    void maintainPartitions(YearMonth current) {
+        List<YearMonth> existing;
+        try {
+            existing = partitionPort.findPartitions();
+        } catch (Exception e) {
+            log.error("Error listing transactions partitions: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (int i = 0; i <= config.getMonthsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!existing.contains(month)) {
+                try {
+                    partitionPort.createPartition(month);
+                    log.info("Created transactions partition for {}", month);
+                } catch (Exception e) {
+                    log.error("Error creating transactions partition for {}: {}", month, e.getMessage(), e);
+                }
+            }
+        }
+
+        if (config.getRetentionMonths() <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(config.getRetentionMonths());
+        for (YearMonth month : existing) {
+            if (month.isBefore(oldestKept)) {
+                try {
+                    partitionPort.detachPartition(month);
+                    log.info("Detached transactions partition for {}", month);
+                } catch (Exception e) {
+                    log.warn("Could not detach transactions partition for {}: {}", month, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.ontop.challenge.application.service;
 
 import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
 import com.ontop.challenge.application.port.out.AccountServicePort;
+import com.ontop.challenge.application.port.out.BalanceHoldPort;
 import com.ontop.challenge.application.port.out.PaymentsClientPort;
 import com.ontop.challenge.application.port.out.WalletClientPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
 import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
 import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
 import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
@@ -14,12 +16,29 @@ import com.ontop.challenge.domain.TransactionStatus;
 import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
 import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.PaymentOutcomeUnknownException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -28,38 +47,195 @@ public class WithdrawService {
     private final TransactionRepositoryPort transactionRepositoryPort;
     private final WalletClientPort walletClient;
     private final PaymentsClientPort paymentsClient;
+    private final PaymentBatcher paymentBatcher;
     private final AccountServicePort accountService;
+    private final WithdrawalOutboxPort withdrawalOutboxPort;
+    private final BalanceHoldPort balanceHoldPort;
     private final WithdrawalConfig config;
     private final TransactionMapper mapper;
+    private final Executor lookupExecutor;
+    private final TransactionTemplate transactionTemplate;
 
     public WithdrawService(
             TransactionRepositoryPort transactionRepositoryPort,
             WalletClientPort walletClient,
             PaymentsClientPort paymentsClient,
+            PaymentBatcher paymentBatcher,
             AccountServicePort accountService,
-            WithdrawalConfig config, TransactionMapper mapper) {
+            WithdrawalOutboxPort withdrawalOutboxPort,
+            BalanceHoldPort balanceHoldPort,
+            WithdrawalConfig config, TransactionMapper mapper,
+            @Qualifier("lookupExecutor") Executor lookupExecutor,
+            PlatformTransactionManager transactionManager) {
         this.transactionRepositoryPort = transactionRepositoryPort;
         this.walletClient = walletClient;
         this.paymentsClient = paymentsClient;
+        this.paymentBatcher = paymentBatcher;
         this.accountService = accountService;
+        this.withdrawalOutboxPort = withdrawalOutboxPort;
+        this.balanceHoldPort = balanceHoldPort;
         this.config = config;
         this.mapper = mapper;
+        this.lookupExecutor = lookupExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
+    /**
+     * Run the background phase of a withdrawal. Not transactional on purpose: every state
+     * transition commits on its own, so progress is visible and no DB connection is held
+     * across the wallet and payments calls.
+     * A withdrawal rejected by the lookups is marked FAILED and its hold released before the error is rethrown.
+     */
     public WithdrawalResponse executeWithdrawal(WithdrawRequest req, Transaction transaction) {
         WithdrawalContext context = prepareWithdrawal(req);
-        ensureSufficientFunds(req.getUserId(), context.totalDebit);
-        return processWithdrawal(transaction, req, context);
+
+        // The funds check and the destination account lookup are independent, the first failure cancels the other
+        LookupScope lookups = new LookupScope(lookupExecutor);
+        Supplier<PaymentRequest.Destination> destination;
+        try {
+            lookups.fork(() -> {
+                // The amount was reserved when the PENDING row was created, only an expired hold needs a new wallet lookup
+                if (!balanceHoldPort.hasActiveHold(transaction.getId())) {
+                    log.info("No active balance hold for transactionId: {}, re-checking wallet balance", transaction.getId());
+                    ensureSufficientFunds(req.getUserId(), context.totalDebit);
+                }
+                return null;
+            });
+            destination = lookups.fork(() -> buildDestination(req.getAccountId()));
+            lookups.join();
+        } catch (RuntimeException e) {
+            reject(transaction, e);
+            throw e;
+        }
+        PaymentRequest.Source source = buildSource();
+
+        PaymentRequest paymentRequest = PaymentRequest.builder()
+                .source(source)
+                .destination(destination.get())
+                .amount(context.netAmount)
+                .build();
+
+        return processWithdrawal(transaction, req, context, paymentRequest);
     }
 
+    /**
+     * Create the PENDING transaction, its balance hold and its outbox entry in a single DB transaction,
+     * so an accepted withdrawal is never lost before background processing picks it up.
+     * The wallet balance is fetched before that transaction starts, so neither the user lock nor a DB
+     * connection is held across the wallet call. Holds debited since the balance was requested still
+     * count against it, in case the balance does not reflect their debit yet.
+     */
     public Transaction createInitialTransaction(WithdrawRequest req) {
         WithdrawalContext context = prepareWithdrawal(req);
+        Instant balanceReadAt = balanceReadTime();
+        BigDecimal balance = fetchBalance(req.getUserId());
+
+        return transactionTemplate.execute(status -> {
+            // Serializes withdrawals of the same user until commit, so two of them cannot spend the same balance
+            BigDecimal heldAmount = balanceHoldPort.lockAndSumActiveHolds(req.getUserId(), balanceReadAt);
+            ensureSufficientFunds(req.getUserId(), balance, heldAmount, context.totalDebit);
+
+            Transaction transaction = createPendingTransaction(context);
+            balanceHoldPort.hold(transaction.getId(), req.getUserId(), context.totalDebit,
+                    Instant.now().plus(config.getHoldTtl()));
+            withdrawalOutboxPort.enqueue(transaction, req);
+            return transaction;
+        });
+    }
 
-        ensureSufficientFunds(req.getUserId(), context.totalDebit);
+    /**
+     * Batch variant of {@link #createInitialTransaction(WithdrawRequest)} for one chunk of a batch request.
+     * Wallet balances are fetched once per distinct user and in parallel before the DB transaction starts,
+     * and all rows of the chunk are flushed as JDBC batches in that single transaction. A rejected item
+     * does not affect the others.
+     *
+     * @param requests The withdrawal requests of the chunk
+     * @return One outcome per request, in the same order
+     */
+    public List<InitialTransactionOutcome> createInitialTransactions(List<WithdrawRequest> requests) {
+        List<WithdrawalContext> contexts = requests.stream().map(this::prepareWithdrawal).toList();
+        Set<Long> userIds = new LinkedHashSet<>(requests.stream().map(WithdrawRequest::getUserId).toList());
+
+        Instant balanceReadAt = balanceReadTime();
+        Map<Long, CompletableFuture<Optional<BigDecimal>>> balances = new HashMap<>();
+        for (Long userId : userIds) {
+            balances.put(userId, CompletableFuture.supplyAsync(() -> walletClient.getBalance(userId), lookupExecutor));
+        }
+        // Failed lookups only reject the items of their user, awaitBalance rethrows them per item
+        CompletableFuture.allOf(balances.values().toArray(CompletableFuture[]::new))
+                .handle((ignored, e) -> null)
+                .join();
 
-        return createPendingTransaction(context);
+        return transactionTemplate.execute(status ->
+                createLockedTransactions(contexts, userIds, balances, balanceReadAt));
+    }
 
+    private List<InitialTransactionOutcome> createLockedTransactions(
+            List<WithdrawalContext> contexts,
+            Set<Long> userIds,
+            Map<Long, CompletableFuture<Optional<BigDecimal>>> balances,
+            Instant balanceReadAt) {
+        Map<Long, BigDecimal> heldAmounts = balanceHoldPort.lockAndSumActiveHolds(userIds, balanceReadAt);
+
+        Map<Long, BigDecimal> available = new HashMap<>();
+        RuntimeException[] errors = new RuntimeException[contexts.size()];
+        List<Transaction> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+
+        for (int i = 0; i < contexts.size(); i++) {
+            WithdrawalContext context = contexts.get(i);
+            Long userId = context.request.getUserId();
+            try {
+                BigDecimal remaining = available.computeIfAbsent(userId, id ->
+                        awaitBalance(id, balances.get(id)).subtract(heldAmounts.getOrDefault(id, BigDecimal.ZERO)));
+
+                if (remaining.compareTo(context.totalDebit) < 0) {
+                    log.warn("Insufficient funds for userId: {}, available: {}, required: {}",
+                            userId, remaining, context.totalDebit);
+                    throw new InsufficientFundsException(String.format(
+                            "Insufficient funds. Balance: %s, Required: %s", remaining, context.totalDebit));
+                }
+
+                available.put(userId, remaining.subtract(context.totalDebit));
+                accepted.add(newPendingTransaction(context));
+                acceptedIndexes.add(i);
+            } catch (RuntimeException e) {
+                errors[i] = e;
+            }
+        }
+
+        List<Transaction> saved = accepted.isEmpty() ? List.of() : transactionRepositoryPort.saveAll(accepted);
+        Instant holdExpiry = Instant.now().plus(config.getHoldTtl());
+
+        Transaction[] transactions = new Transaction[contexts.size()];
+        for (int j = 0; j < saved.size(); j++) {
+            int index = acceptedIndexes.get(j);
+            Transaction transaction = saved.get(j);
+            WithdrawalContext context = contexts.get(index);
+
+            balanceHoldPort.hold(transaction.getId(), context.request.getUserId(), context.totalDebit, holdExpiry);
+            withdrawalOutboxPort.enqueue(transaction, context.request);
+            transactions[index] = transaction;
+        }
+        log.info("Created {} PENDING transactions out of {} batch items", saved.size(), contexts.size());
+
+        List<InitialTransactionOutcome> outcomes = new ArrayList<>(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            outcomes.add(new InitialTransactionOutcome(transactions[i], errors[i]));
+        }
+        return outcomes;
+    }
+
+    private BigDecimal awaitBalance(Long userId, CompletableFuture<Optional<BigDecimal>> balance) {
+        try {
+            return balance.join()
+                    .orElseThrow(() -> new IllegalArgumentException("User wallet not found: " + userId));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     private WithdrawalContext prepareWithdrawal(WithdrawRequest req) {
@@ -73,18 +249,41 @@ public class WithdrawService {
     }
 
     private void ensureSufficientFunds(Long userId, BigDecimal requiredAmount) {
-        BigDecimal balance = walletClient.getBalance(userId)
+        ensureSufficientFunds(userId, fetchBalance(userId), BigDecimal.ZERO, requiredAmount);
+    }
+
+    /**
+     * Taken before the wallet call and moved back by the allowed clock skew, so every debit the
+     * balance may be missing was marked on its hold after this time
+     */
+    private Instant balanceReadTime() {
+        return Instant.now().minus(config.getClockSkew());
+    }
+
+    private BigDecimal fetchBalance(Long userId) {
+        return walletClient.getBalance(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User wallet not found: " + userId));
+    }
+
+    private void ensureSufficientFunds(Long userId, BigDecimal balance, BigDecimal heldAmount, BigDecimal requiredAmount) {
+        BigDecimal available = balance.subtract(heldAmount);
 
-        if (balance.compareTo(requiredAmount) < 0) {
-            log.warn("Insufficient funds for userId: {}, balance: {}, required: {}", userId, balance, requiredAmount);
+        if (available.compareTo(requiredAmount) < 0) {
+            log.warn("Insufficient funds for userId: {}, balance: {}, held: {}, required: {}",
+                    userId, balance, heldAmount, requiredAmount);
             throw new InsufficientFundsException(
-                    String.format("Insufficient funds. Balance: %s, Required: %s", balance, requiredAmount));
+                    String.format("Insufficient funds. Balance: %s, Required: %s", available, requiredAmount));
         }
     }
 
     private Transaction createPendingTransaction(WithdrawalContext context) {
-        Transaction transaction = new Transaction(
+        Transaction transaction = transactionRepositoryPort.save(newPendingTransaction(context));
+        log.info("Created PENDING transaction, transactionId: {}", transaction.getId());
+        return transaction;
+    }
+
+    private Transaction newPendingTransaction(WithdrawalContext context) {
+        return new Transaction(
             null,
             context.request.getUserId(),
             context.request.getAmount(),
@@ -99,57 +298,81 @@ public class WithdrawService {
             null,
             null,
             null);
-
-        transaction = transactionRepositoryPort.save(transaction);
-        log.info("Created PENDING transaction, transactionId: {}", transaction.getId());
-        return transaction;
     }
 
-    private WithdrawalResponse processWithdrawal(Transaction transaction, WithdrawRequest req, WithdrawalContext context) {
+    private WithdrawalResponse processWithdrawal(Transaction transaction, WithdrawRequest req,
+                                                 WithdrawalContext context, PaymentRequest paymentRequest) {
         try {
-            transaction.setStatus(TransactionStatus.PROCESSING);
-            transaction = transactionRepositoryPort.save(transaction);
+            transaction = transactionRepositoryPort.transitionStatus(transaction, TransactionStatus.PROCESSING);
 
-            debitWallet(transaction, req.getUserId(), context.totalDebit);
-            sendPayment(transaction, req, context.netAmount);
+            transaction = debitWallet(transaction, req.getUserId(), context.totalDebit);
+            transaction = sendPayment(transaction, paymentRequest);
 
-            transaction = transactionRepositoryPort.save(transaction);
             log.info("Withdrawal completed, transactionId: {}, status: {}",
                     transaction.getId(), transaction.getStatus());
 
             return mapper.transactionToWithdrawalResponse(transaction);
 
+        } catch (PaymentOutcomeUnknownException e) {
+            // The provider may still pay it out, so it is neither COMPLETED nor FAILED; left for reconciliation
+            log.error("Payment outcome unknown, transactionId: {} left PROCESSING, error: {}",
+                    transaction.getId(), e.getMessage());
+            return mapper.transactionToWithdrawalResponse(transaction);
         } catch (ExternalServiceException e) {
             return handleFailure(transaction, e);
+        } catch (OptimisticLockingFailureException e) {
+            // Another run of the same withdrawal moved it on and owns its hold
+            throw e;
+        } catch (RuntimeException e) {
+            // Once the wallet was debited the hold is DEBITED and releasing it is a no-op
+            balanceHoldPort.release(transaction.getId(), transaction.getUserId());
+            throw e;
         }
     }
 
-    private void debitWallet(Transaction transaction, Long userId, BigDecimal amount) {
+    /**
+     * Fail a withdrawal that was rejected before anything was debited and free its reserved amount.
+     * Nothing is released when another run already moved the transaction on.
+     */
+    private void reject(Transaction transaction, RuntimeException cause) {
+        try {
+            transactionRepositoryPort.finish(transaction, TransactionStatus.FAILED, null, cause.getMessage());
+            balanceHoldPort.release(transaction.getId(), transaction.getUserId());
+        } catch (RuntimeException e) {
+            log.warn("Could not mark rejected transaction {} as FAILED: {}", transaction.getId(), e.getMessage());
+            cause.addSuppressed(e);
+        }
+    }
+
+    private Transaction debitWallet(Transaction transaction, Long userId, BigDecimal amount) {
         Long walletTxId = walletClient.createWalletTransaction(userId, amount)
                 .orElseThrow(() -> new ExternalServiceException("Failed to create wallet transaction"));
 
-        transaction.setWalletTxId(walletTxId);
-        transactionRepositoryPort.save(transaction);
+        // Persisted before the payment so a crash in between still leaves a trace of the debit
+        transaction = transactionRepositoryPort.recordWalletTransaction(transaction, walletTxId);
+        // Balances read from now on reflect the debit; the hold only keeps counting against older reads
+        balanceHoldPort.markDebited(transaction.getId(), userId);
         log.info("Wallet debited, walletTxId: {}", walletTxId);
+        return transaction;
     }
 
-    private void sendPayment(Transaction transaction, WithdrawRequest req, BigDecimal netAmount) {
-        PaymentRequest paymentRequest = buildPaymentRequest(req, netAmount);
-        PaymentResponse paymentResponse = paymentsClient.createPayment(paymentRequest);
+    private Transaction sendPayment(Transaction transaction, PaymentRequest paymentRequest) {
+        PaymentResponse paymentResponse = paymentBatcher.isEnabled()
+                ? paymentBatcher.createPayment(paymentRequest)
+                : paymentsClient.createPayment(paymentRequest);
 
-        if (paymentResponse.getPaymentInfo() != null) {
-            transaction.setProviderPaymentId(paymentResponse.getPaymentInfo().getId());
-        }
+        String providerPaymentId = paymentResponse.getPaymentInfo() != null
+                ? paymentResponse.getPaymentInfo().getId()
+                : null;
 
         if (isPaymentSuccessful(paymentResponse)) {
-            transaction.setStatus(TransactionStatus.COMPLETED);
             log.info("Payment successful, transaction COMPLETED");
-        } else {
-            String reason = extractFailureReason(paymentResponse);
-            transaction.setStatus(TransactionStatus.FAILED);
-            transaction.setFailureReason(reason);
-            log.warn("Payment failed, reason: {}", reason);
+            return transactionRepositoryPort.finish(transaction, TransactionStatus.COMPLETED, providerPaymentId, null);
         }
+
+        String reason = extractFailureReason(paymentResponse);
+        log.warn("Payment failed, reason: {}", reason);
+        return transactionRepositoryPort.finish(transaction, TransactionStatus.FAILED, providerPaymentId, reason);
     }
 
     private boolean isPaymentSuccessful(PaymentResponse response) {
@@ -167,13 +390,21 @@ public class WithdrawService {
         log.error("External service error, transactionId: {}, error: {}",
                 transaction.getId(), e.getMessage());
 
-        transaction.setStatus(TransactionStatus.FAILED);
-        transaction.setFailureReason(e.getMessage());
-        transaction = transactionRepositoryPort.save(transaction);
+        transaction = transactionRepositoryPort.finish(
+                transaction, TransactionStatus.FAILED, transaction.getProviderPaymentId(), e.getMessage());
+        balanceHoldPort.release(transaction.getId(), transaction.getUserId());
 
         return mapper.transactionToWithdrawalResponse(transaction);
     }
 
+    /**
+     * Outcome of one item of {@link #createInitialTransactions(List)}: either the PENDING transaction or the error
+     */
+    public record InitialTransactionOutcome(
+            Transaction transaction,
+            RuntimeException error
+    ) {}
+
     private record WithdrawalContext(
             WithdrawRequest request,
             BigDecimal fee,
@@ -191,10 +422,9 @@ public class WithdrawService {
     }
 
     /**
-     * Helper method to build PaymentRequest from WithdrawRequest
+     * Build the payment source (company account from configuration)
      */
-    private PaymentRequest buildPaymentRequest(WithdrawRequest req, BigDecimal netAmount) {
-        // Build source (company account from configuration)
+    private PaymentRequest.Source buildSource() {
         WithdrawalConfig.CompanyAccount companyAcct = config.getCompanyAccount();
         
         PaymentRequest.Source.SourceInformation sourceInfo = PaymentRequest.Source.SourceInformation.builder()
@@ -207,17 +437,21 @@ public class WithdrawService {
                 .routingNumber(companyAcct.getRoutingNumber())
                 .build();
 
-        PaymentRequest.Source source = PaymentRequest.Source.builder()
+        return PaymentRequest.Source.builder()
                 .type("COMPANY")
                 .sourceInformation(sourceInfo)
                 .account(sourceAccount)
                 .build();
+    }
 
-        // Build destination (user's bank account)
+    /**
+     * Build the payment destination (user's bank account)
+     */
+    private PaymentRequest.Destination buildDestination(UUID accountId) {
         AccountServicePort.AccountDetails accountDetails = accountService
-                .getAccountDetails(req.getAccountId())
+                .getAccountDetails(accountId)
                 .orElseThrow(() -> new IllegalArgumentException(
-                        "Account not found: " + req.getAccountId()));
+                        "Account not found: " + accountId));
 
         PaymentRequest.Destination.Account destAccount = PaymentRequest.Destination.Account.builder()
                 .accountNumber(accountDetails.accountNumber())
@@ -225,16 +459,10 @@ public class WithdrawService {
                 .routingNumber(accountDetails.routingNumber())
                 .build();
 
-        PaymentRequest.Destination destination = PaymentRequest.Destination.builder()
+        return PaymentRequest.Destination.builder()
                 .name(accountDetails.accountHolderName())
                 .account(destAccount)
                 .build();
-
-        return PaymentRequest.builder()
-                .source(source)
-                .destination(destination)
-                .amount(netAmount)
-                .build();
     }
 }
 
@@ -0,0 +1,161 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.exception.ServiceOverloadedException;
+import com.ontop.challenge.infrastructure.config.PartitionedWithdrawalExecutor;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive (AIMD) concurrency limit for accepting withdrawals.
+ * The limit grows by one per window of fast requests and is cut by backoffRatio as soon as the
+ * request latency, the background pipeline latency or the backlog of the withdrawal lanes is over target.
+ * Requests over the limit are shed before anything is written to the DB.
+ * Only requests for a single withdrawal are judged against the request latency target; a batch request
+ * takes longer by nature, its own latency is left out of the feedback.
+ */
+@Service
+@Slf4j
+public class WithdrawalAdmissionLimiter {
+
+    private static final double DOWNSTREAM_SMOOTHING = 0.2;
+
+    private final WithdrawalConfig.Admission config;
+    private final PartitionedWithdrawalExecutor partitionedExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    private volatile double limit;
+    private volatile double downstreamLatencyNanos;
+
+    public WithdrawalAdmissionLimiter(WithdrawalConfig config,
+                                      PartitionedWithdrawalExecutor partitionedExecutor,
+                                      MeterRegistry meterRegistry) {
+        this.config = config.getAdmission();
+        this.partitionedExecutor = partitionedExecutor;
+        this.limit = this.config.getInitialLimit();
+
+        Gauge.builder("withdrawal.admission.limit", this, l -> l.limit)
+                .description("Current concurrency limit of the withdrawal endpoint")
+                .register(meterRegistry);
+        Gauge.builder("withdrawal.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Withdrawal requests currently admitted")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("withdrawal.admission.rejected")
+                .description("Withdrawal requests shed with 503")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admit a request, or shed it when the concurrency limit is reached
+     *
+     * @return A permit to close once the request is done
+     * @throws ServiceOverloadedException if the request is shed
+     */
+    public Permit acquire() {
+        return acquire(1);
+    }
+
+    /**
+     * Admit a request carrying several withdrawals, e.g. a batch, or shed it when they don't fit under the limit.
+     * A request takes at most maxBatchShare of the limit, a heavier one is admitted with that share
+     * so it neither waits for an idle service nor crowds out single requests
+     *
+     * @param weight Number of withdrawals the request creates
+     * @return A permit to close once the request is done
+     * @throws ServiceOverloadedException if the request is shed
+     */
+    public Permit acquire(int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be at least 1, was " + weight);
+        }
+        if (!config.isEnabled()) {
+            return new Permit(this, System.nanoTime(), 0, weight == 1);
+        }
+
+        while (true) {
+            int current = inFlight.get();
+            int currentLimit = (int) limit;
+            int permits = Math.min(weight, Math.max(1, (int) (currentLimit * config.getMaxBatchShare())));
+            if (current + permits > currentLimit) {
+                rejected.increment();
+                log.warn("Shedding withdrawal request, weight: {}, inFlight: {}, limit: {}",
+                        weight, current, currentLimit);
+                throw new ServiceOverloadedException(
+                        "Too many withdrawals in progress, please retry later", config.getRetryAfter());
+            }
+            if (inFlight.compareAndSet(current, current + permits)) {
+                return new Permit(this, System.nanoTime(), permits, weight == 1);
+            }
+        }
+    }
+
+    /**
+     * Record how long the background pipeline took for one withdrawal
+     *
+     * @param latency Duration of the wallet debit and payment for one withdrawal
+     */
+    public void recordDownstreamLatency(Duration latency) {
+        double previous = downstreamLatencyNanos;
+        downstreamLatencyNanos = previous == 0
+                ? latency.toNanos()
+                : previous + DOWNSTREAM_SMOOTHING * (latency.toNanos() - previous);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private void onRelease(long startNanos, int permits, boolean single) {
+        int admitted = inFlight.getAndAdd(-permits);
+        long latencyNanos = System.nanoTime() - startNanos;
+
+        synchronized (this) {
+            if (isOverloaded(single && latencyNanos > config.getLatencyTarget().toNanos())) {
+                limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+            } else if (admitted * 2 >= limit) {
+                // Only grow while the current limit is actually used, an idle service keeps its limit
+                limit = Math.min(config.getMaxLimit(), limit + permits / limit);
+            }
+        }
+    }
+
+    private boolean isOverloaded(boolean slowRequest) {
+        return slowRequest
+                || downstreamLatencyNanos > config.getDownstreamLatencyTarget().toNanos()
+                || partitionedExecutor.backlogUtilization() >= config.getBacklogHighWatermark();
+    }
+
+    /**
+     * Admission of one request, closing it feeds the request latency back into the limit
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final WithdrawalAdmissionLimiter limiter;
+        private final long startNanos;
+        private final boolean single;
+        private int permits;
+
+        private Permit(WithdrawalAdmissionLimiter limiter, long startNanos, int permits, boolean single) {
+            this.limiter = limiter;
+            this.startNanos = startNanos;
+            this.permits = permits;
+            this.single = single;
+        }
+
+        @Override
+        public void close() {
+            if (permits > 0) {
+                int released = permits;
+                permits = 0;
+                limiter.onRelease(startNanos, released, single);
+            }
+        }
+    }
+}
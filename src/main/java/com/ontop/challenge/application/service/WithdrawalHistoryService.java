@@ -0,0 +1,101 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalPageResponse;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort.HistoryPosition;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort.TransactionSummary;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import org.springframework.stereotype.Service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Pages through a user's withdrawals, newest first.
+ * Pages are located by keyset: the cursor holds the creation time and ID of the last withdrawal of the
+ * previous page, and the next page starts right after it in the user's index. A deep page therefore costs
+ * the same as the first one, and withdrawals created meanwhile never shift the pages being read.
+ */
+@Service
+public class WithdrawalHistoryService {
+
+    private static final int CURSOR_BYTES = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    private final TransactionRepositoryPort transactionRepositoryPort;
+    private final WithdrawalConfig config;
+
+    public WithdrawalHistoryService(TransactionRepositoryPort transactionRepositoryPort, WithdrawalConfig config) {
+        this.transactionRepositoryPort = transactionRepositoryPort;
+        this.config = config;
+    }
+
+    /**
+     * Get a page of a user's withdrawals
+     *
+     * @param userId The user ID
+     * @param cursor The nextCursor of the previous page, null for the first page
+     * @param limit Page size, null for the configured default, capped by the configured maximum
+     * @return The page
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive
+     */
+    public WithdrawalPageResponse getHistory(Long userId, String cursor, Integer limit) {
+        WithdrawalConfig.History history = config.getHistory();
+        int pageSize = limit == null ? history.getDefaultPageSize() : Math.min(limit, history.getMaxPageSize());
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        HistoryPosition after = cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor);
+        // One extra row tells whether another page follows
+        List<TransactionSummary> rows = transactionRepositoryPort.findHistory(userId, after, pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<TransactionSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+        TransactionSummary last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        return WithdrawalPageResponse.builder()
+                .withdrawals(page.stream().map(this::toResponse).toList())
+                .nextCursor(hasMore ? encodeCursor(new HistoryPosition(last.createdAt(), last.id())) : null)
+                .build();
+    }
+
+    private WithdrawalResponse toResponse(TransactionSummary summary) {
+        return WithdrawalResponse.builder()
+                .transactionId(summary.id())
+                .status(summary.status())
+                .amount(summary.amount())
+                .fee(summary.fee())
+                .netAmount(summary.netAmount())
+                .currency(summary.currency())
+                .createdAt(summary.createdAt())
+                .build();
+    }
+
+    static String encodeCursor(HistoryPosition position) {
+        ByteBuffer buffer = ByteBuffer.allocate(CURSOR_BYTES)
+                .putLong(position.createdAt().getEpochSecond())
+                .putInt(position.createdAt().getNano())
+                .putLong(position.id().getMostSignificantBits())
+                .putLong(position.id().getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    static HistoryPosition decodeCursor(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.remaining() != CURSOR_BYTES) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant createdAt = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            return new HistoryPosition(createdAt, new UUID(buffer.getLong(), buffer.getLong()));
+        } catch (IllegalArgumentException | BufferUnderflowException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -2,47 +2,156 @@ package com.ontop.challenge.application.service;
 
 import com.ontop.challenge.adapters.in.dto.EventMessage;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
+import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 @Service
 @Slf4j
 public class WithdrawalListener {
 
     private final WithdrawService withdrawService;
     private final IdempotencyService idempotencyService;
+    private final WithdrawalOutboxPort withdrawalOutboxPort;
+    private final WithdrawalStatusService withdrawalStatusService;
+    private final WithdrawalAdmissionLimiter admissionLimiter;
+    private final TransactionRepositoryPort transactionRepositoryPort;
+    private final TransactionMapper transactionMapper;
+    private final OutboxConfig outboxConfig;
 
     public WithdrawalListener(WithdrawService withdrawService,
-                              IdempotencyService idempotencyService) {
+                              IdempotencyService idempotencyService,
+                              WithdrawalOutboxPort withdrawalOutboxPort,
+                              WithdrawalStatusService withdrawalStatusService,
+                              WithdrawalAdmissionLimiter admissionLimiter,
+                              TransactionRepositoryPort transactionRepositoryPort,
+                              TransactionMapper transactionMapper,
+                              OutboxConfig outboxConfig) {
         this.withdrawService = withdrawService;
         this.idempotencyService = idempotencyService;
+        this.withdrawalOutboxPort = withdrawalOutboxPort;
+        this.withdrawalStatusService = withdrawalStatusService;
+        this.admissionLimiter = admissionLimiter;
+        this.transactionRepositoryPort = transactionRepositoryPort;
+        this.transactionMapper = transactionMapper;
+        this.outboxConfig = outboxConfig;
     }
 
-    @Async
-    @EventListener
+    /**
+     * Process a withdrawal claimed from the outbox by WithdrawalOutboxDispatcher.
+     * Runs on the lane of the withdrawal's user in PartitionedWithdrawalExecutor.
+     * The task may have waited in its lane long enough for the claim to lapse and the entry to be
+     * claimed and processed again, so the lease is renewed and the transaction re-read before any work.
+     * The entry is only marked processed once the transaction left PENDING; a failure that leaves it
+     * PENDING puts the entry back with a backoff.
+     */
     public void handleWalletWithdraw(EventMessage message){
         String idempotencyKey = message.getReq().getIdempotencyKey();
         log.info("Processing withdrawal event in background for idempotency key: {}", idempotencyKey);
 
+        if (message.getOutboxId() != null) {
+            withdrawalOutboxPort.renewLease(message.getOutboxId(), outboxConfig.getLeaseDuration());
+        }
+
+        boolean retry = false;
+        long startNanos = System.nanoTime();
         try {
-            WithdrawalResponse response = withdrawService.executeWithdrawal(message.getReq(), message.getTransaction());
+            Transaction transaction = transactionRepositoryPort.findById(message.getTransaction().getId()).orElse(null);
+            if (transaction == null || transaction.getStatus() != TransactionStatus.PENDING) {
+                log.info("Skipping withdrawal for idempotency key: {}, transaction already {}",
+                        idempotencyKey, transaction == null ? "gone" : transaction.getStatus());
+                if (transaction != null && isTerminal(transaction.getStatus())) {
+                    publish(message, transactionMapper.transactionToWithdrawalResponse(transaction));
+                }
+                return;
+            }
 
-            idempotencyService.saveResponse(idempotencyKey, response);
-            log.info("Saved withdrawal response to Redis for idempotency key: {}, status: {}",
+            WithdrawalResponse response = RequestFingerprint.stamp(
+                    withdrawService.executeWithdrawal(message.getReq(), transaction), message.getReq());
+            admissionLimiter.recordDownstreamLatency(Duration.ofNanos(System.nanoTime() - startNanos));
+
+            idempotencyService.saveResponseAsync(idempotencyKey, response);
+            log.info("Queued withdrawal response for Redis for idempotency key: {}, status: {}",
                     idempotencyKey, response.getStatus());
+
+            withdrawalStatusService.complete(response);
         } catch (Exception e) {
             log.error("Error processing withdrawal for idempotency key: {}, error: {}", 
                     idempotencyKey, e.getMessage(), e);
+            retry = stillPending(message);
+        } finally {
+            settle(message, retry);
+        }
+    }
 
-            if (idempotencyKey != null) {
-                WithdrawalResponse errorResponse = WithdrawalResponse.builder()
-                        .status(TransactionStatus.FAILED)
-                        .build();
-                idempotencyService.saveResponse(idempotencyKey, errorResponse);
-            }
+    /**
+     * Look at what the transaction actually is after a failure, which may come after it was finished,
+     * e.g. from an optimistic lock lost to another run of the same entry. A finished transaction is saved
+     * and published. A transaction that could not be read counts as still PENDING: the next run re-reads
+     * it before any work, so retrying is safe.
+     *
+     * @return Whether the withdrawal should be tried again
+     */
+    private boolean stillPending(EventMessage message) {
+        Transaction transaction;
+        try {
+            transaction = transactionRepositoryPort.findById(message.getTransaction().getId()).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not re-read transaction {} after failure: {}",
+                    message.getTransaction().getId(), e.getMessage());
+            return true;
+        }
+
+        if (transaction == null) {
+            return false;
+        }
+        if (isTerminal(transaction.getStatus())) {
+            publish(message, transactionMapper.transactionToWithdrawalResponse(transaction));
         }
+        return transaction.getStatus() == TransactionStatus.PENDING;
+    }
+
+    private void publish(EventMessage message, WithdrawalResponse response) {
+        WithdrawalResponse stamped = RequestFingerprint.stamp(response, message.getReq());
+        String idempotencyKey = message.getReq().getIdempotencyKey();
+        if (idempotencyKey != null) {
+            idempotencyService.saveResponseAsync(idempotencyKey, stamped);
+        }
+        withdrawalStatusService.complete(stamped);
+    }
+
+    /**
+     * Finish the outbox entry. A withdrawal left PROCESSING is not retried either, the wallet may
+     * already have been debited; StaleWithdrawalMonitor reports it if it never finishes.
+     */
+    private void settle(EventMessage message, boolean retry) {
+        if (message.getOutboxId() == null) {
+            return;
+        }
+
+        if (retry) {
+            Duration delay = retryDelay(message.getAttempts());
+            log.warn("Retrying outbox entry {} in {}, attempt {}", message.getOutboxId(), delay, message.getAttempts());
+            withdrawalOutboxPort.retryLater(message.getOutboxId(), delay);
+        } else {
+            withdrawalOutboxPort.markProcessed(message.getOutboxId());
+        }
+    }
+
+    private Duration retryDelay(int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 20);
+        Duration delay = outboxConfig.getRetryBackoff().multipliedBy(1L << doublings);
+        return delay.compareTo(outboxConfig.getMaxRetryBackoff()) > 0 ? outboxConfig.getMaxRetryBackoff() : delay;
+    }
+
+    private static boolean isTerminal(TransactionStatus status) {
+        return status == TransactionStatus.COMPLETED || status == TransactionStatus.FAILED;
     }
 }
@@ -0,0 +1,131 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.EventMessage;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
+import com.ontop.challenge.infrastructure.config.PartitionedWithdrawalExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Polls the withdrawal outbox and hands claimed entries to the WithdrawalListener.
+ * Every node runs its own dispatcher; row claims keep nodes from processing the same entry.
+ */
+@Service
+@Slf4j
+public class WithdrawalOutboxDispatcher {
+
+    private final WithdrawalOutboxPort outboxPort;
+    private final TransactionRepositoryPort transactionRepositoryPort;
+    private final WithdrawalListener withdrawalListener;
+    private final PartitionedWithdrawalExecutor partitionedExecutor;
+    private final OutboxConfig config;
+    private final Counter orphaned;
+
+    public WithdrawalOutboxDispatcher(WithdrawalOutboxPort outboxPort,
+                                      TransactionRepositoryPort transactionRepositoryPort,
+                                      WithdrawalListener withdrawalListener,
+                                      PartitionedWithdrawalExecutor partitionedExecutor,
+                                      OutboxConfig config,
+                                      MeterRegistry meterRegistry) {
+        this.outboxPort = outboxPort;
+        this.transactionRepositoryPort = transactionRepositoryPort;
+        this.withdrawalListener = withdrawalListener;
+        this.partitionedExecutor = partitionedExecutor;
+        this.config = config;
+
+        this.orphaned = Counter.builder("withdrawal.outbox.orphaned")
+                .description("Re-claimed outbox entries whose withdrawal was left PROCESSING")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "#{@outboxConfig.pollIntervalMs}")
+    public void dispatch() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        List<WithdrawalOutboxPort.OutboxEntry> batch =
+                outboxPort.claimBatch(config.getBatchSize(), config.getLeaseDuration());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        log.debug("Claimed {} outbox entries", batch.size());
+        for (WithdrawalOutboxPort.OutboxEntry entry : batch) {
+            dispatchEntry(entry);
+        }
+    }
+
+    private void dispatchEntry(WithdrawalOutboxPort.OutboxEntry entry) {
+        Optional<Transaction> transaction = transactionRepositoryPort.findById(entry.transactionId());
+
+        // A re-claimed entry whose transaction already moved on must not be replayed,
+        // the wallet may already have been debited
+        if (transaction.isEmpty() || transaction.get().getStatus() != TransactionStatus.PENDING) {
+            if (transaction.isPresent() && transaction.get().getStatus() == TransactionStatus.PROCESSING) {
+                // The node running it died mid-withdrawal; only reconciliation can tell whether money moved
+                orphaned.increment();
+                log.error("Outbox entry {} re-claimed with transactionId: {} still PROCESSING, needs reconciliation",
+                        entry.id(), entry.transactionId());
+            } else {
+                log.warn("Skipping outbox entry {}, transactionId: {} is missing or no longer PENDING",
+                        entry.id(), entry.transactionId());
+            }
+            outboxPort.markProcessed(entry.id());
+            return;
+        }
+
+        EventMessage message = EventMessage.builder()
+                .outboxId(entry.id())
+                .attempts(entry.attempts())
+                .req(entry.request())
+                .transaction(transaction.get())
+                .build();
+
+        try {
+            // Withdrawals of the same user run one at a time, in claim order
+            partitionedExecutor.execute(entry.request().getUserId(), () -> withdrawalListener.handleWalletWithdraw(message));
+        } catch (TaskRejectedException e) {
+            log.warn("Withdrawal lane saturated, releasing outbox entry {}", entry.id());
+            outboxPort.release(entry.id());
+        }
+    }
+
+    /**
+     * Delete processed entries once they are past the retention, in batches to keep each statement short
+     */
+    @Scheduled(fixedDelayString = "#{@outboxConfig.purgeIntervalMs}")
+    public void purgeProcessed() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        try {
+            Instant cutoff = Instant.now().minus(config.getRetention());
+            int deleted;
+            int total = 0;
+            do {
+                deleted = outboxPort.deleteProcessedBefore(cutoff, config.getPurgeBatchSize());
+                total += deleted;
+            } while (deleted == config.getPurgeBatchSize());
+
+            if (total > 0) {
+                log.info("Purged {} processed outbox entries older than {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Error purging processed outbox entries: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.DailyWithdrawalTotalResponse;
+import com.ontop.challenge.application.port.out.WithdrawalRollupPort;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Reads the daily totals of a user's finished withdrawals. The totals are kept up to date as each
+ * withdrawal becomes COMPLETED or FAILED, so a range costs one row per day rather than one per withdrawal.
+ */
+@Service
+public class WithdrawalRollupService {
+
+    private final WithdrawalRollupPort rollupPort;
+    private final WithdrawalConfig config;
+
+    public WithdrawalRollupService(WithdrawalRollupPort rollupPort, WithdrawalConfig config) {
+        this.rollupPort = rollupPort;
+        this.config = config;
+    }
+
+    /**
+     * Get a user's daily totals
+     *
+     * @param userId The user ID
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @return Totals per day, currency and final status, days without withdrawals are absent
+     * @throws IllegalArgumentException if the range is reversed or longer than configured
+     */
+    public List<DailyWithdrawalTotalResponse> getDailyTotals(Long userId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        int maxDays = config.getHistory().getMaxDailyTotalsDays();
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Range must not exceed " + maxDays + " days");
+        }
+
+        return rollupPort.findDailyTotals(userId, from, to).stream()
+                .map(total -> DailyWithdrawalTotalResponse.builder()
+                        .day(total.day())
+                        .currency(total.currency())
+                        .status(total.status())
+                        .count(total.count())
+                        .totalAmount(total.totalAmount())
+                        .totalFee(total.totalFee())
+                        .totalNetAmount(total.totalNetAmount())
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,167 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import com.ontop.challenge.infrastructure.redis.RedisAccess;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves withdrawal status reads and lets clients wait for the final state instead of polling.
+ * WithdrawalListener completes the waiters registered on this instance, and the completion is
+ * announced on a Redis channel so other nodes re-read the withdrawal for their own waiters.
+ * A waiter whose announcement was lost still gets the latest DB state when its timeout elapses.
+ */
+@Service
+@Slf4j
+public class WithdrawalStatusService implements MessageListener {
+
+    public static final String COMPLETION_CHANNEL = "withdrawal:completed";
+
+    private final TransactionRepositoryPort transactionRepositoryPort;
+    private final TransactionMapper mapper;
+    private final RedisAccess redisAccess;
+    private final boolean fanout;
+    private final Executor lookupExecutor;
+    private final ConcurrentHashMap<UUID, Queue<CompletableFuture<WithdrawalResponse>>> waiters =
+            new ConcurrentHashMap<>();
+
+    public WithdrawalStatusService(TransactionRepositoryPort transactionRepositoryPort,
+                                   TransactionMapper mapper,
+                                   RedisAccess redisAccess,
+                                   WithdrawalConfig config,
+                                   @Qualifier("lookupExecutor") Executor lookupExecutor) {
+        this.transactionRepositoryPort = transactionRepositoryPort;
+        this.mapper = mapper;
+        this.redisAccess = redisAccess;
+        this.fanout = config.isStatusFanout();
+        this.lookupExecutor = lookupExecutor;
+    }
+
+    /**
+     * Get the current state of a withdrawal
+     *
+     * @param transactionId The transaction ID
+     * @return The withdrawal, or empty if it does not exist
+     */
+    public Optional<WithdrawalResponse> getWithdrawal(UUID transactionId) {
+        return transactionRepositoryPort.findById(transactionId)
+                .map(mapper::transactionToWithdrawalResponse);
+    }
+
+    /**
+     * Wait until a withdrawal reaches COMPLETED or FAILED
+     *
+     * @param transactionId The transaction ID
+     * @param timeout Maximum time to wait
+     * @return A future with the final state, or with the latest state once the timeout elapses;
+     *         empty if the withdrawal does not exist
+     */
+    public Optional<CompletableFuture<WithdrawalResponse>> awaitTerminal(UUID transactionId, Duration timeout) {
+        CompletableFuture<WithdrawalResponse> waiter = new CompletableFuture<>();
+        // Registered before reading, so a completion between the read and the registration is not missed
+        register(transactionId, waiter);
+
+        Optional<WithdrawalResponse> current = getWithdrawal(transactionId);
+        if (current.isEmpty() || isTerminal(current.get().getStatus())) {
+            unregister(transactionId, waiter);
+            return current.map(CompletableFuture::completedFuture);
+        }
+
+        return Optional.of(waiter
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyAsync(e -> getWithdrawal(transactionId).orElse(current.get()), lookupExecutor)
+                .whenComplete((response, e) -> unregister(transactionId, waiter)));
+    }
+
+    /**
+     * Complete the waiters of a withdrawal once it reached its final state, on this node and on the
+     * others
+     *
+     * @param response The withdrawal response, ignored unless COMPLETED or FAILED
+     */
+    public void complete(WithdrawalResponse response) {
+        if (response.getTransactionId() == null || !isTerminal(response.getStatus())) {
+            return;
+        }
+
+        completeLocal(response);
+        if (fanout) {
+            redisAccess.publishPipelined(COMPLETION_CHANNEL, response.getTransactionId().toString())
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            // Waiters on other nodes fall back to reading the DB when their timeout elapses
+                            log.warn("Could not announce completion of transactionId {}: {}",
+                                    response.getTransactionId(), e.getMessage());
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Complete the local waiters of a withdrawal finished on another node, from its committed state
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!(redisAccess.deserialize(message.getBody()) instanceof String payload)) {
+            return;
+        }
+
+        UUID transactionId;
+        try {
+            transactionId = UUID.fromString(payload);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (!waiters.containsKey(transactionId)) {
+            return;
+        }
+
+        lookupExecutor.execute(() -> getWithdrawal(transactionId)
+                .filter(response -> isTerminal(response.getStatus()))
+                .ifPresent(this::completeLocal));
+    }
+
+    private void completeLocal(WithdrawalResponse response) {
+        Queue<CompletableFuture<WithdrawalResponse>> pending = waiters.remove(response.getTransactionId());
+        if (pending != null) {
+            log.debug("Notifying {} waiters of transactionId: {}", pending.size(), response.getTransactionId());
+            pending.forEach(waiter -> waiter.complete(response));
+        }
+    }
+
+    private void register(UUID transactionId, CompletableFuture<WithdrawalResponse> waiter) {
+        waiters.compute(transactionId, (id, queue) -> {
+            Queue<CompletableFuture<WithdrawalResponse>> result = queue != null ? queue : new ConcurrentLinkedQueue<>();
+            result.add(waiter);
+            return result;
+        });
+    }
+
+    private void unregister(UUID transactionId, CompletableFuture<WithdrawalResponse> waiter) {
+        waiters.computeIfPresent(transactionId, (id, queue) -> {
+            queue.remove(waiter);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    private boolean isTerminal(TransactionStatus status) {
+        return status == TransactionStatus.COMPLETED || status == TransactionStatus.FAILED;
+    }
+}
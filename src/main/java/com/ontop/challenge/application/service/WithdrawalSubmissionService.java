@@ -0,0 +1,245 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.exception.IdempotentConflictException;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.infrastructure.config.IdempotencyConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight submission of withdrawals by idempotency key.
+ * Duplicates on the same node join the in-progress submission, duplicates on other nodes are held
+ * off by a Redis in-flight marker and get the PENDING response once it is published. Only the owner
+ * of a key calls createInitialTransaction. Duplicates whose body differs from the owner's request
+ * are rejected with IdempotentConflictException.
+ */
+@Service
+@Slf4j
+public class WithdrawalSubmissionService {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final WithdrawService withdrawService;
+    private final IdempotencyService idempotencyService;
+    private final IdempotencyConfig config;
+    private final TransactionMapper mapper;
+    private final ConcurrentHashMap<String, CompletableFuture<WithdrawalResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public WithdrawalSubmissionService(WithdrawService withdrawService,
+                                       IdempotencyService idempotencyService,
+                                       IdempotencyConfig config,
+                                       TransactionMapper mapper) {
+        this.withdrawService = withdrawService;
+        this.idempotencyService = idempotencyService;
+        this.config = config;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Submit a withdrawal once per idempotency key
+     *
+     * @param req The withdrawal request, carrying its idempotency key
+     * @return The response of the submission that owns the key
+     * @throws IdempotentConflictException if another node holds the key and did not answer in time,
+     *                                     or the key was used with a different request body
+     */
+    public WithdrawalResponse submit(WithdrawRequest req) {
+        String idempotencyKey = req.getIdempotencyKey();
+
+        CompletableFuture<WithdrawalResponse> owned = new CompletableFuture<>();
+        CompletableFuture<WithdrawalResponse> existing = inFlight.putIfAbsent(idempotencyKey, owned);
+        if (existing != null) {
+            log.info("Joining in-progress submission for idempotency key: {}", idempotencyKey);
+            WithdrawalResponse response = join(existing, idempotencyKey);
+            RequestFingerprint.verify(req, response);
+            return response;
+        }
+
+        try {
+            WithdrawalResponse response = idempotencyService.tryMarkInFlight(idempotencyKey, config.getInFlightLease())
+                    ? createAndPublish(req)
+                    : awaitRemoteResponse(req);
+            owned.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            owned.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, owned);
+        }
+    }
+
+    /**
+     * Batch variant of {@link #submit(WithdrawRequest)} for one chunk of a batch request. Keys are claimed
+     * the same way, but an item whose key is already in flight is not waited for: its outcome carries an
+     * IdempotentConflictException so the rest of the chunk is not held up. The PENDING responses of the
+     * created items are saved before this returns, so a retry of the batch or a single request with
+     * one of the keys gets the existing withdrawal.
+     *
+     * @param requests The withdrawal requests of the chunk, with distinct idempotency keys
+     * @return One outcome per request, in the same order
+     * @throws RuntimeException if the chunk could not be persisted, no item was created then
+     */
+    public List<SubmissionOutcome> submitAll(List<WithdrawRequest> requests) {
+        SubmissionOutcome[] outcomes = new SubmissionOutcome[requests.size()];
+        List<CompletableFuture<WithdrawalResponse>> owned = new ArrayList<>();
+        List<Integer> ownedIndexes = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                String idempotencyKey = requests.get(i).getIdempotencyKey();
+                CompletableFuture<WithdrawalResponse> future = new CompletableFuture<>();
+                if (inFlight.putIfAbsent(idempotencyKey, future) != null) {
+                    outcomes[i] = SubmissionOutcome.failed(stillProcessing());
+                    continue;
+                }
+                if (!idempotencyService.tryMarkInFlight(idempotencyKey, config.getInFlightLease())) {
+                    inFlight.remove(idempotencyKey, future);
+                    outcomes[i] = SubmissionOutcome.failed(stillProcessing());
+                    continue;
+                }
+                owned.add(future);
+                ownedIndexes.add(i);
+            }
+
+            createAndPublishAll(requests, ownedIndexes, owned, outcomes);
+            return List.of(outcomes);
+        } finally {
+            for (int j = 0; j < owned.size(); j++) {
+                inFlight.remove(requests.get(ownedIndexes.get(j)).getIdempotencyKey(), owned.get(j));
+            }
+        }
+    }
+
+    private void createAndPublishAll(List<WithdrawRequest> requests, List<Integer> ownedIndexes,
+                                     List<CompletableFuture<WithdrawalResponse>> owned,
+                                     SubmissionOutcome[] outcomes) {
+        if (ownedIndexes.isEmpty()) {
+            return;
+        }
+        List<WithdrawRequest> ownedRequests = ownedIndexes.stream().map(requests::get).toList();
+
+        List<WithdrawService.InitialTransactionOutcome> created;
+        try {
+            created = withdrawService.createInitialTransactions(ownedRequests);
+        } catch (RuntimeException e) {
+            for (int j = 0; j < ownedRequests.size(); j++) {
+                idempotencyService.clearInFlight(ownedRequests.get(j).getIdempotencyKey());
+                owned.get(j).completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        for (int j = 0; j < ownedRequests.size(); j++) {
+            WithdrawRequest req = ownedRequests.get(j);
+            WithdrawService.InitialTransactionOutcome outcome = created.get(j);
+
+            if (outcome.error() != null) {
+                idempotencyService.clearInFlight(req.getIdempotencyKey());
+                owned.get(j).completeExceptionally(outcome.error());
+                outcomes[ownedIndexes.get(j)] = SubmissionOutcome.failed(outcome.error());
+                continue;
+            }
+
+            WithdrawalResponse response = RequestFingerprint.stamp(
+                    mapper.transactionToWithdrawalResponse(outcome.transaction()), req);
+            // The row is committed, so the item stays accepted if the save fails. Its in-flight marker is kept
+            // and holds off retries of the key until the lease runs out
+            try {
+                idempotencyService.saveResponse(req.getIdempotencyKey(), response);
+            } catch (RuntimeException e) {
+                log.error("Failed to save PENDING response for idempotency key: {}", req.getIdempotencyKey(), e);
+            }
+            owned.get(j).complete(response);
+            outcomes[ownedIndexes.get(j)] = SubmissionOutcome.created(response);
+        }
+    }
+
+    private static IdempotentConflictException stillProcessing() {
+        return new IdempotentConflictException(
+                "A request with this Idempotency-Key is still being processed, retry later");
+    }
+
+    private WithdrawalResponse createAndPublish(WithdrawRequest req) {
+        try {
+            Transaction transaction = withdrawService.createInitialTransaction(req);
+            WithdrawalResponse response = RequestFingerprint.stamp(mapper.transactionToWithdrawalResponse(transaction), req);
+
+            // Retries now get the PENDING transaction until WithdrawalListener stores the final response
+            idempotencyService.saveResponse(req.getIdempotencyKey(), response);
+            return response;
+        } catch (RuntimeException e) {
+            idempotencyService.clearInFlight(req.getIdempotencyKey());
+            throw e;
+        }
+    }
+
+    private WithdrawalResponse awaitRemoteResponse(WithdrawRequest req) {
+        String idempotencyKey = req.getIdempotencyKey();
+        log.info("Idempotency key {} is in flight on another node, waiting for its response", idempotencyKey);
+        long deadline = System.nanoTime() + config.getInFlightWait().toNanos();
+
+        while (System.nanoTime() < deadline) {
+            Optional<WithdrawalResponse> response = idempotencyService.getResponse(idempotencyKey);
+            if (response.isPresent()) {
+                RequestFingerprint.verify(req, response.get());
+                return response.get();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new IdempotentConflictException(
+                "A request with this Idempotency-Key is still being processed, retry later");
+    }
+
+    private WithdrawalResponse join(CompletableFuture<WithdrawalResponse> existing, String idempotencyKey) {
+        try {
+            return existing.get(config.getInFlightLease().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotentConflictException(
+                    "A request with this Idempotency-Key is still being processed, retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotentConflictException("Interrupted while waiting for idempotency key " + idempotencyKey);
+        }
+    }
+
+    /**
+     * Outcome of one item of {@link #submitAll(List)}: either the PENDING response or the error
+     */
+    public record SubmissionOutcome(
+            WithdrawalResponse response,
+            RuntimeException error
+    ) {
+        static SubmissionOutcome created(WithdrawalResponse response) {
+            return new SubmissionOutcome(response, null);
+        }
+
+        static SubmissionOutcome failed(RuntimeException error) {
+            return new SubmissionOutcome(null, error);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ontop.challenge.domain;
 
+import com.ontop.challenge.infrastructure.persistence.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -25,7 +26,7 @@ import java.util.UUID;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @Column(unique = true, nullable = false, length = 100)
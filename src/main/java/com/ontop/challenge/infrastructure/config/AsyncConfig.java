@@ -1,27 +1,70 @@
 package com.ontop.challenge.infrastructure.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 @EnableAsync
+@Slf4j
 public class AsyncConfig {
 
-    @Bean(name = "withdrawalExecutor")
-    public Executor withdrawalExecutor() {
+    private static final String EXECUTOR_NAME = "withdrawalExecutor";
+
+    @Bean(name = EXECUTOR_NAME)
+    public Executor withdrawalExecutor(WithdrawalConfig config,
+                                       VirtualThreadMetrics virtualThreadMetrics,
+                                       MeterRegistry meterRegistry) {
+        WithdrawalConfig.WorkerPool pool = config.getWorkerPool();
+        log.info("Withdrawal worker pool running in {} mode", pool.getMode());
+
+        if (pool.getMode() == WithdrawalConfig.WorkerPool.Mode.VIRTUAL) {
+            return virtualThreadExecutor(pool, virtualThreadMetrics);
+        }
+        return platformThreadExecutor(pool, meterRegistry);
+    }
+
+    /**
+     * Executor for fanning out independent downstream lookups. Tasks only wait on I/O,
+     * so each one gets its own virtual thread.
+     */
+    @Bean(name = "lookupExecutor", destroyMethod = "close")
+    public ExecutorService lookupExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("lookup-", 0).factory());
+    }
+
+    private Executor platformThreadExecutor(WithdrawalConfig.WorkerPool pool, MeterRegistry meterRegistry) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
+        executor.setCorePoolSize(pool.getCorePoolSize());
+        executor.setMaxPoolSize(pool.getMaxPoolSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
         executor.setThreadNamePrefix("withdrawal-async-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
+
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), EXECUTOR_NAME, Tags.empty());
         return executor;
     }
-}
 
+    private Executor virtualThreadExecutor(WithdrawalConfig.WorkerPool pool, VirtualThreadMetrics virtualThreadMetrics) {
+        // Withdrawals spend nearly all their time blocked on wallet/payments I/O and retry back-off,
+        // a virtual thread per task unmounts from its carrier while waiting
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("withdrawal-virtual-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(pool.getVirtualConcurrencyLimit());
+        executor.setTaskTerminationTimeout(60_000);
+        executor.setTaskDecorator(virtualThreadMetrics::track);
+        return executor;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ontop.challenge.infrastructure.config;
+
+import com.ontop.challenge.infrastructure.persistence.ReadReplicaDataSource;
+import com.ontop.challenge.infrastructure.persistence.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes read-only transactions to the read replica and everything else to the primary.
+ * <p>
+ * The application DataSource is a LazyConnectionDataSourceProxy: the physical connection is only fetched
+ * at the first statement, after the transaction manager has marked it read-only, so the proxy can still
+ * choose the pool. Both pools report Hikari metrics, tagged pool=primary and pool=replica.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * The pool described by spring.datasource, also used by Flyway
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+
+    /**
+     * The replica pool is not a DataSource bean, so an unreachable replica does not take the
+     * db health check down with it while reads fall back to the primary
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ontop.datasource.replica", name = "enabled", havingValue = "true")
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaDataSourceConfig config, MeterRegistry meterRegistry) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(config.getUrl());
+        replica.setUsername(config.getUsername());
+        replica.setPassword(config.getPassword());
+        replica.setMaximumPoolSize(config.getMaximumPoolSize());
+        replica.setConnectionTimeout(config.getConnectionTimeout().toMillis());
+        replica.setReadOnly(true);
+        replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new ReplicaLagMonitor(replica, config.getMaxLag(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ObjectProvider<ReplicaLagMonitor> replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        replicaLagMonitor.ifAvailable(monitor -> dataSource.setReadOnlyDataSource(
+                new ReadReplicaDataSource(monitor, primaryDataSource, meterRegistry)));
+        return dataSource;
+    }
+}
@@ -0,0 +1,143 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration for idempotency response caching.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.idempotency")
+@Data
+public class IdempotencyConfig {
+
+    /**
+     * How long responses are kept in Postgres and in Redis
+     */
+    private Retention retention = new Retention();
+
+    /**
+     * In-process cache in front of Redis
+     */
+    private NearCache nearCache = new NearCache();
+
+    /**
+     * Bloom filter of the keys within the dedupe window, used to skip lookups of keys never seen
+     */
+    private KeyFilter keyFilter = new KeyFilter();
+
+    /**
+     * Local store for responses saved while Redis is unavailable
+     */
+    private Journal journal = new Journal();
+
+    /**
+     * How long an in-flight marker blocks other requests with the same key if its owner never finishes
+     */
+    private Duration inFlightLease = Duration.ofSeconds(30);
+
+    /**
+     * How long a request waits for the response of another node processing the same key
+     */
+    private Duration inFlightWait = Duration.ofSeconds(2);
+
+    /**
+     * Encoding of cached responses written to Redis. Both formats are read with either setting;
+     * switch to BINARY only once every node runs a release that reads it.
+     */
+    private ValueCodec valueCodec = ValueCodec.JSON;
+
+    public enum ValueCodec {
+        JSON,
+        BINARY
+    }
+
+    @Data
+    public static class Retention {
+
+        /**
+         * Dedupe window: how long a key's response is kept in Postgres after its last update
+         */
+        private Duration durable = Duration.ofHours(24);
+
+        /**
+         * How long a COMPLETED or FAILED response stays in Redis
+         */
+        private Duration terminalHotTtl = Duration.ofMinutes(10);
+
+        /**
+         * How long a PENDING or PROCESSING response stays in Redis. Kept short since it is replaced
+         * when processing ends, and Redis is read through from Postgres after it expires.
+         */
+        private Duration inFlightHotTtl = Duration.ofMinutes(1);
+
+        /**
+         * Expired records deleted per statement by the purge job
+         */
+        private int purgeBatchSize = 1000;
+
+        /**
+         * How often expired records are purged from Postgres
+         */
+        private long purgeIntervalMs = 60_000;
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled = true;
+
+        /**
+         * Maximum responses kept per node
+         */
+        private long maxSize = 10_000;
+
+        /**
+         * How long a response is served from the node without asking Redis
+         */
+        private Duration ttl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class KeyFilter {
+        private boolean enabled = true;
+
+        /**
+         * Keys saved per durable retention window across all nodes, the filter is sized for this many
+         */
+        private long expectedKeys = 1_000_000;
+
+        /**
+         * Share of new keys that still go to Redis because the filter cannot rule them out
+         */
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Data
+    public static class Journal {
+        private boolean enabled = true;
+
+        /**
+         * Memory-mapped journal file, reopened and replayed after a restart
+         */
+        private String path = "data/idempotency.journal";
+
+        /**
+         * Size of the mapped file, appends beyond it are dropped
+         */
+        private DataSize size = DataSize.ofMegabytes(64);
+
+        /**
+         * Distinct keys the off-heap index can hold before appends are dropped
+         */
+        private int indexSlots = 262_144;
+
+        /**
+         * How often the journal is replayed into Redis once the circuit breaker has closed
+         */
+        private long replayIntervalMs = 1000;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the withdrawal outbox dispatcher.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.outbox")
+@Data
+public class OutboxConfig {
+
+    /**
+     * Whether this node dispatches outbox entries
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of entries claimed per poll
+     */
+    private int batchSize = 50;
+
+    /**
+     * Delay between polls, in milliseconds
+     */
+    private long pollIntervalMs = 500;
+
+    /**
+     * How long a claim is held before another node may take the entry over
+     */
+    private Duration leaseDuration = Duration.ofMinutes(5);
+
+    /**
+     * Delay before the first retry of an entry whose withdrawal failed while still PENDING, doubled on every attempt
+     */
+    private Duration retryBackoff = Duration.ofSeconds(5);
+
+    /**
+     * Upper bound of the retry delay
+     */
+    private Duration maxRetryBackoff = Duration.ofMinutes(5);
+
+    /**
+     * How long PROCESSED entries are kept before they are purged
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * Processed entries deleted per statement by the purge job
+     */
+    private int purgeBatchSize = 1000;
+
+    /**
+     * How often processed entries are purged, in milliseconds
+     */
+    private long purgeIntervalMs = 3_600_000;
+
+    /**
+     * A withdrawal PROCESSING for longer than this is reported as stuck, e.g. after a crash between
+     * the wallet debit and the payment
+     */
+    private Duration staleProcessingAfter = Duration.ofMinutes(15);
+
+    /**
+     * How often withdrawals stuck in PROCESSING are counted, in milliseconds
+     */
+    private long staleCheckIntervalMs = 60_000;
+}
@@ -0,0 +1,35 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the maintenance of the monthly transactions partitions.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.partitions")
+@Data
+public class PartitionConfig {
+
+    /**
+     * Whether this node creates and detaches partitions
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of months after the current one that must already have a partition
+     */
+    private int monthsAhead = 3;
+
+    /**
+     * Number of months before the current one kept attached, older partitions are detached.
+     * 0 keeps every partition attached.
+     */
+    private int retentionMonths = 24;
+
+    /**
+     * When the maintenance runs
+     */
+    private String cron = "0 0 3 * * *";
+}
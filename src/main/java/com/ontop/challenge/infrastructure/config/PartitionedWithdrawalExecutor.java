@@ -0,0 +1,215 @@
+package com.ontop.challenge.infrastructure.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs withdrawals on the withdrawal worker pool in lanes keyed by userId hash.
+ * Each lane is a single-writer FIFO: at most one of its tasks runs at a time, so withdrawals of
+ * one user never race each other on this node, while different lanes run in parallel.
+ * Unless set explicitly, there is one lane per slot the worker pool can take at once, so the lanes
+ * never cap the concurrency of the pool: max-pool-size + queue-capacity in PLATFORM mode and
+ * virtual-concurrency-limit in VIRTUAL mode.
+ * On a platform pool a lane gives its thread back after a few tasks and queues up again behind the
+ * other lanes, so one user's backlog does not hold a pool thread until it is empty.
+ */
+@Component
+@Slf4j
+public class PartitionedWithdrawalExecutor {
+
+    static final int PLATFORM_DRAIN_BUDGET = 4;
+
+    private final Executor withdrawalExecutor;
+    private final Lane[] lanes;
+    private final int laneCapacity;
+    private final int drainBudget;
+
+    public PartitionedWithdrawalExecutor(@Qualifier("withdrawalExecutor") Executor withdrawalExecutor,
+                                         WithdrawalConfig config,
+                                         MeterRegistry meterRegistry) {
+        WithdrawalConfig.WorkerPool pool = config.getWorkerPool();
+        int slots = poolSlots(pool);
+        if (pool.getPartitions() > slots) {
+            // Every busy lane occupies one pool slot, the pool must be able to take all of them at once
+            throw new IllegalStateException(String.format(
+                    "worker-pool.partitions (%d) exceeds the %d tasks the %s worker pool takes at once",
+                    pool.getPartitions(), slots, pool.getMode()));
+        }
+
+        this.withdrawalExecutor = withdrawalExecutor;
+        this.laneCapacity = pool.getLaneCapacity();
+        // Every busy lane has a virtual thread of its own, and resubmitting could block on the concurrency limit
+        this.drainBudget = pool.getMode() == WithdrawalConfig.WorkerPool.Mode.VIRTUAL
+                ? Integer.MAX_VALUE
+                : PLATFORM_DRAIN_BUDGET;
+        this.lanes = new Lane[pool.getPartitions() > 0 ? pool.getPartitions() : slots];
+        log.info("Running withdrawals in {} lanes", lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+
+        Gauge.builder("withdrawal.lanes.busy", this, PartitionedWithdrawalExecutor::busyLanes)
+                .description("Lanes currently running a withdrawal")
+                .register(meterRegistry);
+        Gauge.builder("withdrawal.lanes.queued", this, PartitionedWithdrawalExecutor::queuedTasks)
+                .description("Withdrawals waiting in a lane")
+                .register(meterRegistry);
+        Gauge.builder("withdrawal.lanes.skew", this, PartitionedWithdrawalExecutor::skew)
+                .description("Load of the busiest lane relative to the mean load of all lanes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a task on the lane of the given key
+     *
+     * @param key Partitioning key, tasks with equal keys run one at a time in submission order
+     * @param task The task to run
+     * @throws TaskRejectedException if the lane is full
+     */
+    public void execute(Object key, Runnable task) {
+        Lane lane = lanes[laneIndex(key)];
+        boolean schedule;
+
+        synchronized (lane) {
+            if (lane.tasks.size() >= laneCapacity) {
+                throw new TaskRejectedException("Withdrawal lane " + laneIndex(key) + " is full");
+            }
+            lane.tasks.add(task);
+            schedule = !lane.running;
+            lane.running = true;
+        }
+
+        if (schedule) {
+            try {
+                withdrawalExecutor.execute(() -> drain(lane));
+            } catch (RejectedExecutionException e) {
+                synchronized (lane) {
+                    lane.tasks.remove(task);
+                    lane.running = false;
+                }
+                throw new TaskRejectedException("Withdrawal worker pool rejected lane", e);
+            }
+        }
+    }
+
+    /**
+     * Fraction of the lane capacity taken by waiting withdrawals. Withdrawals back up in their lanes
+     * rather than in the worker pool, which only ever holds one task per busy lane.
+     *
+     * @return Queued withdrawals relative to lane count x lane capacity, between 0 and 1
+     */
+    public double backlogUtilization() {
+        return laneCapacity > 0 ? queuedTasks() / ((double) lanes.length * laneCapacity) : 0;
+    }
+
+    int laneCount() {
+        return lanes.length;
+    }
+
+    int laneIndex(Object key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    private static int poolSlots(WithdrawalConfig.WorkerPool pool) {
+        return pool.getMode() == WithdrawalConfig.WorkerPool.Mode.VIRTUAL
+                ? pool.getVirtualConcurrencyLimit()
+                : pool.getMaxPoolSize() + pool.getQueueCapacity();
+    }
+
+    private void drain(Lane lane) {
+        while (true) {
+            for (int ran = 0; ran < drainBudget; ran++) {
+                Runnable next;
+                synchronized (lane) {
+                    next = lane.tasks.poll();
+                    if (next == null) {
+                        lane.running = false;
+                        return;
+                    }
+                }
+
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    // A failing withdrawal must not stall the rest of its lane
+                    log.error("Withdrawal task failed in its lane: {}", e.getMessage(), e);
+                }
+            }
+
+            if (requeue(lane)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand the pool thread to the lanes waiting behind this one once its budget is spent.
+     * The lane stays running and carries on from the back of the worker pool queue.
+     *
+     * @return false if the pool has no room for the lane, which then keeps draining on this thread
+     */
+    private boolean requeue(Lane lane) {
+        synchronized (lane) {
+            if (lane.tasks.isEmpty()) {
+                lane.running = false;
+                return true;
+            }
+        }
+
+        try {
+            withdrawalExecutor.execute(() -> drain(lane));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private double busyLanes() {
+        int busy = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                busy += lane.running ? 1 : 0;
+            }
+        }
+        return busy;
+    }
+
+    private double queuedTasks() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                queued += lane.tasks.size();
+            }
+        }
+        return queued;
+    }
+
+    private double skew() {
+        int total = 0;
+        int max = 0;
+        for (Lane lane : lanes) {
+            int load;
+            synchronized (lane) {
+                load = lane.tasks.size() + (lane.running ? 1 : 0);
+            }
+            total += load;
+            max = Math.max(max, load);
+        }
+        return total == 0 ? 0 : max / ((double) total / lanes.length);
+    }
+
+    private static final class Lane {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for micro-batching payments sent to the payment provider.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.payments.batching")
+@Data
+public class PaymentBatchingConfig {
+
+    /**
+     * Whether payments are sent through the batch endpoint of the provider
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum payments per batch call
+     */
+    private int maxItems = 50;
+
+    /**
+     * Maximum time the first payment of a batch waits for others to join
+     */
+    private Duration maxWait = Duration.ofMillis(20);
+
+    /**
+     * How long a withdrawal waits for the response of its batch before giving up.
+     * It is only FAILED if its payment was never sent, otherwise it stays PROCESSING for reconciliation.
+     */
+    private Duration responseTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,47 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for how the application talks to Redis.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.redis")
+@Data
+public class RedisAccessConfig {
+
+    /**
+     * SHARED multiplexes every command over one Lettuce connection, POOLED borrows a connection per
+     * command from the spring.data.redis.lettuce.pool settings
+     */
+    private ConnectionMode connectionMode = ConnectionMode.SHARED;
+
+    /**
+     * Coalescing of fire-and-forget writes into pipelines
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    public enum ConnectionMode {
+        SHARED,
+        POOLED
+    }
+
+    @Data
+    public static class Pipeline {
+        private boolean enabled = true;
+
+        /**
+         * Maximum commands sent in one pipeline
+         */
+        private int maxCommands = 64;
+
+        /**
+         * How long the first queued command waits for others to join its pipeline
+         */
+        private Duration maxWait = Duration.ofMillis(2);
+    }
+}
@@ -1,19 +1,58 @@
 package com.ontop.challenge.infrastructure.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.service.IdempotencyService;
+import com.ontop.challenge.application.service.WithdrawalStatusService;
+import com.ontop.challenge.infrastructure.redis.IdempotencyJournal;
+import com.ontop.challenge.infrastructure.redis.RedisValueCodec;
+import com.ontop.challenge.infrastructure.redis.VersionedRedisSerializer;
+import com.ontop.challenge.infrastructure.redis.WithdrawalResponseCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
+    /**
+     * Applies ontop.redis.connection-mode to the auto-configured Lettuce factory. Spring Boot builds a pooled
+     * client config once commons-pool2 is present, but Lettuce keeps sending regular commands over one shared
+     * native connection unless sharing is switched off, leaving the pool to blocking commands only.
+     */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public static BeanPostProcessor lettuceConnectionModePostProcessor(ObjectProvider<RedisAccessConfig> redisAccessConfig) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof LettuceConnectionFactory factory) {
+                    factory.setShareNativeConnection(
+                            redisAccessConfig.getObject().getConnectionMode() == RedisAccessConfig.ConnectionMode.SHARED);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       IdempotencyConfig idempotencyConfig) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         
@@ -24,19 +63,73 @@ public class RedisConfig {
                 objectMapper.getPolymorphicTypeValidator(),
                 ObjectMapper.DefaultTyping.NON_FINAL
         );
+        objectMapper.addMixIn(WithdrawalResponse.class, CachedWithdrawalResponse.class);
         
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+
+        // Binary cached responses are always readable; they are only written once the codec is switched
+        // to BINARY, after every node runs this reader. Anything else (and old entries) stays JSON
+        List<RedisValueCodec> codecs = List.of(new WithdrawalResponseCodec());
+        VersionedRedisSerializer serializer = new VersionedRedisSerializer(jsonSerializer, codecs,
+                idempotencyConfig.getValueCodec() == IdempotencyConfig.ValueCodec.BINARY);
         
         // Use String serializer for keys
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         
-        // Use JSON serializer for values
+        // Use versioned serializer for values
         template.setValueSerializer(serializer);
         template.setHashValueSerializer(serializer);
         
         template.afterPropertiesSet();
         return template;
     }
-}
 
+    /**
+     * Subscribes the idempotency near cache and key filter to the writes announced by other nodes
+     */
+    @Bean
+    @ConditionalOnExpression("${ontop.idempotency.near-cache.enabled:true} or ${ontop.idempotency.key-filter.enabled:true}")
+    public RedisMessageListenerContainer idempotencyInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                         IdempotencyService idempotencyService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(idempotencyService, new ChannelTopic(IdempotencyService.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Subscribes status waiters to the withdrawal completions announced by other nodes
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ontop.withdrawal", name = "status-fanout", matchIfMissing = true)
+    public RedisMessageListenerContainer withdrawalCompletionListener(RedisConnectionFactory connectionFactory,
+                                                                      WithdrawalStatusService withdrawalStatusService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(withdrawalStatusService, new ChannelTopic(WithdrawalStatusService.COMPLETION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Local fallback store for idempotency responses while Redis is down
+     */
+    @Bean(destroyMethod = "close")
+    public IdempotencyJournal idempotencyJournal(IdempotencyConfig idempotencyConfig) throws IOException {
+        IdempotencyConfig.Journal journal = idempotencyConfig.getJournal();
+        if (!journal.isEnabled()) {
+            return IdempotencyJournal.disabled();
+        }
+        return IdempotencyJournal.open(Path.of(journal.getPath()),
+                Math.toIntExact(journal.getSize().toBytes()), journal.getIndexSlots());
+    }
+
+    /**
+     * Keeps the request fingerprint in the JSON copy of cached responses, it is only hidden from API clients
+     */
+    private abstract static class CachedWithdrawalResponse {
+
+        @JsonIgnore(false)
+        private Long requestFingerprint;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ontop.challenge.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the read replica that serves read-only transactions.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ontop.datasource.replica")
+@Data
+public class ReplicaDataSourceConfig {
+
+    /**
+     * Whether read-only transactions are routed to the replica. When disabled everything uses the primary.
+     */
+    private boolean enabled = false;
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private int maximumPoolSize = 10;
+
+    /**
+     * How long a read waits for a replica connection. Kept short, an unreachable replica is
+     * detected by the lag check and reads fall back to the primary.
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Replication lag above which reads go to the primary until the replica catches up
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * Delay between replication lag checks, in milliseconds
+     */
+    private long lagCheckIntervalMs = 1000;
+}
@@ -0,0 +1,143 @@
+package com.ontop.challenge.infrastructure.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer metrics for the withdrawal worker pool in VIRTUAL mode.
+ * Pinning is read from JFR events, since a pinned virtual thread holds its carrier
+ * for the whole blocking call and quietly caps throughput at the carrier count.
+ */
+@Component
+@Slf4j
+public class VirtualThreadMetrics {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String SUBMIT_FAILED_EVENT = "jdk.VirtualThreadSubmitFailed";
+    private static final String CARRIER_THREAD_GROUP = "CarrierThreads";
+
+    private final WithdrawalConfig config;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private RecordingStream recordingStream;
+    private volatile ThreadGroup carrierThreadGroup;
+
+    public VirtualThreadMetrics(WithdrawalConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        WithdrawalConfig.WorkerPool pool = config.getWorkerPool();
+        if (pool.getMode() != WithdrawalConfig.WorkerPool.Mode.VIRTUAL) {
+            return;
+        }
+
+        Gauge.builder("withdrawal.executor.virtual.in_flight", inFlight, AtomicInteger::get)
+                .description("Withdrawals currently running on virtual threads")
+                .register(meterRegistry);
+        Gauge.builder("withdrawal.executor.virtual.carriers", this, VirtualThreadMetrics::liveCarrierThreads)
+                .description("Live carrier threads of the virtual thread scheduler")
+                .register(meterRegistry);
+        Gauge.builder("withdrawal.executor.virtual.carrier_parallelism", this, m -> carrierParallelism())
+                .description("Configured parallelism of the virtual thread scheduler")
+                .register(meterRegistry);
+
+        Timer pinned = Timer.builder("withdrawal.executor.virtual.pinned")
+                .description("Time virtual threads spent pinned to their carrier")
+                .register(meterRegistry);
+        Counter submitFailed = Counter.builder("withdrawal.executor.virtual.submit_failed")
+                .description("Virtual threads that could not be scheduled on a carrier")
+                .register(meterRegistry);
+
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT).withThreshold(pool.getPinnedThreshold()).withStackTrace();
+            recordingStream.enable(SUBMIT_FAILED_EVENT);
+            recordingStream.onEvent(PINNED_EVENT, event -> {
+                pinned.record(event.getDuration());
+                log.debug("Virtual thread pinned for {} ms", event.getDuration().toMillis());
+            });
+            recordingStream.onEvent(SUBMIT_FAILED_EVENT, event -> submitFailed.increment());
+            recordingStream.startAsync();
+        } catch (Exception e) {
+            log.warn("JFR unavailable, virtual thread pinning metrics disabled: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    /**
+     * Task decorator tracking how many withdrawals are in flight
+     */
+    public Runnable track(Runnable task) {
+        return () -> {
+            inFlight.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Withdrawals currently running on virtual threads
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Carriers live in their own thread group, counting it avoids the stack walk of every thread
+     * that Thread.getAllStackTraces() would do on each scrape
+     */
+    private double liveCarrierThreads() {
+        ThreadGroup group = carrierThreadGroup;
+        if (group == null) {
+            // The group is only created with the first carrier
+            group = findCarrierThreadGroup();
+            if (group == null) {
+                return 0;
+            }
+            carrierThreadGroup = group;
+        }
+        return group.activeCount();
+    }
+
+    private static ThreadGroup findCarrierThreadGroup() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        ThreadGroup[] groups = new ThreadGroup[root.activeGroupCount() + 1];
+        int count = root.enumerate(groups, false);
+        for (int i = 0; i < count; i++) {
+            if (CARRIER_THREAD_GROUP.equals(groups[i].getName())) {
+                return groups[i];
+            }
+        }
+        return null;
+    }
+
+    private double carrierParallelism() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        return parallelism != null ? Integer.parseInt(parallelism) : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 /**
  * Configuration for withdrawal business rules.
@@ -24,6 +25,47 @@ public class WithdrawalConfig {
      */
     private CompanyAccount companyAccount;
 
+    /**
+     * How long a balance hold counts against the user's balance if the withdrawal never reaches the wallet debit
+     */
+    private Duration holdTtl = Duration.ofMinutes(15);
+
+    /**
+     * Maximum clock difference between application nodes. A debited hold keeps counting against
+     * wallet balances read up to this long before its debit was recorded
+     */
+    private Duration clockSkew = Duration.ofSeconds(2);
+
+    /**
+     * Worker pool running the background withdrawal pipeline
+     */
+    private WorkerPool workerPool = new WorkerPool();
+
+    /**
+     * Limits of the batch withdrawal endpoint
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * Maximum time a status request waits for a withdrawal to reach COMPLETED or FAILED
+     */
+    private Duration statusMaxWait = Duration.ofSeconds(30);
+
+    /**
+     * Whether completions are announced over Redis, so status waiters on other nodes return right away
+     */
+    private boolean statusFanout = true;
+
+    /**
+     * Adaptive concurrency limit of the withdrawal endpoint
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * Paging of the withdrawal history endpoint
+     */
+    private History history = new History();
+
     @Data
     public static class CompanyAccount {
         private String name;
@@ -31,5 +73,109 @@ public class WithdrawalConfig {
         private String routingNumber;
         private String currency;
     }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Maximum number of withdrawals accepted in one batch request
+         */
+        private int maxItems = 1000;
+
+        /**
+         * Number of withdrawals persisted per DB transaction
+         */
+        private int chunkSize = 100;
+    }
+
+    @Data
+    public static class History {
+
+        /**
+         * Withdrawals per page when the request gives no limit
+         */
+        private int defaultPageSize = 50;
+
+        /**
+         * Largest page a request can ask for
+         */
+        private int maxPageSize = 200;
+
+        /**
+         * Longest range of days the daily totals endpoint returns at once
+         */
+        private int maxDailyTotalsDays = 366;
+    }
+
+    @Data
+    public static class Admission {
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        /**
+         * Multiplier applied to the limit when a signal is over target
+         */
+        private double backoffRatio = 0.9;
+        /**
+         * Target latency of accepting one withdrawal (balance check and DB writes)
+         */
+        private Duration latencyTarget = Duration.ofMillis(500);
+        /**
+         * Target latency of the background wallet debit and payment, smoothed over recent withdrawals
+         */
+        private Duration downstreamLatencyTarget = Duration.ofSeconds(5);
+        /**
+         * Fraction of the lane capacity (partitions x lane-capacity) filled with waiting withdrawals
+         * that is considered saturated
+         */
+        private double backlogHighWatermark = 0.8;
+        /**
+         * Largest fraction of the limit a single batch request may hold, so one batch never starves single requests
+         */
+        private double maxBatchShare = 0.5;
+        /**
+         * Value of the Retry-After header on shed requests
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class WorkerPool {
+
+        /**
+         * PLATFORM uses a bounded thread pool, VIRTUAL runs every withdrawal on its own virtual thread
+         */
+        private Mode mode = Mode.PLATFORM;
+
+        private int corePoolSize = 5;
+        private int maxPoolSize = 10;
+        private int queueCapacity = 100;
+        /**
+         * Number of per-user lanes, withdrawals of one user run one at a time in submission order.
+         * 0 derives it from the mode: max-pool-size + queue-capacity for PLATFORM,
+         * virtual-concurrency-limit for VIRTUAL
+         */
+        private int partitions = 0;
+        /**
+         * Maximum withdrawals waiting in one lane
+         */
+        private int laneCapacity = 50;
+
+        /**
+         * Maximum in-flight withdrawals in VIRTUAL mode, submitters block once it is reached
+         */
+        private int virtualConcurrencyLimit = 1000;
+
+        /**
+         * Minimum duration of a pinned virtual thread to be recorded in metrics
+         */
+        private Duration pinnedThreshold = Duration.ofMillis(20);
+
+        public enum Mode {
+            PLATFORM,
+            VIRTUAL
+        }
+    }
 }
 
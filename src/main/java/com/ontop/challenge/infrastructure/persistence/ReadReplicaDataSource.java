@@ -0,0 +1,55 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connections for read-only transactions: from the replica while {@link ReplicaLagMonitor} considers it
+ * usable, from the primary otherwise. A replica that refuses a connection is taken out of rotation right
+ * away instead of failing every read until the next lag check.
+ */
+public class ReadReplicaDataSource extends AbstractDataSource {
+
+    private final ReplicaLagMonitor monitor;
+    private final DataSource primary;
+    private final Counter fallbacks;
+
+    public ReadReplicaDataSource(ReplicaLagMonitor monitor, DataSource primary, MeterRegistry meterRegistry) {
+        this.monitor = monitor;
+        this.primary = primary;
+        this.fallbacks = Counter.builder("datasource.replica.fallbacks")
+                .description("Read-only transactions served by the primary because the replica was lagging or down")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (monitor.isUsable()) {
+            try {
+                return monitor.getReplica().getConnection();
+            } catch (SQLException e) {
+                monitor.markUnusable(e);
+            }
+        }
+        fallbacks.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (monitor.isUsable()) {
+            try {
+                return monitor.getReplica().getConnection(username, password);
+            } catch (SQLException e) {
+                monitor.markUnusable(e);
+            }
+        }
+        fallbacks.increment();
+        return primary.getConnection(username, password);
+    }
+}
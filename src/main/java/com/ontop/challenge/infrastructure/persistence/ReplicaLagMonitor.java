@@ -0,0 +1,92 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Owns the replica connection pool and decides whether the replica may serve reads.
+ * The replay lag is polled on the replica itself; the replica is usable while the lag stays within
+ * the configured bound and the check succeeds. Until the first successful check, reads use the primary.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements DisposableBean {
+
+    // A replica that has replayed everything it received is not lagging, however old its last
+    // replayed transaction is: on an idle primary pg_last_xact_replay_timestamp() stops moving
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+            END
+            """;
+
+    private final HikariDataSource replica;
+    private final JdbcTemplate jdbc;
+    private final double maxLagSeconds;
+
+    private volatile boolean usable;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaLagMonitor(HikariDataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.jdbc = new JdbcTemplate(replica);
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the read replica, NaN while it cannot be measured")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .description("Whether read-only transactions are currently served by the replica")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${ontop.datasource.replica.lag-check-interval-ms:1000}")
+    public void checkLag() {
+        try {
+            Double lag = jdbc.queryForObject(LAG_QUERY, Double.class);
+            lagSeconds = lag != null ? lag : Double.NaN;
+            boolean withinBound = lag != null && lag <= maxLagSeconds;
+            if (withinBound != usable) {
+                log.warn(withinBound
+                        ? "Replica caught up, lag: {}s, routing reads to the replica"
+                        : "Replica lag {}s exceeds bound, routing reads to the primary", lag);
+            }
+            usable = withinBound;
+        } catch (Exception e) {
+            lagSeconds = Double.NaN;
+            markUnusable(e);
+        }
+    }
+
+    /**
+     * Stop routing reads to the replica until the next successful check
+     */
+    public void markUnusable(Exception cause) {
+        if (usable) {
+            log.warn("Replica unavailable, routing reads to the primary: {}", cause.getMessage());
+        }
+        usable = false;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void destroy() {
+        replica.close();
+    }
+}
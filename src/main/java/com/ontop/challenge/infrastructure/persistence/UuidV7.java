@@ -0,0 +1,74 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Time-ordered UUIDs as defined in RFC 9562, version 7.
+ * <p>
+ * Layout: 48 bits of Unix milliseconds, the version, a 12-bit counter, the variant and 62 random bits.
+ * The counter starts at a random value in the lower half of its range each millisecond and is incremented
+ * for every UUID generated within it (RFC 9562 method 3), so UUIDs of one generator are strictly increasing.
+ * When the counter overflows, the timestamp is advanced by a millisecond rather than going back.
+ * <p>
+ * Used as primary keys, consecutive inserts land next to each other at the right edge of the index
+ * instead of on random pages, as they do with version 4.
+ */
+public final class UuidV7 {
+
+    private static final UuidV7 INSTANCE = new UuidV7(System::currentTimeMillis, new SecureRandom());
+
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION = 7L << COUNTER_BITS;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private final LongSupplier clock;
+    private final RandomGenerator random;
+    // Milliseconds shifted left by COUNTER_BITS, plus the counter
+    private final AtomicLong last = new AtomicLong();
+
+    UuidV7(LongSupplier clock, RandomGenerator random) {
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * @return A new UUID from the shared generator
+     */
+    public static UUID generate() {
+        return INSTANCE.next();
+    }
+
+    /**
+     * @return The creation time encoded in a version 7 UUID, to the millisecond
+     */
+    public static Instant timestampOf(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+        }
+        return Instant.ofEpochMilli(uuid.getMostSignificantBits() >>> 16);
+    }
+
+    UUID next() {
+        long now = clock.getAsLong();
+        long state;
+        long previous;
+        do {
+            previous = last.get();
+            state = (previous >>> COUNTER_BITS) < now
+                    ? now << COUNTER_BITS | random.nextLong(COUNTER_MASK >>> 1)
+                    : previous + 1;
+        } while (!last.compareAndSet(previous, state));
+
+        long millis = state >>> COUNTER_BITS;
+        long mostSignificant = millis << 16 | VERSION | (state & COUNTER_MASK);
+        long leastSignificant = VARIANT | (random.nextLong() & RANDOM_MASK);
+        return new UUID(mostSignificant, leastSignificant);
+    }
+}
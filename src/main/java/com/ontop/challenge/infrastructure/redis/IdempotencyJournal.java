@@ -0,0 +1,283 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only journal of idempotency responses saved while Redis is unavailable, kept in a memory-mapped
+ * file so it survives a process restart. An open-addressing index in direct memory maps each key to its
+ * latest record. Once Redis is back the live records are replayed into it and the journal is cleared.
+ * <p>
+ * Record layout: length, expiry (epoch millis), key length, key, response encoded by
+ * {@link WithdrawalResponseCodec}. The length is written last, so a record torn by a crash reads as the
+ * end of the log.
+ */
+@Slf4j
+public class IdempotencyJournal implements AutoCloseable {
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int SLOT_BYTES = Integer.BYTES + Long.BYTES;
+    private static final double MAX_LOAD = 0.75;
+
+    private final WithdrawalResponseCodec codec = new WithdrawalResponseCodec();
+    private final FileChannel channel;
+    private final MappedByteBuffer file;
+    private final ByteBuffer index;
+    private final int slots;
+    private final LongSupplier clock;
+    private final Object replayLock = new Object();
+    private int writePosition;
+    private int entries;
+
+    private IdempotencyJournal(FileChannel channel, MappedByteBuffer file, int slots, LongSupplier clock) {
+        this.channel = channel;
+        this.file = file;
+        this.slots = slots;
+        this.index = slots > 0 ? ByteBuffer.allocateDirect(slots * SLOT_BYTES) : null;
+        this.clock = clock;
+    }
+
+    /**
+     * Map the journal file, creating it if needed, and index the records left by a previous run
+     */
+    public static IdempotencyJournal open(Path path, int sizeBytes, int indexSlots) throws IOException {
+        return open(path, sizeBytes, indexSlots, System::currentTimeMillis);
+    }
+
+    static IdempotencyJournal open(Path path, int sizeBytes, int indexSlots, LongSupplier clock) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+
+        IdempotencyJournal journal = new IdempotencyJournal(channel, file, indexSlots, clock);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+     * Journal that keeps nothing, for deployments that would rather lose responses during a Redis outage
+     */
+    public static IdempotencyJournal disabled() {
+        return new IdempotencyJournal(null, null, 0, System::currentTimeMillis);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries == 0;
+    }
+
+    public synchronized int size() {
+        return entries;
+    }
+
+    /**
+     * Append the response of a key, superseding earlier records of the same key
+     *
+     * @return false if the journal is disabled or full
+     */
+    public synchronized boolean append(String key, WithdrawalResponse response, Duration ttl) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = codec.encode(response);
+        int bodyLength = Long.BYTES + Short.BYTES + keyBytes.length + payload.length;
+        if (keyBytes.length > Short.MAX_VALUE
+                || writePosition + LENGTH_BYTES + bodyLength + LENGTH_BYTES > file.capacity()
+                || entries + 1 > slots * MAX_LOAD) {
+            return false;
+        }
+
+        int offset = writePosition;
+        file.position(offset + LENGTH_BYTES);
+        file.putLong(clock.getAsLong() + ttl.toMillis());
+        file.putShort((short) keyBytes.length);
+        file.put(keyBytes);
+        file.put(payload);
+        file.putInt(offset, bodyLength);
+        writePosition = offset + LENGTH_BYTES + bodyLength;
+
+        index(key, offset);
+        return true;
+    }
+
+    /**
+     * @return the latest unexpired response journaled for the key
+     */
+    public synchronized Optional<WithdrawalResponse> get(String key) {
+        if (entries == 0) {
+            return Optional.empty();
+        }
+
+        int slot = find(key);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        Entry entry = read(index.getLong(slot * SLOT_BYTES + Integer.BYTES) - 1);
+        return entry.ttl().isPositive() ? Optional.of(entry.response()) : Optional.empty();
+    }
+
+    /**
+     * Hand every unexpired entry to the writer and drop the replayed ones. The entries are snapshotted
+     * under the lock but written outside it, so saves and lookups are not held up by the Redis calls;
+     * entries appended meanwhile, including newer responses of replayed keys, are kept for the next replay.
+     * If the writer throws, the journal is kept so the next replay starts over; writers must therefore
+     * tolerate entries they already wrote.
+     *
+     * @return number of entries replayed
+     */
+    public int replay(Consumer<Entry> writer) {
+        synchronized (replayLock) {
+            List<Entry> live = new ArrayList<>();
+            Set<Long> replayedOffsets = new HashSet<>();
+            synchronized (this) {
+                if (entries == 0) {
+                    return 0;
+                }
+                for (int slot = 0; slot < slots; slot++) {
+                    long offset = index.getLong(slot * SLOT_BYTES + Integer.BYTES);
+                    if (offset != 0) {
+                        Entry entry = read(offset - 1);
+                        if (entry.ttl().isPositive()) {
+                            live.add(entry);
+                        }
+                        replayedOffsets.add(offset);
+                    }
+                }
+            }
+
+            live.forEach(writer);
+            removeAll(replayedOffsets);
+            return live.size();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            file.force();
+            channel.close();
+        }
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + LENGTH_BYTES <= file.capacity()) {
+            int length = file.getInt(position);
+            if (length <= 0 || position + LENGTH_BYTES + length > file.capacity()) {
+                break;
+            }
+            index(read(position).key(), position);
+            position += LENGTH_BYTES + length;
+        }
+        writePosition = position;
+        if (entries > 0) {
+            log.info("Recovered {} idempotency responses from the local journal", entries);
+        }
+    }
+
+    /**
+     * Drop the records at the given index offsets and compact the journal around the rest
+     */
+    private synchronized void removeAll(Set<Long> offsets) {
+        List<Entry> kept = new ArrayList<>();
+        for (int slot = 0; slot < slots; slot++) {
+            long offset = index.getLong(slot * SLOT_BYTES + Integer.BYTES);
+            if (offset != 0 && !offsets.contains(offset)) {
+                Entry entry = read(offset - 1);
+                if (entry.ttl().isPositive()) {
+                    kept.add(entry);
+                }
+            }
+        }
+
+        clear();
+        kept.forEach(entry -> append(entry.key(), entry.response(), entry.ttl()));
+    }
+
+    private void clear() {
+        for (int position = 0; position < writePosition; position++) {
+            file.put(position, (byte) 0);
+        }
+        for (int position = 0; position < index.capacity(); position++) {
+            index.put(position, (byte) 0);
+        }
+        writePosition = 0;
+        entries = 0;
+    }
+
+    private void index(String key, int offset) {
+        int slot = find(key);
+        if (slot < 0) {
+            slot = -slot - 1;
+            entries++;
+        }
+        index.putInt(slot * SLOT_BYTES, key.hashCode());
+        index.putLong(slot * SLOT_BYTES + Integer.BYTES, offset + 1L);
+    }
+
+    /**
+     * @return the slot holding the key, or (-insertion slot - 1) if it is not indexed
+     */
+    private int find(String key) {
+        int hash = key.hashCode();
+        int slot = Math.floorMod(hash, slots);
+        while (true) {
+            long offset = index.getLong(slot * SLOT_BYTES + Integer.BYTES);
+            if (offset == 0) {
+                return -slot - 1;
+            }
+            if (index.getInt(slot * SLOT_BYTES) == hash && read((int) offset - 1).key().equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) % slots;
+        }
+    }
+
+    private Entry read(long offset) {
+        int position = (int) offset;
+        int length = file.getInt(position);
+        long expiresAt = file.getLong(position + LENGTH_BYTES);
+        short keyLength = file.getShort(position + LENGTH_BYTES + Long.BYTES);
+
+        int keyStart = position + LENGTH_BYTES + Long.BYTES + Short.BYTES;
+        byte[] keyBytes = new byte[keyLength];
+        file.get(keyStart, keyBytes);
+        byte[] payload = new byte[length - Long.BYTES - Short.BYTES - keyLength];
+        file.get(keyStart + keyLength, payload);
+
+        return new Entry(new String(keyBytes, StandardCharsets.UTF_8),
+                (WithdrawalResponse) codec.decode(payload),
+                Duration.ofMillis(expiresAt - clock.getAsLong()));
+    }
+
+    /**
+     * A journaled response and the time it has left to live
+     */
+    public record Entry(String key, WithdrawalResponse response, Duration ttl) {
+    }
+}
@@ -0,0 +1,259 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.ontop.challenge.infrastructure.config.RedisAccessConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single entry point for the Redis commands the application issues.
+ * Every command is timed per command name and outcome, and the number of commands in flight is
+ * published next to the pool size so connection saturation shows up before timeouts do.
+ * <p>
+ * Fire-and-forget writes can be queued instead: a flusher groups them for up to maxWait or
+ * maxCommands and sends each group as one pipeline, completing the returned futures when it is done.
+ */
+@Component
+@Slf4j
+public class RedisAccess {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisAccessConfig config;
+    private final Map<Command, Timer> successTimers = new EnumMap<>(Command.class);
+    private final Map<Command, Timer> errorTimers = new EnumMap<>(Command.class);
+    private final DistributionSummary pipelineSize;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final BlockingQueue<PipelinedCommand> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public RedisAccess(RedisTemplate<String, Object> redisTemplate,
+                       RedisAccessConfig config,
+                       RedisProperties redisProperties,
+                       MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        // Built once rather than looked up in the registry on every command
+        for (Command command : Command.values()) {
+            successTimers.put(command, commandTimer(command, "success", meterRegistry));
+            errorTimers.put(command, commandTimer(command, "error", meterRegistry));
+        }
+        this.pipelineSize = DistributionSummary.builder("redis.pipeline.size")
+                .description("Commands sent per pipeline")
+                .register(meterRegistry);
+
+        Gauge.builder("redis.commands.in_flight", inFlight, AtomicInteger::get)
+                .description("Redis commands waiting for a reply")
+                .register(meterRegistry);
+        Gauge.builder("redis.pipeline.queued", queue, BlockingQueue::size)
+                .description("Writes waiting for the next pipeline")
+                .register(meterRegistry);
+        if (config.getConnectionMode() == RedisAccessConfig.ConnectionMode.POOLED) {
+            int maxActive = redisProperties.getLettuce().getPool().getMaxActive();
+            Gauge.builder("redis.pool.utilization", inFlight, count -> (double) count.get() / maxActive)
+                    .description("Share of pooled connections in use")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.getPipeline().isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform().name("redis-pipeline").daemon().start(this::collect);
+        log.info("Redis write pipelining enabled, maxCommands: {}, maxWait: {}, connection mode: {}",
+                config.getPipeline().getMaxCommands(), config.getPipeline().getMaxWait(), config.getConnectionMode());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        List<PipelinedCommand> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    public boolean isPipelining() {
+        return running;
+    }
+
+    public Object get(String key) {
+        return time(Command.GET, () -> redisTemplate.opsForValue().get(key));
+    }
+
+    public List<Object> multiGet(List<String> keys) {
+        return time(Command.MGET, () -> redisTemplate.opsForValue().multiGet(keys));
+    }
+
+    public void set(String key, Object value, Duration ttl) {
+        time(Command.SET, () -> {
+            redisTemplate.opsForValue().set(key, value, ttl);
+            return null;
+        });
+    }
+
+    public Boolean setIfAbsent(String key, Object value, Duration ttl) {
+        return time(Command.SETNX, () -> redisTemplate.opsForValue().setIfAbsent(key, value, ttl));
+    }
+
+    public Boolean delete(String key) {
+        return time(Command.DEL, () -> redisTemplate.delete(key));
+    }
+
+    public void publish(String channel, Object message) {
+        time(Command.PUBLISH, () -> redisTemplate.convertAndSend(channel, message));
+    }
+
+    /**
+     * Queue a SET for the next pipeline, or run it directly when pipelining is disabled
+     */
+    public CompletableFuture<Void> setPipelined(String key, Object value, Duration ttl) {
+        return enqueue(Command.SET, operations -> operations.opsForValue().set(key, value, ttl),
+                () -> set(key, value, ttl));
+    }
+
+    /**
+     * Queue a PUBLISH for the next pipeline, or run it directly when pipelining is disabled
+     */
+    public CompletableFuture<Void> publishPipelined(String channel, Object message) {
+        return enqueue(Command.PUBLISH, operations -> operations.convertAndSend(channel, message),
+                () -> publish(channel, message));
+    }
+
+    /**
+     * Decode a raw payload, such as a pub/sub message body, with the template's value serializer
+     */
+    public Object deserialize(byte[] bytes) {
+        return redisTemplate.getValueSerializer().deserialize(bytes);
+    }
+
+    private CompletableFuture<Void> enqueue(Command command,
+                                            Consumer<RedisOperations<String, Object>> write,
+                                            Runnable direct) {
+        if (!running) {
+            try {
+                direct.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        PipelinedCommand pending = new PipelinedCommand(command, write, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.result();
+    }
+
+    private void collect() {
+        while (running) {
+            try {
+                flush(nextPipeline());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<PipelinedCommand> nextPipeline() throws InterruptedException {
+        RedisAccessConfig.Pipeline pipeline = config.getPipeline();
+        List<PipelinedCommand> commands = new ArrayList<>(pipeline.getMaxCommands());
+        commands.add(queue.take());
+
+        long deadline = System.nanoTime() + pipeline.getMaxWait().toNanos();
+        while (commands.size() < pipeline.getMaxCommands()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PipelinedCommand next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            commands.add(next);
+        }
+        return commands;
+    }
+
+    private void flush(List<PipelinedCommand> commands) {
+        pipelineSize.record(commands.size());
+        try {
+            time(Command.PIPELINE, () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> typed = (RedisOperations<String, Object>) operations;
+                    commands.forEach(command -> command.write().accept(typed));
+                    return null;
+                }
+            }));
+            commands.forEach(command -> command.result().complete(null));
+        } catch (RuntimeException e) {
+            log.error("Redis pipeline of {} commands failed: {}", commands.size(), e.getMessage());
+            commands.forEach(command -> command.result().completeExceptionally(e));
+        }
+    }
+
+    private <T> T time(Command command, Supplier<T> call) {
+        inFlight.incrementAndGet();
+        long startNanos = System.nanoTime();
+        Map<Command, Timer> timers = errorTimers;
+        try {
+            T result = call.get();
+            timers = successTimers;
+            return result;
+        } finally {
+            inFlight.decrementAndGet();
+            timers.get(command).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer commandTimer(Command command, String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("redis.command.latency")
+                .description("Latency of Redis commands as seen by the application")
+                .tag("command", command.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private enum Command {
+        GET, MGET, SET, SETNX, DEL, PUBLISH, PIPELINE
+    }
+
+    private record PipelinedCommand(
+            Command command,
+            Consumer<RedisOperations<String, Object>> write,
+            CompletableFuture<Void> result
+    ) {}
+}
@@ -0,0 +1,23 @@
+package com.ontop.challenge.infrastructure.redis;
+
+/**
+ * Compact encoding for a family of values stored in Redis.
+ * Every payload starts with the codec's format tag, so readers can tell it apart from JSON entries
+ * written before the codec was enabled.
+ */
+public interface RedisValueCodec {
+
+    /**
+     * First byte of every payload written by this codec. Must not be a byte JSON can start with.
+     */
+    byte formatTag();
+
+    /**
+     * @return true if this codec can encode the value
+     */
+    boolean supports(Object value);
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes);
+}
@@ -0,0 +1,57 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.List;
+
+/**
+ * Value serializer that writes through the first codec supporting the value and falls back to JSON
+ * for everything else. Reads dispatch on the leading format tag, so entries written as JSON by an
+ * older release, or by a node with the codecs disabled, stay readable.
+ * Codecs can be registered for reading only, so a rollout first ships readers of a new format to
+ * every node and only then lets nodes write it.
+ */
+public class VersionedRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> fallback;
+    private final List<RedisValueCodec> codecs;
+    private final boolean writeCodecs;
+
+    public VersionedRedisSerializer(RedisSerializer<Object> fallback, List<RedisValueCodec> codecs) {
+        this(fallback, codecs, true);
+    }
+
+    /**
+     * @param writeCodecs false to only read the codecs' formats and keep writing JSON
+     */
+    public VersionedRedisSerializer(RedisSerializer<Object> fallback, List<RedisValueCodec> codecs, boolean writeCodecs) {
+        this.fallback = fallback;
+        this.codecs = List.copyOf(codecs);
+        this.writeCodecs = writeCodecs;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value != null && writeCodecs) {
+            for (RedisValueCodec codec : codecs) {
+                if (codec.supports(value)) {
+                    return codec.encode(value);
+                }
+            }
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null && bytes.length > 0) {
+            for (RedisValueCodec codec : codecs) {
+                if (codec.formatTag() == bytes[0]) {
+                    return codec.decode(bytes);
+                }
+            }
+        }
+        return fallback.deserialize(bytes);
+    }
+}
@@ -0,0 +1,183 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Schema-based binary encoding of {@link WithdrawalResponse}.
+ * <p>
+ * Layout (version 1): tag, version, a bitmask of the non-null fields, then the fields in declaration
+ * order. UUIDs are two longs, amounts are scale plus unscaled bytes, instants are seconds plus nanos.
+ * A typical response takes about 60 bytes against several hundred for the typed JSON.
+ * <p>
+ * The request fingerprint was added later as the last field, so entries written before it simply lack
+ * the bit and older readers stop before its bytes.
+ */
+public class WithdrawalResponseCodec implements RedisValueCodec {
+
+    static final byte TAG = (byte) 0xB1;
+    static final byte VERSION = 1;
+
+    // Wire codes of the statuses, new statuses must be appended
+    private static final TransactionStatus[] STATUSES = {
+            TransactionStatus.PENDING,
+            TransactionStatus.PROCESSING,
+            TransactionStatus.COMPLETED,
+            TransactionStatus.FAILED
+    };
+
+    private static final int TRANSACTION_ID = 1;
+    private static final int STATUS = 1 << 1;
+    private static final int AMOUNT = 1 << 2;
+    private static final int FEE = 1 << 3;
+    private static final int NET_AMOUNT = 1 << 4;
+    private static final int CURRENCY = 1 << 5;
+    private static final int CREATED_AT = 1 << 6;
+    private static final int REQUEST_FINGERPRINT = 1 << 7;
+
+    @Override
+    public byte formatTag() {
+        return TAG;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        return value instanceof WithdrawalResponse;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        WithdrawalResponse response = (WithdrawalResponse) value;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TAG);
+            out.writeByte(VERSION);
+            out.writeByte(presence(response));
+
+            if (response.getTransactionId() != null) {
+                out.writeLong(response.getTransactionId().getMostSignificantBits());
+                out.writeLong(response.getTransactionId().getLeastSignificantBits());
+            }
+            if (response.getStatus() != null) {
+                out.writeByte(statusCode(response.getStatus()));
+            }
+            writeDecimal(out, response.getAmount());
+            writeDecimal(out, response.getFee());
+            writeDecimal(out, response.getNetAmount());
+            if (response.getCurrency() != null) {
+                out.writeUTF(response.getCurrency());
+            }
+            if (response.getCreatedAt() != null) {
+                out.writeLong(response.getCreatedAt().getEpochSecond());
+                out.writeInt(response.getCreatedAt().getNano());
+            }
+            if (response.getRequestFingerprint() != null) {
+                out.writeLong(response.getRequestFingerprint());
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode withdrawal response", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            in.readByte();
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new SerializationException("Unsupported withdrawal response format version: " + version);
+            }
+
+            int presence = in.readUnsignedByte();
+            WithdrawalResponse response = new WithdrawalResponse();
+            if ((presence & TRANSACTION_ID) != 0) {
+                response.setTransactionId(new UUID(in.readLong(), in.readLong()));
+            }
+            if ((presence & STATUS) != 0) {
+                response.setStatus(status(in.readUnsignedByte()));
+            }
+            if ((presence & AMOUNT) != 0) {
+                response.setAmount(readDecimal(in));
+            }
+            if ((presence & FEE) != 0) {
+                response.setFee(readDecimal(in));
+            }
+            if ((presence & NET_AMOUNT) != 0) {
+                response.setNetAmount(readDecimal(in));
+            }
+            if ((presence & CURRENCY) != 0) {
+                response.setCurrency(in.readUTF());
+            }
+            if ((presence & CREATED_AT) != 0) {
+                response.setCreatedAt(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            }
+            if ((presence & REQUEST_FINGERPRINT) != 0) {
+                response.setRequestFingerprint(in.readLong());
+            }
+            return response;
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode withdrawal response", e);
+        }
+    }
+
+    private int presence(WithdrawalResponse response) {
+        int presence = 0;
+        if (response.getTransactionId() != null) presence |= TRANSACTION_ID;
+        if (response.getStatus() != null) presence |= STATUS;
+        if (response.getAmount() != null) presence |= AMOUNT;
+        if (response.getFee() != null) presence |= FEE;
+        if (response.getNetAmount() != null) presence |= NET_AMOUNT;
+        if (response.getCurrency() != null) presence |= CURRENCY;
+        if (response.getCreatedAt() != null) presence |= CREATED_AT;
+        if (response.getRequestFingerprint() != null) presence |= REQUEST_FINGERPRINT;
+        return presence;
+    }
+
+    private void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > 0xFF) {
+            throw new SerializationException("Amount too large to encode: " + value);
+        }
+        out.writeInt(value.scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private int statusCode(TransactionStatus status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i] == status) {
+                return i;
+            }
+        }
+        throw new SerializationException("No wire code for status " + status);
+    }
+
+    private TransactionStatus status(int code) {
+        if (code >= STATUSES.length) {
+            throw new SerializationException("Unknown status code: " + code);
+        }
+        return STATUSES[code];
+    }
+}
@@ -1,5 +1,6 @@
 package com.ontop.challenge.infrastructure.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -90,6 +91,9 @@ public class SecurityConfig {
                 
                 // Authorization rules
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches of long-poll/SSE responses, the original request was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Public endpoints
                         .requestMatchers("/api/v1/auth/**").permitAll()
                         .requestMatchers("/actuator/**").permitAll() // Allow Actuator endpoints for monitoring
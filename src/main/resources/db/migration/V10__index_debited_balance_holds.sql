@@ -0,0 +1,4 @@
+-- Holds move to DEBITED once the wallet debit is done. The funds check still counts the ones debited
+-- after its wallet balance was read, since that balance may not include the debit yet.
+CREATE INDEX idx_balance_holds_debited_user_id ON balance_holds(user_id, released_at)
+    WHERE status = 'DEBITED';
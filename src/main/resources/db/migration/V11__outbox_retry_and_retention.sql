@@ -0,0 +1,4 @@
+-- A PENDING outbox row with locked_until set is waiting out a retry back-off and is not claimable before then.
+-- PROCESSED rows are purged once past retention, the partial index serves that delete.
+CREATE INDEX idx_withdrawal_outbox_processed ON withdrawal_outbox(processed_at)
+    WHERE status = 'PROCESSED';
@@ -0,0 +1,23 @@
+-- Transactional outbox for withdrawal processing
+-- Rows are written in the same DB transaction as the PENDING transaction and
+-- claimed by dispatchers on any node with FOR UPDATE SKIP LOCKED
+
+CREATE TABLE withdrawal_outbox (
+    id UUID PRIMARY KEY,
+    transaction_id UUID NOT NULL,
+    user_id BIGINT NOT NULL,
+    account_id UUID NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    idempotency_key VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    locked_until TIMESTAMP,
+    created_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP
+);
+
+-- Only unprocessed rows are ever polled, keep the index small
+CREATE INDEX idx_withdrawal_outbox_unprocessed ON withdrawal_outbox(created_at)
+    WHERE status <> 'PROCESSED';
+CREATE INDEX idx_withdrawal_outbox_transaction_id ON withdrawal_outbox(transaction_id);
@@ -0,0 +1,16 @@
+-- Local reservation ledger: amounts held against a user's wallet balance between
+-- the PENDING transaction and the wallet debit
+
+CREATE TABLE balance_holds (
+    id UUID PRIMARY KEY,
+    transaction_id UUID NOT NULL UNIQUE,
+    user_id BIGINT NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    released_at TIMESTAMP
+);
+
+CREATE INDEX idx_balance_holds_active_user_id ON balance_holds(user_id)
+    WHERE status = 'ACTIVE';
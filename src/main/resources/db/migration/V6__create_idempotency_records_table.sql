@@ -0,0 +1,13 @@
+-- Durable idempotency records. Redis only keeps a short-lived copy of each response,
+-- this table holds it for the whole dedupe window.
+-- key_hash is the SHA-256 of the Idempotency-Key, response the binary encoded WithdrawalResponse.
+
+CREATE TABLE idempotency_records (
+    key_hash BYTEA PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    response BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_idempotency_records_expires_at ON idempotency_records(expires_at);
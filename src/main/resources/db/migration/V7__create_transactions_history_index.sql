@@ -0,0 +1,9 @@
+-- Keyset pagination of a user's withdrawals, newest first: WHERE user_id = ? AND (created_at, id) < (?, ?)
+-- The response columns are included, so a page is served by an index-only scan without touching the heap.
+-- idx_transactions_user_id is a prefix of the new index and is dropped.
+-- CONCURRENTLY keeps the table writable while the index builds; Flyway runs this migration outside a transaction.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_user_history
+    ON transactions (user_id, created_at DESC, id DESC)
+    INCLUDE (status, amount, fee, net_amount, currency);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_transactions_user_id;
@@ -0,0 +1,68 @@
+-- Declarative monthly range partitioning of transactions on created_at.
+-- Old months can then be detached as a whole instead of being deleted row by row, and history
+-- pages only read the partitions their created_at bound covers.
+--
+-- The primary key has to contain the partition key, so it becomes (id, created_at). New rows get
+-- created_at from the timestamp of their UUIDv7 id, which lets a lookup by id bind created_at too
+-- and read a single partition.
+--
+-- The table is rewritten once, under the lock Flyway's migration transaction holds on it.
+-- TransactionPartitionMaintenanceService keeps future partitions ahead of time afterwards.
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER INDEX transactions_pkey RENAME TO transactions_unpartitioned_pkey;
+ALTER INDEX idx_transactions_status RENAME TO idx_transactions_unpartitioned_status;
+ALTER INDEX idx_transactions_user_history RENAME TO idx_transactions_unpartitioned_user_history;
+
+CREATE TABLE transactions (
+    id UUID NOT NULL,
+    user_id BIGINT NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    fee DECIMAL(19, 2) NOT NULL,
+    net_amount DECIMAL(19, 2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    provider_payment_id VARCHAR(255),
+    wallet_tx_id BIGINT,
+    failure_reason VARCHAR(500),
+    destination_account_id UUID NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    version BIGINT,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Indexes on the parent are created on every partition, including the ones attached later
+CREATE INDEX idx_transactions_user_history
+    ON transactions (user_id, created_at DESC, id DESC)
+    INCLUDE (status, amount, fee, net_amount, currency);
+CREATE INDEX idx_transactions_status ON transactions (status);
+
+-- One partition per month from the oldest row up to three months past the newest row or today.
+-- Partitions are named transactions_YYYY_MM; the maintenance job relies on that name.
+DO $$
+DECLARE
+    month DATE;
+    last_month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(min(created_at), now()))::date,
+           (date_trunc('month', GREATEST(COALESCE(max(created_at), now()), now())) + INTERVAL '3 months')::date
+    INTO month, last_month
+    FROM transactions_unpartitioned;
+
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                       'transactions_' || to_char(month, 'YYYY_MM'),
+                       month,
+                       (month + INTERVAL '1 month')::date);
+        month := (month + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO transactions (id, user_id, amount, fee, net_amount, currency, status, provider_payment_id,
+                          wallet_tx_id, failure_reason, destination_account_id, created_at, updated_at, version)
+SELECT id, user_id, amount, fee, net_amount, currency, status, provider_payment_id,
+       wallet_tx_id, failure_reason, destination_account_id, created_at, updated_at, version
+FROM transactions_unpartitioned;
+
+DROP TABLE transactions_unpartitioned;
@@ -0,0 +1,25 @@
+-- Per-user, per-day totals of finished withdrawals, maintained incrementally when a transaction
+-- becomes COMPLETED or FAILED. Aggregates then read one row per day instead of every transaction.
+-- day is the calendar date of the transaction's created_at.
+
+CREATE TABLE withdrawal_daily_rollups (
+    user_id BIGINT NOT NULL,
+    day DATE NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    withdrawal_count BIGINT NOT NULL,
+    total_amount DECIMAL(19, 2) NOT NULL,
+    total_fee DECIMAL(19, 2) NOT NULL,
+    total_net_amount DECIMAL(19, 2) NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, day, currency, status)
+);
+
+-- Seed the rollups with the transactions that finished before the table existed
+INSERT INTO withdrawal_daily_rollups (user_id, day, currency, status, withdrawal_count,
+                                      total_amount, total_fee, total_net_amount, updated_at)
+SELECT user_id, CAST(created_at AS DATE), currency, status, count(*),
+       sum(amount), sum(fee), sum(net_amount), now()
+FROM transactions
+WHERE status IN ('COMPLETED', 'FAILED')
+GROUP BY user_id, CAST(created_at AS DATE), currency, status;
@@ -0,0 +1,115 @@
+package com.ontop.challenge.adapters.in;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the transaction export, reading through the real JDBC cursor.
+ * Rows are written next month, where nothing else creates transactions, and removed afterwards.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminTransactionControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<UUID> inserted = new ArrayList<>();
+
+    private Instant from;
+    private Instant to;
+
+    @BeforeEach
+    void setUp() {
+        from = YearMonth.now(ZoneOffset.UTC).plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant()
+                .plusSeconds(ThreadLocalRandom.current().nextInt(0, 20 * 24 * 3600));
+        to = from.plusSeconds(60);
+        for (int i = 0; i < 3; i++) {
+            insertTransaction(from.plusSeconds(i));
+        }
+        // Just outside the range
+        insertTransaction(to);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inserted.forEach(id -> jdbcTemplate.update("DELETE FROM transactions WHERE id = ?", id));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void export_Ndjson_StreamsRangeAndEndsWithRowCount() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/transactions/export")
+                        .param("from", from.toString())
+                        .param("to", to.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(4);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(objectMapper.readTree(lines[i]).get("id").asText());
+        }
+        assertThat(ids).containsExactlyInAnyOrderElementsOf(inserted.subList(0, 3).stream().map(UUID::toString).toList());
+
+        JsonNode trailer = objectMapper.readTree(lines[3]);
+        assertThat(trailer.get("type").asText()).isEqualTo("trailer");
+        assertThat(trailer.get("rowCount").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void export_Csv_EndsWithRowCount() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/transactions/export")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("format", "csv"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<String> lines = Arrays.asList(body.split("\n"));
+        assertThat(lines).hasSize(5);
+        assertThat(lines.get(0)).startsWith("id,user_id,amount");
+        assertThat(lines.get(4)).isEqualTo("#row_count,3");
+    }
+
+    private void insertTransaction(Instant createdAt) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("""
+                        INSERT INTO transactions (id, user_id, amount, fee, net_amount, currency, status,
+                                                  destination_account_id, created_at, updated_at, version)
+                        VALUES (?, 1000, 1000.00, 100.00, 900.00, 'USD', 'COMPLETED', ?, ?, ?, 0)
+                        """,
+                id, UUID.randomUUID(), Timestamp.from(createdAt), Timestamp.from(createdAt));
+        inserted.add(id);
+    }
+}
@@ -3,7 +3,9 @@ package com.ontop.challenge.adapters.in;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
 import com.ontop.challenge.application.service.IdempotencyService;
+import com.ontop.challenge.application.service.RequestFingerprint;
 import com.ontop.challenge.domain.TransactionStatus;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,14 +16,22 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -51,6 +61,15 @@ class WithdrawalControllerIntegrationTest {
     @MockitoBean
     private com.ontop.challenge.application.port.out.TransactionRepositoryPort transactionRepositoryPort;
 
+    @MockitoBean
+    private com.ontop.challenge.application.port.out.WithdrawalOutboxPort withdrawalOutboxPort;
+
+    @MockitoBean
+    private com.ontop.challenge.application.port.out.BalanceHoldPort balanceHoldPort;
+
+    @MockitoBean
+    private com.ontop.challenge.application.port.out.WithdrawalRollupPort withdrawalRollupPort;
+
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void withdraw_WithCachedResponse_ReturnsCachedResult() throws Exception {
@@ -91,6 +110,46 @@ class WithdrawalControllerIntegrationTest {
         verify(idempotencyService).getResponse(idempotencyKey);
     }
 
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void withdraw_WithCachedResponseForDifferentBody_ReturnsConflict() throws Exception {
+        String idempotencyKey = "test-key-reused";
+        UUID accountId = UUID.randomUUID();
+
+        WithdrawRequest original = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(accountId)
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .build();
+        WithdrawRequest altered = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(accountId)
+                .amount(new BigDecimal("5000.00"))
+                .currency("USD")
+                .build();
+
+        WithdrawalResponse cachedResponse = RequestFingerprint.stamp(WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .build(), original);
+
+        when(idempotencyService.getResponse(idempotencyKey))
+                .thenReturn(Optional.of(cachedResponse));
+
+        mockMvc.perform(post("/api/v1/withdrawals")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .content(objectMapper.writeValueAsString(altered)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value("IDEMPOTENT_CONFLICT"));
+
+        verify(idempotencyService, never()).tryMarkInFlight(any(), any());
+    }
+
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void withdraw_WithoutCachedResponse_ReturnsAccepted() throws Exception {
@@ -108,6 +167,8 @@ class WithdrawalControllerIntegrationTest {
                 .thenReturn(Optional.empty());
 
         when(walletClientPort.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any())).thenReturn(BigDecimal.ZERO);
+        when(idempotencyService.tryMarkInFlight(eq(idempotencyKey), any())).thenReturn(true);
         when(transactionRepositoryPort.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         mockMvc.perform(post("/api/v1/withdrawals")
@@ -183,6 +244,8 @@ class WithdrawalControllerIntegrationTest {
                 .thenReturn(Optional.empty());
 
         when(walletClientPort.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any())).thenReturn(BigDecimal.ZERO);
+        when(idempotencyService.tryMarkInFlight(eq(idempotencyKey), any())).thenReturn(true);
         when(transactionRepositoryPort.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         mockMvc.perform(post("/api/v1/withdrawals")
@@ -195,5 +258,113 @@ class WithdrawalControllerIntegrationTest {
 
         verify(idempotencyService).getResponse(idempotencyKey);
     }
-}
 
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void listWithdrawals_ReturnsPageWithNextCursor() throws Exception {
+        List<TransactionRepositoryPort.TransactionSummary> rows = List.of(
+                summary(Instant.parse("2025-01-02T10:00:00Z")),
+                summary(Instant.parse("2025-01-01T10:00:00Z")));
+        when(transactionRepositoryPort.findHistory(1000L, null, 2)).thenReturn(rows);
+
+        mockMvc.perform(get("/api/v1/withdrawals")
+                        .param("userId", "1000")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.withdrawals.length()").value(1))
+                .andExpect(jsonPath("$.withdrawals[0].transactionId").value(rows.get(0).id().toString()))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void listWithdrawals_WithMalformedCursor_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/withdrawals")
+                        .param("userId", "1000")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getDailyTotals_ReturnsRollupRows() throws Exception {
+        LocalDate day = LocalDate.parse("2026-10-01");
+        when(withdrawalRollupPort.findDailyTotals(1000L, day, LocalDate.parse("2026-10-31"))).thenReturn(List.of(
+                new com.ontop.challenge.application.port.out.WithdrawalRollupPort.DailyTotal(day, "USD",
+                        TransactionStatus.COMPLETED, 3, new BigDecimal("3000.00"), new BigDecimal("300.00"),
+                        new BigDecimal("2700.00"))));
+
+        mockMvc.perform(get("/api/v1/withdrawals/daily-totals")
+                        .param("userId", "1000")
+                        .param("from", "2026-10-01")
+                        .param("to", "2026-10-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].day").value("2026-10-01"))
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].totalFee").value(300.00));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getDailyTotals_WithReversedRange_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/withdrawals/daily-totals")
+                        .param("userId", "1000")
+                        .param("from", "2026-10-31")
+                        .param("to", "2026-10-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getWithdrawal_WhenExists_ReturnsCurrentState() throws Exception {
+        com.ontop.challenge.domain.Transaction transaction = createTransaction(TransactionStatus.PROCESSING);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        mockMvc.perform(get("/api/v1/withdrawals/{id}", transaction.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactionId").value(transaction.getId().toString()))
+                .andExpect(jsonPath("$.status").value("PROCESSING"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getWithdrawal_WhenMissing_ReturnsNotFound() throws Exception {
+        UUID transactionId = UUID.randomUUID();
+        when(transactionRepositoryPort.findById(transactionId)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/withdrawals/{id}", transactionId))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code").value("NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void awaitWithdrawal_WhenAlreadyCompleted_ReturnsFinalState() throws Exception {
+        com.ontop.challenge.domain.Transaction transaction = createTransaction(TransactionStatus.COMPLETED);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        MvcResult pending = mockMvc.perform(get("/api/v1/withdrawals/{id}", transaction.getId())
+                        .param("waitSeconds", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void getWithdrawal_WithoutAuthentication_ReturnsUnauthorized() throws Exception {
+        mockMvc.perform(get("/api/v1/withdrawals/{id}", UUID.randomUUID()))
+                .andExpect(status().isUnauthorized());
+
+        verify(transactionRepositoryPort, never()).findById(any());
+    }
+
+    private TransactionRepositoryPort.TransactionSummary summary(Instant createdAt) {
+        return new TransactionRepositoryPort.TransactionSummary(UUID.randomUUID(), TransactionStatus.COMPLETED,
+                new BigDecimal("1000.00"), new BigDecimal("100.00"), new BigDecimal("900.00"), "USD", createdAt);
+    }
+}
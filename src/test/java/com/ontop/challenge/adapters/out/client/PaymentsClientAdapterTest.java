@@ -14,6 +14,7 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -163,6 +164,39 @@ class PaymentsClientAdapterTest {
         assertThat(result.getPaymentInfo().getCurrency()).isEqualTo("USD");
     }
 
+    @Test
+    void createPayments_Success_ReturnsResponsesInOrder() {
+        List<PaymentRequest> requests = List.of(createPaymentRequest(), createPaymentRequest());
+        PaymentResponse[] body = {createSuccessfulPaymentResponse(), createSuccessfulPaymentResponse()};
+
+        when(restTemplate.postForEntity(
+                eq(PAYMENTS_BASE_URL + "/payments/batch"),
+                eq(requests),
+                eq(PaymentResponse[].class)
+        )).thenReturn(new ResponseEntity<>(body, HttpStatus.OK));
+
+        List<PaymentResponse> result = paymentsClientAdapter.createPayments(requests);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getPaymentInfo().getId()).isEqualTo("payment-123");
+    }
+
+    @Test
+    void createPayments_WhenResponseIsIncomplete_ThrowsException() {
+        List<PaymentRequest> requests = List.of(createPaymentRequest(), createPaymentRequest());
+        PaymentResponse[] body = {createSuccessfulPaymentResponse()};
+
+        when(restTemplate.postForEntity(
+                anyString(),
+                any(),
+                eq(PaymentResponse[].class)
+        )).thenReturn(new ResponseEntity<>(body, HttpStatus.OK));
+
+        assertThatThrownBy(() -> paymentsClientAdapter.createPayments(requests))
+                .isInstanceOf(ExternalServiceException.class)
+                .hasMessageContaining("Incomplete batch response");
+    }
+
     // Helper methods
     private PaymentRequest createPaymentRequest() {
         return PaymentRequest.builder()
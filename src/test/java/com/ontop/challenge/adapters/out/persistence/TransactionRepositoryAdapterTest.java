@@ -4,20 +4,27 @@ import com.ontop.challenge.adapters.out.persistence.entity.JpaTransactionEntity;
 import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
 import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.persistence.UuidV7;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -84,5 +91,76 @@ class TransactionRepositoryAdapterTest {
         assertThat(result.getStatus()).isEqualTo(TransactionStatus.PENDING);
     }
 
-}
+    @Test
+    void transitionStatus_WhenRowMatches_UpdatesStatusAndVersion() {
+        Transaction transaction = createTransaction(TransactionStatus.PENDING);
+        transaction.setVersion(0L);
+
+        when(jpaRepository.transitionStatus(eq(transaction.getId()), eq(transaction.getCreatedAt()),
+                eq(TransactionStatus.PENDING), eq(0L),
+                eq(TransactionStatus.PROCESSING), any(Instant.class))).thenReturn(1);
+
+        Transaction result = repositoryAdapter.transitionStatus(transaction, TransactionStatus.PROCESSING);
+
+        assertThat(result.getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        assertThat(result.getVersion()).isEqualTo(1L);
+        verify(jpaRepository, never()).save(any(JpaTransactionEntity.class));
+    }
+
+    @Test
+    void finish_WhenRowChangedConcurrently_ThrowsOptimisticLockingFailure() {
+        Transaction transaction = createTransaction(TransactionStatus.PROCESSING);
+        transaction.setVersion(2L);
+
+        when(jpaRepository.finish(eq(transaction.getId()), eq(transaction.getCreatedAt()),
+                eq(TransactionStatus.PROCESSING), eq(2L),
+                eq(TransactionStatus.COMPLETED), eq("pay-1"), isNull(), any(Instant.class))).thenReturn(0);
+
+        assertThatThrownBy(() -> repositoryAdapter.finish(transaction, TransactionStatus.COMPLETED, "pay-1", null))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        assertThat(transaction.getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    void save_NewTransaction_DerivesCreatedAtFromUuidV7Id() {
+        Transaction transaction = createTransaction(TransactionStatus.PENDING);
+        transaction.setId(null);
+        transaction.setCreatedAt(null);
 
+        when(jpaRepository.save(any(JpaTransactionEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        repositoryAdapter.save(transaction);
+
+        ArgumentCaptor<JpaTransactionEntity> saved = ArgumentCaptor.forClass(JpaTransactionEntity.class);
+        verify(jpaRepository).save(saved.capture());
+        assertThat(saved.getValue().getId().version()).isEqualTo(7);
+        assertThat(saved.getValue().getCreatedAt()).isEqualTo(UuidV7.timestampOf(saved.getValue().getId()));
+    }
+
+    @Test
+    void findById_UuidV7_LooksUpSinglePartition() {
+        UUID id = UuidV7.generate();
+        JpaTransactionEntity entity = JpaTransactionEntity.builder().id(id).build();
+        Transaction transaction = createTransaction(TransactionStatus.PENDING);
+
+        when(jpaRepository.findByIdAndCreatedAt(id, UuidV7.timestampOf(id))).thenReturn(Optional.of(entity));
+        when(mapper.JpaToTransaction(entity)).thenReturn(transaction);
+
+        assertThat(repositoryAdapter.findById(id)).contains(transaction);
+        verify(jpaRepository, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    void findById_RowWrittenBeforePartitioning_FallsBackToPlainLookup() {
+        UUID id = UUID.randomUUID();
+        JpaTransactionEntity entity = JpaTransactionEntity.builder().id(id).build();
+        Transaction transaction = createTransaction(TransactionStatus.PENDING);
+
+        when(jpaRepository.findById(id)).thenReturn(Optional.of(entity));
+        when(mapper.JpaToTransaction(entity)).thenReturn(transaction);
+
+        assertThat(repositoryAdapter.findById(id)).contains(transaction);
+        verify(jpaRepository, never()).findByIdAndCreatedAt(any(UUID.class), any(Instant.class));
+    }
+}
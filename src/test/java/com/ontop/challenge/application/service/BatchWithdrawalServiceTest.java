@@ -0,0 +1,189 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.BatchWithdrawalResponse;
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.exception.InsufficientFundsException;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.IdempotencyConfig;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchWithdrawalServiceTest {
+
+    @Mock
+    private WithdrawService withdrawService;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private final IdempotencyConfig idempotencyConfig = new IdempotencyConfig();
+
+    private BatchWithdrawalService batchWithdrawalService;
+
+    @BeforeEach
+    void setUp() {
+        WithdrawalConfig config = new WithdrawalConfig();
+        config.getBatch().setMaxItems(3);
+        config.getBatch().setChunkSize(2);
+        WithdrawalSubmissionService submissionService = new WithdrawalSubmissionService(
+                withdrawService, idempotencyService, idempotencyConfig, new TransactionMapper());
+        batchWithdrawalService = new BatchWithdrawalService(submissionService, idempotencyService, config);
+        lenient().when(idempotencyService.tryMarkInFlight(anyString(), any(Duration.class))).thenReturn(true);
+    }
+
+    @Test
+    void submit_MixedItems_ReturnsResultPerItemInOrder() {
+        WithdrawRequest cached = createRequest("key-cached");
+        WithdrawRequest accepted = createRequest("key-new");
+        WithdrawRequest duplicate = createRequest("key-new");
+
+        WithdrawalResponse cachedResponse = WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build();
+        Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
+
+        when(idempotencyService.getResponses(List.of("key-cached", "key-new")))
+                .thenReturn(Map.of("key-cached", cachedResponse));
+        when(withdrawService.createInitialTransactions(List.of(accepted)))
+                .thenReturn(List.of(new WithdrawService.InitialTransactionOutcome(pendingTransaction, null)));
+
+        BatchWithdrawalResponse response = batchWithdrawalService.submit(List.of(cached, accepted, duplicate));
+
+        assertThat(response.getAccepted()).isEqualTo(1);
+        assertThat(response.getRejected()).isEqualTo(1);
+        assertThat(response.getResults()).extracting(BatchWithdrawalResponse.ItemResult::getOutcome)
+                .containsExactly(BatchWithdrawalResponse.Outcome.CACHED,
+                        BatchWithdrawalResponse.Outcome.ACCEPTED,
+                        BatchWithdrawalResponse.Outcome.REJECTED);
+        assertThat(response.getResults().get(0).getWithdrawal()).isEqualTo(cachedResponse);
+        assertThat(response.getResults().get(1).getWithdrawal().getTransactionId()).isEqualTo(pendingTransaction.getId());
+        assertThat(response.getResults().get(2).getError().getCode()).isEqualTo("IDEMPOTENT_CONFLICT");
+        verify(idempotencyService).saveResponse("key-new", response.getResults().get(1).getWithdrawal());
+        verify(idempotencyService, never()).tryMarkInFlight(eq("key-cached"), any());
+    }
+
+    @Test
+    void submit_RetriedBatch_ReturnsSavedResponsesInsteadOfCreatingAgain() {
+        List<WithdrawRequest> requests = List.of(createRequest("a"), createRequest("b"));
+        Map<String, WithdrawalResponse> saved = new ConcurrentHashMap<>();
+
+        when(idempotencyService.getResponses(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .filter(saved::containsKey)
+                .collect(Collectors.toMap(key -> key, saved::get)));
+        doAnswer(inv -> saved.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(idempotencyService).saveResponse(anyString(), any(WithdrawalResponse.class));
+        when(withdrawService.createInitialTransactions(anyList())).thenAnswer(inv -> inv.<List<WithdrawRequest>>getArgument(0)
+                .stream()
+                .map(r -> new WithdrawService.InitialTransactionOutcome(createTransaction(TransactionStatus.PENDING), null))
+                .toList());
+
+        BatchWithdrawalResponse first = batchWithdrawalService.submit(requests);
+        BatchWithdrawalResponse retry = batchWithdrawalService.submit(requests);
+
+        assertThat(first.getAccepted()).isEqualTo(2);
+        assertThat(retry.getAccepted()).isZero();
+        assertThat(retry.getResults()).extracting(BatchWithdrawalResponse.ItemResult::getOutcome)
+                .containsOnly(BatchWithdrawalResponse.Outcome.CACHED);
+        assertThat(retry.getResults().get(0).getWithdrawal().getTransactionId())
+                .isEqualTo(first.getResults().get(0).getWithdrawal().getTransactionId());
+        verify(withdrawService, times(1)).createInitialTransactions(anyList());
+    }
+
+    @Test
+    void submit_KeyInFlightElsewhere_RejectsItemWithoutCreatingIt() {
+        WithdrawRequest busy = createRequest("key-busy");
+        WithdrawRequest free = createRequest("key-free");
+
+        when(idempotencyService.getResponses(anyList())).thenReturn(Map.of());
+        when(idempotencyService.tryMarkInFlight(eq("key-busy"), any(Duration.class))).thenReturn(false);
+        when(withdrawService.createInitialTransactions(List.of(free)))
+                .thenReturn(List.of(new WithdrawService.InitialTransactionOutcome(
+                        createTransaction(TransactionStatus.PENDING), null)));
+
+        BatchWithdrawalResponse response = batchWithdrawalService.submit(List.of(busy, free));
+
+        assertThat(response.getResults().get(0).getOutcome()).isEqualTo(BatchWithdrawalResponse.Outcome.REJECTED);
+        assertThat(response.getResults().get(0).getError().getCode()).isEqualTo("IDEMPOTENT_CONFLICT");
+        assertThat(response.getResults().get(1).getOutcome()).isEqualTo(BatchWithdrawalResponse.Outcome.ACCEPTED);
+        verify(idempotencyService, never()).clearInFlight("key-busy");
+    }
+
+    @Test
+    void submit_ItemRejectedByService_MapsErrorCode() {
+        WithdrawRequest request = createRequest("key-1");
+
+        when(idempotencyService.getResponses(anyList())).thenReturn(Map.of());
+        when(withdrawService.createInitialTransactions(List.of(request)))
+                .thenReturn(List.of(new WithdrawService.InitialTransactionOutcome(
+                        null, new InsufficientFundsException("Insufficient funds"))));
+
+        BatchWithdrawalResponse response = batchWithdrawalService.submit(List.of(request));
+
+        assertThat(response.getResults().get(0).getOutcome()).isEqualTo(BatchWithdrawalResponse.Outcome.REJECTED);
+        assertThat(response.getResults().get(0).getError().getCode()).isEqualTo("INSUFFICIENT_FUNDS");
+        // The key is freed so the client can retry once funds are available
+        verify(idempotencyService).clearInFlight("key-1");
+        verify(idempotencyService, never()).saveResponse(any(), any());
+    }
+
+    @Test
+    void submit_SplitsPendingItemsIntoChunks() {
+        List<WithdrawRequest> requests = List.of(createRequest("a"), createRequest("b"), createRequest("c"));
+
+        when(idempotencyService.getResponses(anyList())).thenReturn(Map.of());
+        when(withdrawService.createInitialTransactions(anyList())).thenAnswer(inv -> inv.<List<WithdrawRequest>>getArgument(0)
+                .stream()
+                .map(r -> new WithdrawService.InitialTransactionOutcome(createTransaction(TransactionStatus.PENDING), null))
+                .toList());
+
+        BatchWithdrawalResponse response = batchWithdrawalService.submit(requests);
+
+        assertThat(response.getAccepted()).isEqualTo(3);
+        verify(withdrawService, times(2)).createInitialTransactions(anyList());
+    }
+
+    @Test
+    void submit_TooManyItems_ThrowsException() {
+        List<WithdrawRequest> requests = List.of(
+                createRequest("a"), createRequest("b"), createRequest("c"), createRequest("d"));
+
+        assertThatThrownBy(() -> batchWithdrawalService.submit(requests))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maximum is 3");
+
+        verify(withdrawService, never()).createInitialTransactions(any());
+    }
+
+    private WithdrawRequest createRequest(String idempotencyKey) {
+        return WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("100.00"))
+                .currency("USD")
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
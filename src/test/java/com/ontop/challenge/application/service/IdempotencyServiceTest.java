@@ -1,20 +1,32 @@
 package com.ontop.challenge.application.service;
 
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.port.out.IdempotencyRecordPort;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.IdempotencyConfig;
+import com.ontop.challenge.infrastructure.redis.IdempotencyJournal;
+import com.ontop.challenge.infrastructure.redis.RedisAccess;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.DefaultMessage;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -25,17 +37,21 @@ import static org.mockito.Mockito.*;
 class IdempotencyServiceTest {
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private RedisAccess redisAccess;
 
     @Mock
-    private ValueOperations<String, Object> valueOperations;
+    private IdempotencyRecordPort recordPort;
 
     private IdempotencyService idempotencyService;
 
     @BeforeEach
     void setUp() {
-        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        idempotencyService = new IdempotencyService(redisTemplate);
+        lenient().when(redisAccess.publishPipelined(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.getNearCache().setEnabled(false);
+        config.getKeyFilter().setEnabled(false);
+        idempotencyService = new IdempotencyService(redisAccess, recordPort, config,
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), new SimpleMeterRegistry());
     }
 
     @Test
@@ -50,25 +66,25 @@ class IdempotencyServiceTest {
                 .currency("USD")
                 .build();
 
-        when(valueOperations.get("idempotency:test-key-123")).thenReturn(expectedResponse);
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(expectedResponse);
 
         Optional<WithdrawalResponse> result = idempotencyService.getResponse(idempotencyKey);
 
         assertThat(result).isPresent();
         assertThat(result.get()).isEqualTo(expectedResponse);
         assertThat(result.get().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
-        verify(valueOperations).get("idempotency:test-key-123");
+        verify(redisAccess).get("idempotency:test-key-123");
     }
 
     @Test
     void getResponse_WhenKeyDoesNotExist_ReturnsEmpty() {
         String idempotencyKey = "non-existent-key";
-        when(valueOperations.get("idempotency:non-existent-key")).thenReturn(null);
+        when(redisAccess.get("idempotency:non-existent-key")).thenReturn(null);
 
         Optional<WithdrawalResponse> result = idempotencyService.getResponse(idempotencyKey);
 
         assertThat(result).isEmpty();
-        verify(valueOperations).get("idempotency:non-existent-key");
+        verify(redisAccess).get("idempotency:non-existent-key");
     }
 
     @Test
@@ -76,7 +92,7 @@ class IdempotencyServiceTest {
         Optional<WithdrawalResponse> result = idempotencyService.getResponse(null);
 
         assertThat(result).isEmpty();
-        verify(valueOperations, never()).get(any());
+        verify(redisAccess, never()).get(any());
     }
 
     @Test
@@ -84,30 +100,30 @@ class IdempotencyServiceTest {
         Optional<WithdrawalResponse> result = idempotencyService.getResponse("");
 
         assertThat(result).isEmpty();
-        verify(valueOperations, never()).get(any());
+        verify(redisAccess, never()).get(any());
     }
 
     @Test
     void getResponse_WhenValueIsNotWithdrawalResponse_ReturnsEmpty() {
         String idempotencyKey = "test-key-123";
-        when(valueOperations.get("idempotency:test-key-123")).thenReturn("wrong-type");
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn("wrong-type");
 
         Optional<WithdrawalResponse> result = idempotencyService.getResponse(idempotencyKey);
 
         assertThat(result).isEmpty();
-        verify(valueOperations).get("idempotency:test-key-123");
+        verify(redisAccess).get("idempotency:test-key-123");
     }
 
     @Test
     void getResponse_WhenRedisThrowsException_ReturnsEmpty() {
         String idempotencyKey = "test-key-123";
-        when(valueOperations.get("idempotency:test-key-123"))
+        when(redisAccess.get("idempotency:test-key-123"))
                 .thenThrow(new RuntimeException("Redis connection error"));
 
         Optional<WithdrawalResponse> result = idempotencyService.getResponse(idempotencyKey);
 
         assertThat(result).isEmpty();
-        verify(valueOperations).get("idempotency:test-key-123");
+        verify(redisAccess).get("idempotency:test-key-123");
     }
 
     @Test
@@ -125,10 +141,68 @@ class IdempotencyServiceTest {
 
         idempotencyService.saveResponse(idempotencyKey, response);
 
-        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture(), durationCaptor.capture());
+        verify(redisAccess).set(keyCaptor.capture(), valueCaptor.capture(), durationCaptor.capture());
         assertThat(keyCaptor.getValue()).isEqualTo("idempotency:test-key-123");
         assertThat(valueCaptor.getValue()).isEqualTo(response);
-        assertThat(durationCaptor.getValue()).isEqualTo(Duration.ofMinutes(1));
+        assertThat(durationCaptor.getValue()).isEqualTo(Duration.ofMinutes(10));
+    }
+
+    @Test
+    void saveResponse_PendingResponse_UsesShortHotTTLAndPersistsForDedupeWindow() {
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.PENDING)
+                .build();
+        Instant before = Instant.now();
+        when(redisAccess.setIfAbsent("idempotency:test-key-123", response, Duration.ofMinutes(1))).thenReturn(true);
+
+        idempotencyService.saveResponse("test-key-123", response);
+
+        verify(redisAccess).setIfAbsent("idempotency:test-key-123", response, Duration.ofMinutes(1));
+        verify(redisAccess, never()).set(any(), any(), any());
+        ArgumentCaptor<byte[]> hashCaptor = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<Instant> expiresCaptor = ArgumentCaptor.forClass(Instant.class);
+        verify(recordPort).save(hashCaptor.capture(), eq(response), expiresCaptor.capture());
+        assertThat(hashCaptor.getValue()).hasSize(32);
+        assertThat(expiresCaptor.getValue()).isAfterOrEqualTo(before.plus(Duration.ofHours(24)));
+    }
+
+    @Test
+    void saveResponseAsync_PendingAfterFinalResponse_KeepsFinalResponse() {
+        WithdrawalResponse pending = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.PENDING)
+                .build();
+        when(redisAccess.setIfAbsent("idempotency:test-key-123", pending, Duration.ofMinutes(1))).thenReturn(false);
+
+        idempotencyService.saveResponseAsync("test-key-123", pending);
+
+        verify(redisAccess, never()).set(any(), any(), any());
+        verify(redisAccess, never()).setPipelined(any(), any(), any());
+    }
+
+    @Test
+    void getResponse_WhenRedisMisses_ReadsThroughPostgresAndWarmsRedis() {
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(null);
+        when(recordPort.find(any(), any())).thenReturn(Optional.of(response));
+        when(redisAccess.setPipelined(any(), any(), any(Duration.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(idempotencyService.getResponse("test-key-123")).contains(response);
+
+        verify(redisAccess).setPipelined("idempotency:test-key-123", response, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void getResponse_WhenPostgresFails_ReturnsEmpty() {
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(null);
+        when(recordPort.find(any(), any())).thenThrow(new QueryTimeoutException("Postgres timeout"));
+
+        assertThat(idempotencyService.getResponse("test-key-123")).isEmpty();
     }
 
     @Test
@@ -139,7 +213,7 @@ class IdempotencyServiceTest {
 
         idempotencyService.saveResponse(null, response);
 
-        verify(valueOperations, never()).set(any(), any(), any());
+        verify(redisAccess, never()).set(any(), any(), any());
     }
 
     @Test
@@ -150,14 +224,14 @@ class IdempotencyServiceTest {
 
         idempotencyService.saveResponse("", response);
 
-        verify(valueOperations, never()).set(any(), any(), any());
+        verify(redisAccess, never()).set(any(), any(), any());
     }
 
     @Test
     void saveResponse_WhenResponseIsNull_DoesNotSave() {
         idempotencyService.saveResponse("test-key", null);
 
-        verify(valueOperations, never()).set(any(), any(), any());
+        verify(redisAccess, never()).set(any(), any(), any());
     }
 
     @Test
@@ -168,11 +242,263 @@ class IdempotencyServiceTest {
                 .build();
 
         doThrow(new RuntimeException("Redis connection error"))
-                .when(valueOperations).set(any(), any(), any(Duration.class));
+                .when(redisAccess).set(any(), any(), any(Duration.class));
 
         idempotencyService.saveResponse(idempotencyKey, response);
 
-        verify(valueOperations).set(eq("idempotency:test-key-123"), eq(response), any(Duration.class));
+        verify(redisAccess).set(eq("idempotency:test-key-123"), eq(response), any(Duration.class));
     }
-}
 
+    @Test
+    void getResponse_WithNearCache_ServesRepeatedKeyWithoutRedis() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyService nearCached = new IdempotencyService(redisAccess, recordPort, new IdempotencyConfig(),
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), meterRegistry);
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(response);
+
+        assertThat(nearCached.getResponse("test-key-123")).contains(response);
+        assertThat(nearCached.getResponse("test-key-123")).contains(response);
+
+        verify(redisAccess, times(1)).get("idempotency:test-key-123");
+        assertThat(meterRegistry.get("idempotency.near_cache.hits").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("idempotency.near_cache.misses").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void saveResponse_WithNearCache_PublishesInvalidationAndIgnoresOwnMessage() {
+        IdempotencyService nearCached = new IdempotencyService(redisAccess, recordPort, new IdempotencyConfig(),
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), new SimpleMeterRegistry());
+        when(redisAccess.deserialize(any())).thenAnswer(invocation ->
+                new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8));
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .status(TransactionStatus.COMPLETED)
+                .build();
+
+        nearCached.saveResponse("test-key-123", response);
+
+        ArgumentCaptor<Object> payloadCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(redisAccess).publishPipelined(eq(IdempotencyService.INVALIDATION_CHANNEL), payloadCaptor.capture());
+        nearCached.onMessage(message((String) payloadCaptor.getValue()), null);
+
+        assertThat(nearCached.getResponse("test-key-123")).contains(response);
+        verify(redisAccess, never()).get(any());
+    }
+
+    @Test
+    void onMessage_FromOtherNode_DropsNearCopy() {
+        IdempotencyService nearCached = new IdempotencyService(redisAccess, recordPort, new IdempotencyConfig(),
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), new SimpleMeterRegistry());
+        when(redisAccess.deserialize(any())).thenAnswer(invocation ->
+                new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8));
+        WithdrawalResponse stale = WithdrawalResponse.builder().status(TransactionStatus.PENDING).build();
+        WithdrawalResponse fresh = WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build();
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(stale, fresh);
+        nearCached.getResponse("test-key-123");
+
+        nearCached.onMessage(message("other-node|test-key-123"), null);
+
+        assertThat(nearCached.getResponse("test-key-123")).contains(fresh);
+        verify(redisAccess, times(2)).get("idempotency:test-key-123");
+    }
+
+    @Test
+    void getResponse_WithKeyFilterWarmingUp_StillAsksRedis() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.getNearCache().setEnabled(false);
+        IdempotencyService filtered = new IdempotencyService(redisAccess, recordPort, config,
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), meterRegistry);
+
+        assertThat(filtered.getResponse("never-saved")).isEmpty();
+
+        verify(redisAccess).get("idempotency:never-saved");
+        assertThat(meterRegistry.get("idempotency.key_filter.skipped").counter().count()).isZero();
+    }
+
+    @Test
+    void loadKeyFilter_RulesOutUnknownKeysRightAway() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.getNearCache().setEnabled(false);
+        IdempotencyService filtered = new IdempotencyService(redisAccess, recordPort, config,
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), meterRegistry);
+        WithdrawalResponse response = WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build();
+        filtered.saveResponse("saved-key", response);
+        ArgumentCaptor<byte[]> hashCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(recordPort).save(hashCaptor.capture(), any(), any());
+        doAnswer(invocation -> {
+            invocation.<Consumer<byte[]>>getArgument(1).accept(hashCaptor.getValue());
+            return null;
+        }).when(recordPort).forEachKeyHash(any(), any());
+
+        filtered.loadKeyFilter();
+
+        assertThat(filtered.getResponse("never-saved")).isEmpty();
+        verify(redisAccess, never()).get("idempotency:never-saved");
+        assertThat(meterRegistry.get("idempotency.key_filter.skipped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getResponse_WhenKeyFilterRulesKeyOut_StillConfirmsWithPostgres() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.getNearCache().setEnabled(false);
+        IdempotencyService filtered = new IdempotencyService(redisAccess, recordPort, config,
+                CircuitBreakerRegistry.ofDefaults(), IdempotencyJournal.disabled(), meterRegistry);
+        filtered.loadKeyFilter();
+        // Saved by another node whose announcement never reached this one
+        WithdrawalResponse stored = WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build();
+        when(recordPort.find(any(), any())).thenReturn(Optional.of(stored));
+        when(redisAccess.setPipelined(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(filtered.getResponse("saved-elsewhere")).contains(stored);
+
+        verify(redisAccess, never()).get("idempotency:saved-elsewhere");
+        verify(recordPort).find(any(), any());
+    }
+
+    @Test
+    void purgeExpiredRecords_DeletesInBatchesUntilDrained() {
+        when(recordPort.deleteExpired(any(), eq(1000))).thenReturn(1000, 1000, 3);
+
+        idempotencyService.purgeExpiredRecords();
+
+        verify(recordPort, times(3)).deleteExpired(any(), eq(1000));
+    }
+
+    @Test
+    void saveResponse_WhenRedisFails_JournalsResponseAndServesIt(@TempDir Path dir) throws Exception {
+        IdempotencyService journaled = journaledService(CircuitBreakerRegistry.ofDefaults(), dir);
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        doThrow(new QueryTimeoutException("Redis timeout"))
+                .when(redisAccess).set(eq("idempotency:test-key-123"), any(), any(Duration.class));
+        when(redisAccess.get("idempotency:test-key-123")).thenThrow(new QueryTimeoutException("Redis timeout"));
+
+        journaled.saveResponse("test-key-123", response);
+
+        assertThat(journaled.getResponse("test-key-123")).contains(response);
+    }
+
+    @Test
+    void getResponse_WhenCircuitOpen_SkipsRedis(@TempDir Path dir) throws Exception {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+        registry.circuitBreaker("redis").transitionToOpenState();
+        IdempotencyService journaled = journaledService(registry, dir);
+
+        assertThat(journaled.getResponse("test-key-123")).isEmpty();
+        assertThat(journaled.tryMarkInFlight("test-key-123", Duration.ofSeconds(30))).isTrue();
+
+        verifyNoInteractions(redisAccess);
+    }
+
+    @Test
+    void replayJournal_AfterRecovery_WritesJournaledResponsesToRedis(@TempDir Path dir) throws Exception {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+        registry.circuitBreaker("redis").transitionToOpenState();
+        IdempotencyService journaled = journaledService(registry, dir);
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        journaled.saveResponse("test-key-123", response);
+
+        journaled.replayJournal();
+        verify(redisAccess, never()).setIfAbsent(any(), any(), any(Duration.class));
+
+        registry.circuitBreaker("redis").transitionToClosedState();
+        when(redisAccess.setIfAbsent(eq("idempotency:test-key-123"), eq(response), any(Duration.class)))
+                .thenReturn(true);
+        journaled.replayJournal();
+        journaled.replayJournal();
+
+        verify(redisAccess, times(1))
+                .setIfAbsent(eq("idempotency:test-key-123"), eq(response), any(Duration.class));
+        verify(redisAccess, never()).set(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    void replayJournal_WhenInFlightStatusWrittenAfterRecovery_ReplacesItWithJournaledFinalResponse(@TempDir Path dir)
+            throws Exception {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+        registry.circuitBreaker("redis").transitionToOpenState();
+        IdempotencyService journaled = journaledService(registry, dir);
+        UUID transactionId = UUID.randomUUID();
+        WithdrawalResponse completed = WithdrawalResponse.builder()
+                .transactionId(transactionId)
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        journaled.saveResponse("test-key-123", completed);
+
+        registry.circuitBreaker("redis").transitionToClosedState();
+        when(redisAccess.setIfAbsent(eq("idempotency:test-key-123"), eq(completed), any(Duration.class)))
+                .thenReturn(false);
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(WithdrawalResponse.builder()
+                .transactionId(transactionId)
+                .status(TransactionStatus.PENDING)
+                .build());
+        journaled.replayJournal();
+
+        verify(redisAccess).set(eq("idempotency:test-key-123"), eq(completed), any(Duration.class));
+    }
+
+    @Test
+    void replayJournal_WhenFinalResponseWrittenAfterRecovery_KeepsIt(@TempDir Path dir) throws Exception {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+        registry.circuitBreaker("redis").transitionToOpenState();
+        IdempotencyService journaled = journaledService(registry, dir);
+        UUID transactionId = UUID.randomUUID();
+        WithdrawalResponse failed = WithdrawalResponse.builder()
+                .transactionId(transactionId)
+                .status(TransactionStatus.FAILED)
+                .build();
+        journaled.saveResponse("test-key-123", failed);
+
+        registry.circuitBreaker("redis").transitionToClosedState();
+        when(redisAccess.setIfAbsent(eq("idempotency:test-key-123"), eq(failed), any(Duration.class)))
+                .thenReturn(false);
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(WithdrawalResponse.builder()
+                .transactionId(transactionId)
+                .status(TransactionStatus.FAILED)
+                .build());
+        journaled.replayJournal();
+
+        verify(redisAccess, never()).set(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    void saveResponseAsync_WhenPipelineFails_JournalsResponse(@TempDir Path dir) throws Exception {
+        IdempotencyService journaled = journaledService(CircuitBreakerRegistry.ofDefaults(), dir);
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        when(redisAccess.setPipelined(eq("idempotency:test-key-123"), eq(response), any(Duration.class)))
+                .thenReturn(CompletableFuture.failedFuture(new QueryTimeoutException("Redis timeout")));
+        when(redisAccess.get("idempotency:test-key-123")).thenReturn(null);
+
+        journaled.saveResponseAsync("test-key-123", response);
+
+        assertThat(journaled.getResponse("test-key-123")).contains(response);
+    }
+
+    private IdempotencyService journaledService(CircuitBreakerRegistry registry, Path dir) throws Exception {
+        IdempotencyConfig config = new IdempotencyConfig();
+        config.getNearCache().setEnabled(false);
+        config.getKeyFilter().setEnabled(false);
+        IdempotencyJournal journal = IdempotencyJournal.open(dir.resolve("idempotency.journal"), 64 * 1024, 1024);
+        return new IdempotencyService(redisAccess, recordPort, config, registry, journal, new SimpleMeterRegistry());
+    }
+
+    private DefaultMessage message(String payload) {
+        return new DefaultMessage(
+                IdempotencyService.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.InsufficientFundsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LookupScopeTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void join_AllLookupsSucceed_ExposesResults() {
+        LookupScope scope = new LookupScope(executor);
+        Supplier<String> first = scope.fork(() -> "balance");
+        Supplier<Integer> second = scope.fork(() -> 42);
+
+        scope.join();
+
+        assertThat(first.get()).isEqualTo("balance");
+        assertThat(second.get()).isEqualTo(42);
+    }
+
+    @Test
+    void join_FirstFailure_CancelsSiblingAndRethrows() throws InterruptedException {
+        CountDownLatch siblingStarted = new CountDownLatch(1);
+        CountDownLatch siblingInterrupted = new CountDownLatch(1);
+        LookupScope scope = new LookupScope(executor);
+
+        scope.fork(() -> {
+            siblingStarted.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                siblingInterrupted.countDown();
+            }
+            return null;
+        });
+        scope.fork(() -> {
+            siblingStarted.await();
+            throw new InsufficientFundsException("Insufficient funds");
+        });
+
+        assertThatThrownBy(scope::join)
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessage("Insufficient funds");
+        assertThat(siblingInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void fork_AfterFailure_DoesNotStartLookup() {
+        LookupScope scope = new LookupScope(Runnable::run);
+        scope.fork(() -> {
+            throw new IllegalArgumentException("User wallet not found: 1000");
+        });
+        boolean[] started = {false};
+        scope.fork(() -> started[0] = true);
+
+        assertThatThrownBy(scope::join).isInstanceOf(IllegalArgumentException.class);
+        assertThat(started[0]).isFalse();
+    }
+
+    @Test
+    void join_WhenExecutorRejectsLookup_FailsInsteadOfWaiting() {
+        LookupScope scope = new LookupScope(task -> {
+            throw new RejectedExecutionException("Executor shut down");
+        });
+        scope.fork(() -> "balance");
+
+        assertThatThrownBy(scope::join)
+                .isInstanceOf(ExternalServiceException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+}
@@ -0,0 +1,161 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
+import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.PaymentOutcomeUnknownException;
+import com.ontop.challenge.application.port.out.PaymentsClientPort;
+import com.ontop.challenge.infrastructure.config.PaymentBatchingConfig;
+import com.ontop.challenge.utils.LocalPaymentsProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PaymentBatcherTest {
+
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private PaymentBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        callers.close();
+    }
+
+    @Test
+    void createPayment_ConcurrentCallers_SharesOneBatchCall() {
+        LocalPaymentsProvider provider = new LocalPaymentsProvider();
+        batcher = startBatcher(provider, 3, Duration.ofSeconds(5));
+
+        List<CompletableFuture<PaymentResponse>> results = IntStream.range(1, 4)
+                .mapToObj(i -> CompletableFuture.supplyAsync(
+                        () -> batcher.createPayment(paymentRequest(BigDecimal.valueOf(i * 100L))), callers))
+                .toList();
+
+        List<BigDecimal> amounts = results.stream()
+                .map(CompletableFuture::join)
+                .map(response -> response.getPaymentInfo().getAmount())
+                .toList();
+
+        assertThat(provider.getBatchSizes()).containsExactly(3);
+        assertThat(amounts).containsExactly(
+                BigDecimal.valueOf(100L), BigDecimal.valueOf(200L), BigDecimal.valueOf(300L));
+    }
+
+    @Test
+    void createPayment_WhenMaxWaitElapses_SendsPartialBatch() {
+        LocalPaymentsProvider provider = new LocalPaymentsProvider();
+        batcher = startBatcher(provider, 50, Duration.ofMillis(10));
+
+        PaymentResponse response = batcher.createPayment(paymentRequest(new BigDecimal("900.00")));
+
+        assertThat(response.getPaymentInfo().getAmount()).isEqualByComparingTo("900.00");
+        assertThat(provider.getBatchSizes()).containsExactly(1);
+    }
+
+    @Test
+    void createPayment_WhenBatchFails_PropagatesErrorToCaller() {
+        PaymentsClientPort provider = mock(PaymentsClientPort.class);
+        when(provider.createPayments(anyList())).thenThrow(new ExternalServiceException("Provider down"));
+        batcher = startBatcher(provider, 50, Duration.ofMillis(10));
+
+        assertThatThrownBy(() -> batcher.createPayment(paymentRequest(new BigDecimal("900.00"))))
+                .isInstanceOf(ExternalServiceException.class)
+                .hasMessage("Provider down");
+    }
+
+    @Test
+    void createPayment_WhenBatchHandOffFails_FailsBatchAndKeepsCollecting() {
+        LocalPaymentsProvider provider = new LocalPaymentsProvider();
+        AtomicBoolean rejectNext = new AtomicBoolean(true);
+        Executor executor = task -> {
+            if (rejectNext.getAndSet(false)) {
+                throw new RejectedExecutionException("Executor shutting down");
+            }
+            task.run();
+        };
+        batcher = startBatcher(provider, 50, Duration.ofMillis(10), Duration.ofSeconds(5), executor);
+
+        assertThatThrownBy(() -> batcher.createPayment(paymentRequest(new BigDecimal("900.00"))))
+                .isInstanceOf(ExternalServiceException.class)
+                .hasMessage("Failed to send payment batch");
+        PaymentResponse response = batcher.createPayment(paymentRequest(new BigDecimal("800.00")));
+
+        assertThat(response.getPaymentInfo().getAmount()).isEqualByComparingTo("800.00");
+    }
+
+    @Test
+    void createPayment_WhenHandedOffButNoResponseInTime_ReportsOutcomeUnknown() {
+        LocalPaymentsProvider provider = new LocalPaymentsProvider();
+        // Batches are handed off but never answered
+        batcher = startBatcher(provider, 50, Duration.ofMillis(10), Duration.ofMillis(100), task -> {});
+
+        assertThatThrownBy(() -> batcher.createPayment(paymentRequest(new BigDecimal("900.00"))))
+                .isInstanceOf(PaymentOutcomeUnknownException.class)
+                .hasMessageEndingWith("payment may have been sent");
+    }
+
+    @Test
+    void createPayment_WhenStillQueuedAtTimeout_FailsAsNotSent() {
+        LocalPaymentsProvider provider = new LocalPaymentsProvider();
+        PaymentBatchingConfig config = new PaymentBatchingConfig();
+        config.setEnabled(true);
+        config.setResponseTimeout(Duration.ofMillis(100));
+        // Not started, no collector takes the payment off the queue
+        batcher = new PaymentBatcher(provider, config, Runnable::run, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> batcher.createPayment(paymentRequest(new BigDecimal("900.00"))))
+                .isInstanceOf(ExternalServiceException.class)
+                .isNotInstanceOf(PaymentOutcomeUnknownException.class)
+                .hasMessageEndingWith("payment was not sent");
+        assertThat(provider.getBatchSizes()).isEmpty();
+    }
+
+    private PaymentBatcher startBatcher(PaymentsClientPort provider, int maxItems, Duration maxWait) {
+        return startBatcher(provider, maxItems, maxWait, Duration.ofSeconds(30), Runnable::run);
+    }
+
+    private PaymentBatcher startBatcher(PaymentsClientPort provider, int maxItems, Duration maxWait,
+                                        Duration responseTimeout, Executor executor) {
+        PaymentBatchingConfig config = new PaymentBatchingConfig();
+        config.setEnabled(true);
+        config.setMaxItems(maxItems);
+        config.setMaxWait(maxWait);
+        config.setResponseTimeout(responseTimeout);
+
+        PaymentBatcher paymentBatcher = new PaymentBatcher(provider, config, executor, new SimpleMeterRegistry());
+        paymentBatcher.start();
+        return paymentBatcher;
+    }
+
+    private PaymentRequest paymentRequest(BigDecimal amount) {
+        return PaymentRequest.builder()
+                .destination(PaymentRequest.Destination.builder()
+                        .name("TONY STARK")
+                        .account(PaymentRequest.Destination.Account.builder()
+                                .accountNumber("1885226711")
+                                .routingNumber("211927207")
+                                .currency("USD")
+                                .build())
+                        .build())
+                .amount(amount)
+                .build();
+    }
+}
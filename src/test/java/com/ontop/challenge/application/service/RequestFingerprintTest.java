@@ -0,0 +1,68 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.application.exception.IdempotentConflictException;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestFingerprintTest {
+
+    private static final UUID ACCOUNT_ID = UUID.randomUUID();
+
+    @Test
+    void of_EquivalentBodies_MatchAfterCanonicalization() {
+        WithdrawRequest original = request(1000L, ACCOUNT_ID, "1000.00", "USD");
+        WithdrawRequest replay = request(1000L, ACCOUNT_ID, "1000", "usd");
+        replay.setIdempotencyKey("ignored-by-the-fingerprint");
+
+        assertThat(RequestFingerprint.of(replay)).isEqualTo(RequestFingerprint.of(original));
+    }
+
+    @Test
+    void of_AnyChangedField_ChangesFingerprint() {
+        long original = RequestFingerprint.of(request(1000L, ACCOUNT_ID, "1000.00", "USD"));
+
+        assertThat(RequestFingerprint.of(request(1001L, ACCOUNT_ID, "1000.00", "USD"))).isNotEqualTo(original);
+        assertThat(RequestFingerprint.of(request(1000L, UUID.randomUUID(), "1000.00", "USD"))).isNotEqualTo(original);
+        assertThat(RequestFingerprint.of(request(1000L, ACCOUNT_ID, "1000.01", "USD"))).isNotEqualTo(original);
+        assertThat(RequestFingerprint.of(request(1000L, ACCOUNT_ID, "100.00", "USD"))).isNotEqualTo(original);
+        assertThat(RequestFingerprint.of(request(1000L, ACCOUNT_ID, "1000.00", "EUR"))).isNotEqualTo(original);
+    }
+
+    @Test
+    void verify_DifferentBody_ThrowsConflict() {
+        WithdrawalResponse response = RequestFingerprint.stamp(
+                WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build(),
+                request(1000L, ACCOUNT_ID, "1000.00", "USD"));
+
+        assertThatCode(() -> RequestFingerprint.verify(request(1000L, ACCOUNT_ID, "1000.00", "USD"), response))
+                .doesNotThrowAnyException();
+        assertThatThrownBy(() -> RequestFingerprint.verify(request(1000L, ACCOUNT_ID, "2000.00", "USD"), response))
+                .isInstanceOf(IdempotentConflictException.class);
+    }
+
+    @Test
+    void verify_ResponseWithoutFingerprint_IsAccepted() {
+        WithdrawalResponse legacy = WithdrawalResponse.builder().status(TransactionStatus.COMPLETED).build();
+
+        assertThatCode(() -> RequestFingerprint.verify(request(1000L, ACCOUNT_ID, "1000.00", "USD"), legacy))
+                .doesNotThrowAnyException();
+    }
+
+    private WithdrawRequest request(Long userId, UUID accountId, String amount, String currency) {
+        return WithdrawRequest.builder()
+                .userId(userId)
+                .accountId(accountId)
+                .amount(new BigDecimal(amount))
+                .currency(currency)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.ontop.challenge.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RotatingBloomFilterTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private final AtomicLong clock = new AtomicLong();
+    private RotatingBloomFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RotatingBloomFilter(WINDOW, 10_000, 0.01, clock::get);
+    }
+
+    @Test
+    void mightContain_WhileWarmingUp_NeverRulesKeysOut() {
+        assertThat(filter.mightContain(key("never-added"))).isTrue();
+    }
+
+    @Test
+    void mightContain_AfterWarmUp_FindsAddedKeysAndRulesOutNewOnes() {
+        advance(WINDOW);
+        filter.add(key("key-1"));
+
+        assertThat(filter.mightContain(key("key-1"))).isTrue();
+        assertThat(filter.mightContain(key("key-2"))).isFalse();
+    }
+
+    @Test
+    void mightContain_KeepsKeysForAtLeastOneWindowAfterTheyWereAdded() {
+        advance(WINDOW);
+        filter.add(key("key-1"));
+
+        advance(WINDOW.minusSeconds(1));
+        filter.add(key("key-2"));
+        advance(Duration.ofSeconds(2));
+
+        assertThat(filter.mightContain(key("key-1"))).isTrue();
+        assertThat(filter.mightContain(key("key-2"))).isTrue();
+        filter.add(key("key-3"));
+
+        advance(WINDOW);
+        assertThat(filter.mightContain(key("key-1"))).isFalse();
+        assertThat(filter.mightContain(key("key-3"))).isTrue();
+    }
+
+    @Test
+    void mightContain_AfterLongIdlePeriod_ForgetsEverything() {
+        advance(WINDOW);
+        filter.add(key("key-1"));
+
+        advance(WINDOW.multipliedBy(3));
+
+        assertThat(filter.mightContain(key("key-1"))).isFalse();
+    }
+
+    @Test
+    void falsePositiveRate_StaysNearConfiguredRateAtExpectedLoad() {
+        advance(WINDOW);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(key("saved-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(key("new-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.hashFunctions()).isEqualTo(7);
+    }
+
+    @Test
+    void constructor_WithInvalidFalsePositiveRate_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(WINDOW, 1000, 1.0));
+    }
+
+    @Test
+    void markWarm_BeforeWindowElapsed_RulesOutUnknownKeys() {
+        filter.add(key("key-1"));
+
+        filter.markWarm();
+
+        assertThat(filter.mightContain(key("key-1"))).isTrue();
+        assertThat(filter.mightContain(key("key-2"))).isFalse();
+    }
+
+    private static long key(String name) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
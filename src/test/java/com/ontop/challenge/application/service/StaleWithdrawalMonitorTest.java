@@ -0,0 +1,77 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaleWithdrawalMonitorTest {
+
+    @Mock
+    private TransactionRepositoryPort transactionRepositoryPort;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxConfig config;
+
+    private StaleWithdrawalMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        config = new OutboxConfig();
+        monitor = new StaleWithdrawalMonitor(transactionRepositoryPort, config, meterRegistry);
+    }
+
+    @Test
+    void checkStaleProcessing_ReportsWithdrawalsProcessingPastThreshold() {
+        when(transactionRepositoryPort.countByStatusUpdatedBefore(eq(TransactionStatus.PROCESSING), any()))
+                .thenReturn(2L);
+        when(transactionRepositoryPort.findIdsByStatusUpdatedBefore(eq(TransactionStatus.PROCESSING), any(), anyInt()))
+                .thenReturn(List.of(UUID.randomUUID(), UUID.randomUUID()));
+
+        Instant before = Instant.now().minus(config.getStaleProcessingAfter());
+        monitor.checkStaleProcessing();
+
+        ArgumentCaptor<Instant> updatedBefore = ArgumentCaptor.forClass(Instant.class);
+        verify(transactionRepositoryPort).countByStatusUpdatedBefore(eq(TransactionStatus.PROCESSING), updatedBefore.capture());
+        assertThat(updatedBefore.getValue()).isAfterOrEqualTo(before);
+        assertThat(meterRegistry.get("withdrawal.processing.stale").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void checkStaleProcessing_ClearsGaugeOnceReconciled() {
+        when(transactionRepositoryPort.countByStatusUpdatedBefore(eq(TransactionStatus.PROCESSING), any()))
+                .thenReturn(3L, 0L);
+
+        monitor.checkStaleProcessing();
+        monitor.checkStaleProcessing();
+
+        assertThat(meterRegistry.get("withdrawal.processing.stale").gauge().value()).isZero();
+    }
+
+    @Test
+    void checkStaleProcessing_WhenDisabled_DoesNotQuery() {
+        config.setEnabled(false);
+
+        monitor.checkStaleProcessing();
+
+        verifyNoInteractions(transactionRepositoryPort);
+    }
+}
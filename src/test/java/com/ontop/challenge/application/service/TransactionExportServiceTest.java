@@ -0,0 +1,139 @@
+package com.ontop.challenge.application.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ontop.challenge.application.port.out.TransactionExportPort;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExportServiceTest {
+
+    private static final Instant FROM = Instant.parse("2026-10-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2026-11-01T00:00:00Z");
+
+    @Mock
+    private TransactionExportPort exportPort;
+
+    private TransactionExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TransactionExportService(exportPort);
+    }
+
+    @Test
+    void export_Ndjson_WritesOneObjectPerLine() throws IOException {
+        Transaction completed = createTransaction(TransactionStatus.COMPLETED);
+        completed.setWalletTxId(42L);
+        Transaction failed = createTransaction(TransactionStatus.FAILED);
+        failed.setFailureReason("Provider rejected");
+        streamRows(completed, failed);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service.export(FROM, TO, TransactionExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(2);
+        assertThat(lines).hasSize(3);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertThat(first.get("id").asText()).isEqualTo(completed.getId().toString());
+        assertThat(first.get("amount").decimalValue()).isEqualByComparingTo("1000.00");
+        assertThat(first.get("walletTxId").asLong()).isEqualTo(42L);
+        assertThat(new ObjectMapper().readTree(lines[1]).get("failureReason").asText()).isEqualTo("Provider rejected");
+        JsonNode trailer = new ObjectMapper().readTree(lines[2]);
+        assertThat(trailer.get("type").asText()).isEqualTo("trailer");
+        assertThat(trailer.get("rowCount").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    void export_Csv_WritesHeaderAndQuotesFreeText() throws IOException {
+        Transaction failed = createTransaction(TransactionStatus.FAILED);
+        failed.setFailureReason("Bank said \"no\", twice");
+        streamRows(failed);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(FROM, TO, TransactionExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("id,user_id,amount");
+        assertThat(lines[1])
+                .startsWith(failed.getId() + ",1000,1000.00,100.00,900.00,USD,FAILED,,,")
+                .contains("\"Bank said \"\"no\"\", twice\"");
+        assertThat(lines[2]).isEqualTo("#row_count,1");
+    }
+
+    @Test
+    void export_Empty_WritesOnlyTrailer() throws IOException {
+        streamRows();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service.export(FROM, TO, TransactionExportService.Format.NDJSON, out);
+
+        assertThat(rows).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"trailer\",\"rowCount\":0}\n");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void export_CursorFailsMidStream_RethrowsWithoutTrailer() {
+        doAnswer(inv -> {
+            Consumer<Transaction> consumer = inv.getArgument(2);
+            consumer.accept(createTransaction(TransactionStatus.COMPLETED));
+            throw new QueryTimeoutException("canceling statement due to statement timeout");
+        }).when(exportPort).forEachCreatedBetween(eq(FROM), eq(TO), any(Consumer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> service.export(FROM, TO, TransactionExportService.Format.CSV, out))
+                .isInstanceOf(QueryTimeoutException.class);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).doesNotContain("#row_count");
+    }
+
+    @Test
+    void export_ReversedRange_Throws() {
+        assertThatThrownBy(() -> service.export(TO, FROM, TransactionExportService.Format.CSV,
+                new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(exportPort);
+    }
+
+    @Test
+    void parse_UnknownFormat_Throws() {
+        assertThat(TransactionExportService.Format.parse("csv")).isEqualTo(TransactionExportService.Format.CSV);
+        assertThatThrownBy(() -> TransactionExportService.Format.parse("xml"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("xml");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamRows(Transaction... transactions) {
+        doAnswer(inv -> {
+            Consumer<Transaction> consumer = inv.getArgument(2);
+            List.of(transactions).forEach(consumer);
+            return null;
+        }).when(exportPort).forEachCreatedBetween(eq(FROM), eq(TO), any(Consumer.class));
+    }
+}
@@ -0,0 +1,99 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.port.out.TransactionPartitionPort;
+import com.ontop.challenge.infrastructure.config.PartitionConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionPartitionMaintenanceServiceTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2026, 11);
+
+    @Mock
+    private TransactionPartitionPort partitionPort;
+
+    private PartitionConfig config;
+
+    private TransactionPartitionMaintenanceService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new PartitionConfig();
+        config.setMonthsAhead(2);
+        config.setRetentionMonths(12);
+        service = new TransactionPartitionMaintenanceService(partitionPort, config);
+    }
+
+    @Test
+    void maintainPartitions_CreatesOnlyMissingMonthsAhead() {
+        when(partitionPort.findPartitions()).thenReturn(List.of(CURRENT, CURRENT.plusMonths(1)));
+
+        service.maintainPartitions(CURRENT);
+
+        verify(partitionPort).createPartition(CURRENT.plusMonths(2));
+        verify(partitionPort, never()).createPartition(CURRENT);
+        verify(partitionPort, never()).createPartition(CURRENT.plusMonths(1));
+        verify(partitionPort, never()).detachPartition(any());
+    }
+
+    @Test
+    void maintainPartitions_DetachesPartitionsPastRetention() {
+        YearMonth expired = CURRENT.minusMonths(13);
+        YearMonth oldestKept = CURRENT.minusMonths(12);
+        when(partitionPort.findPartitions()).thenReturn(List.of(expired, oldestKept, CURRENT,
+                CURRENT.plusMonths(1), CURRENT.plusMonths(2)));
+
+        service.maintainPartitions(CURRENT);
+
+        verify(partitionPort).detachPartition(expired);
+        verify(partitionPort, never()).detachPartition(oldestKept);
+        verify(partitionPort, never()).createPartition(any());
+    }
+
+    @Test
+    void maintainPartitions_ZeroRetention_KeepsEveryPartition() {
+        config.setRetentionMonths(0);
+        when(partitionPort.findPartitions()).thenReturn(List.of(CURRENT.minusYears(5), CURRENT,
+                CURRENT.plusMonths(1), CURRENT.plusMonths(2)));
+
+        service.maintainPartitions(CURRENT);
+
+        verify(partitionPort, never()).detachPartition(any());
+    }
+
+    @Test
+    void maintainPartitions_WhenCreateFails_StillCreatesLaterMonths() {
+        when(partitionPort.findPartitions()).thenReturn(List.of());
+        doThrow(new DataAccessResourceFailureException("lock timeout"))
+                .when(partitionPort).createPartition(CURRENT);
+
+        service.maintainPartitions(CURRENT);
+
+        verify(partitionPort).createPartition(CURRENT.plusMonths(1));
+        verify(partitionPort).createPartition(CURRENT.plusMonths(2));
+    }
+
+    @Test
+    void maintainPartitions_Disabled_DoesNothing() {
+        config.setEnabled(false);
+
+        service.maintainPartitions();
+
+        verifyNoInteractions(partitionPort);
+    }
+}
@@ -7,30 +7,47 @@ import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
 import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
 import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
 import com.ontop.challenge.application.exception.ExternalServiceException;
+import com.ontop.challenge.application.exception.PaymentOutcomeUnknownException;
 import com.ontop.challenge.application.exception.InsufficientFundsException;
 import com.ontop.challenge.application.port.out.AccountServicePort;
+import com.ontop.challenge.application.port.out.BalanceHoldPort;
 import com.ontop.challenge.application.port.out.PaymentsClientPort;
 import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
 import com.ontop.challenge.application.port.out.WalletClientPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
 import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.domain.TransactionStatus;
 import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -48,12 +65,27 @@ class WithdrawServiceTest {
     @Mock
     private PaymentsClientPort paymentsClient;
 
+    @Mock
+    private PaymentBatcher paymentBatcher;
+
     @Mock
     private AccountServicePort accountService;
 
+    @Mock
+    private WithdrawalOutboxPort withdrawalOutboxPort;
+
+    @Mock
+    private BalanceHoldPort balanceHoldPort;
+
     @Mock
     private WithdrawalConfig config;
 
+    @Mock
+    private Executor lookupExecutor;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private WithdrawService withdrawService;
 
@@ -84,6 +116,12 @@ class WithdrawServiceTest {
 
         lenient().when(config.getFeePercentage()).thenReturn(new BigDecimal("0.10"));
         lenient().when(config.getCompanyAccount()).thenReturn(companyAccount);
+        lenient().when(config.getHoldTtl()).thenReturn(Duration.ofMinutes(15));
+        lenient().when(config.getClockSkew()).thenReturn(Duration.ofSeconds(2));
+        lenient().doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(lookupExecutor).execute(any(Runnable.class));
 
         AccountServicePort.AccountDetails accountDetails = new AccountServicePort.AccountDetails(
                 "TONY STARK",
@@ -92,6 +130,13 @@ class WithdrawServiceTest {
                 "USD"
         );
         lenient().when(accountService.getAccountDetails(any(UUID.class))).thenReturn(Optional.of(accountDetails));
+
+        lenient().when(transactionRepositoryPort.transitionStatus(any(Transaction.class), any(TransactionStatus.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(transactionRepositoryPort.recordWalletTransaction(any(Transaction.class), anyLong()))
+                .thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(transactionRepositoryPort.finish(any(Transaction.class), any(TransactionStatus.class), any(), any()))
+                .thenAnswer(inv -> inv.getArgument(0));
     }
 
     @Test
@@ -100,17 +145,7 @@ class WithdrawServiceTest {
         long walletTxId = 59974L;
         String paymentId = "70cfe468";
 
-        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
-        Transaction completedTransaction = createTransaction(TransactionStatus.COMPLETED);
-        completedTransaction.setWalletTxId(walletTxId);
-        completedTransaction.setProviderPaymentId(paymentId);
-
         when(walletClient.getBalance(1000L)).thenReturn(Optional.of(balance));
-        when(transactionRepositoryPort.save(any(Transaction.class)))
-                .thenReturn(pendingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(completedTransaction);
         when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(walletTxId));
 
         PaymentResponse paymentResponse = createSuccessfulPaymentResponse(paymentId);
@@ -139,7 +174,10 @@ class WithdrawServiceTest {
         verify(walletClient).getBalance(1000L);
         verify(walletClient).createWalletTransaction(1000L, new BigDecimal("1000.00"));
         verify(paymentsClient).createPayment(any(PaymentRequest.class));
-        verify(transactionRepositoryPort, times(3)).save(any(Transaction.class));
+        verify(transactionRepositoryPort).transitionStatus(pendingTransaction, TransactionStatus.PROCESSING);
+        verify(transactionRepositoryPort).recordWalletTransaction(pendingTransaction, walletTxId);
+        verify(transactionRepositoryPort).finish(pendingTransaction, TransactionStatus.COMPLETED, paymentId, null);
+        verify(transactionRepositoryPort, never()).save(any(Transaction.class));
     }
 
     @Test
@@ -156,6 +194,10 @@ class WithdrawServiceTest {
         verify(walletClient, never()).createWalletTransaction(anyLong(), any(BigDecimal.class));
         verify(paymentsClient, never()).createPayment(any(PaymentRequest.class));
         verify(transactionRepositoryPort, never()).save(any(Transaction.class));
+        verify(transactionRepositoryPort, never()).transitionStatus(any(Transaction.class), any(TransactionStatus.class));
+        verify(transactionRepositoryPort).finish(eq(pendingTransaction), eq(TransactionStatus.FAILED), isNull(),
+                contains("Insufficient funds"));
+        verify(balanceHoldPort).release(pendingTransaction.getId(), 1000L);
     }
 
     @Test
@@ -163,18 +205,7 @@ class WithdrawServiceTest {
         BigDecimal balance = new BigDecimal("5000.00");
         long walletTxId = 59974L;
 
-        Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
-        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
-        Transaction failedTransaction = createTransaction(TransactionStatus.FAILED);
-        failedTransaction.setWalletTxId(walletTxId);
-        failedTransaction.setFailureReason("Failed to create payment");
-
         when(walletClient.getBalance(1000L)).thenReturn(Optional.of(balance));
-        when(transactionRepositoryPort.save(any(Transaction.class)))
-                .thenReturn(pendingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(failedTransaction);
         when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(walletTxId));
         when(paymentsClient.createPayment(any(PaymentRequest.class)))
                 .thenThrow(new ExternalServiceException("Failed to create payment"));
@@ -198,23 +229,16 @@ class WithdrawServiceTest {
         verify(walletClient).getBalance(1000L);
         verify(walletClient).createWalletTransaction(1000L, new BigDecimal("1000.00"));
         verify(paymentsClient).createPayment(any(PaymentRequest.class));
-        verify(transactionRepositoryPort, times(3)).save(any(Transaction.class));
+        verify(transactionRepositoryPort).recordWalletTransaction(pendingTransaction, walletTxId);
+        verify(transactionRepositoryPort).finish(
+                pendingTransaction, TransactionStatus.FAILED, null, "Failed to create payment");
     }
 
     @Test
     void executeWithdrawal_WalletTransactionFailure_MarksAsFailed() {
         BigDecimal balance = new BigDecimal("5000.00");
 
-        Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
-        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
-        Transaction failedTransaction = createTransaction(TransactionStatus.FAILED);
-        failedTransaction.setFailureReason("Failed to create wallet transaction");
-
         when(walletClient.getBalance(1000L)).thenReturn(Optional.of(balance));
-        when(transactionRepositoryPort.save(any(Transaction.class)))
-                .thenReturn(pendingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(failedTransaction);
         when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00")))
                 .thenThrow(new ExternalServiceException("Failed to create wallet transaction"));
 
@@ -237,7 +261,10 @@ class WithdrawServiceTest {
         verify(walletClient).getBalance(1000L);
         verify(walletClient).createWalletTransaction(1000L, new BigDecimal("1000.00"));
         verify(paymentsClient, never()).createPayment(any(PaymentRequest.class));
-        verify(transactionRepositoryPort, times(2)).save(any(Transaction.class));
+        verify(transactionRepositoryPort).transitionStatus(pendingTransaction, TransactionStatus.PROCESSING);
+        verify(transactionRepositoryPort, never()).recordWalletTransaction(any(Transaction.class), anyLong());
+        verify(transactionRepositoryPort).finish(
+                pendingTransaction, TransactionStatus.FAILED, null, "Failed to create wallet transaction");
     }
 
     @Test
@@ -245,18 +272,7 @@ class WithdrawServiceTest {
         BigDecimal balance = new BigDecimal("5000.00");
         long walletTxId = 59974L;
 
-        Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
-        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
-        Transaction failedTransaction = createTransaction(TransactionStatus.FAILED);
-        failedTransaction.setWalletTxId(walletTxId);
-        failedTransaction.setFailureReason("Payment declined");
-
         when(walletClient.getBalance(1000L)).thenReturn(Optional.of(balance));
-        when(transactionRepositoryPort.save(any(Transaction.class)))
-                .thenReturn(pendingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(processingTransaction)
-                .thenReturn(failedTransaction);
         when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(walletTxId));
 
         PaymentResponse paymentResponse = PaymentResponse.builder()
@@ -286,7 +302,41 @@ class WithdrawServiceTest {
         verify(walletClient).getBalance(1000L);
         verify(walletClient).createWalletTransaction(1000L, new BigDecimal("1000.00"));
         verify(paymentsClient).createPayment(any(PaymentRequest.class));
-        verify(transactionRepositoryPort, times(3)).save(any(Transaction.class));
+        verify(transactionRepositoryPort).finish(pendingTransaction, TransactionStatus.FAILED, null, "Payment declined");
+    }
+
+    @Test
+    void executeWithdrawal_BatchedPaymentNeverSent_MarksAsFailed() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(59974L));
+        when(paymentBatcher.isEnabled()).thenReturn(true);
+        when(paymentBatcher.createPayment(any(PaymentRequest.class)))
+                .thenThrow(new ExternalServiceException("No payment response within PT30S, payment was not sent"));
+
+        withdrawService.executeWithdrawal(validRequest, pendingTransaction);
+
+        verify(transactionRepositoryPort).finish(pendingTransaction, TransactionStatus.FAILED, null,
+                "No payment response within PT30S, payment was not sent");
+        verify(balanceHoldPort).release(pendingTransaction.getId(), pendingTransaction.getUserId());
+    }
+
+    @Test
+    void executeWithdrawal_BatchedPaymentOutcomeUnknown_LeavesProcessing() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(59974L));
+        when(paymentBatcher.isEnabled()).thenReturn(true);
+        when(paymentBatcher.createPayment(any(PaymentRequest.class)))
+                .thenThrow(new PaymentOutcomeUnknownException("No payment response within PT30S, payment may have been sent"));
+        when(mapper.transactionToWithdrawalResponse(any(Transaction.class))).thenReturn(WithdrawalResponse.builder()
+                .transactionId(pendingTransaction.getId())
+                .status(TransactionStatus.PROCESSING)
+                .build());
+
+        WithdrawalResponse response = withdrawService.executeWithdrawal(validRequest, pendingTransaction);
+
+        assertThat(response.getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+        verify(transactionRepositoryPort, never()).finish(any(Transaction.class), any(TransactionStatus.class), any(), any());
+        verify(balanceHoldPort, never()).release(any(), any());
     }
 
     @Test
@@ -301,6 +351,148 @@ class WithdrawServiceTest {
         verify(transactionRepositoryPort, never()).save(any(Transaction.class));
     }
 
+    @Test
+    void executeWithdrawal_AccountNotFound_ThrowsBeforeDebit() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(accountService.getAccountDetails(validRequest.getAccountId())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> withdrawService.executeWithdrawal(validRequest, pendingTransaction))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Account not found");
+
+        verify(walletClient, never()).createWalletTransaction(anyLong(), any(BigDecimal.class));
+        verify(transactionRepositoryPort, never()).transitionStatus(any(Transaction.class), any(TransactionStatus.class));
+        verify(balanceHoldPort).release(pendingTransaction.getId(), 1000L);
+    }
+
+    @Test
+    void executeWithdrawal_UnexpectedErrorBeforeDebit_ReleasesHold() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00")))
+                .thenThrow(new IllegalStateException("Unexpected wallet response"));
+
+        assertThatThrownBy(() -> withdrawService.executeWithdrawal(validRequest, pendingTransaction))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(balanceHoldPort).release(pendingTransaction.getId(), 1000L);
+    }
+
+    @Test
+    void executeWithdrawal_LostOptimisticLock_KeepsHoldOfOtherRun() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(transactionRepositoryPort.transitionStatus(pendingTransaction, TransactionStatus.PROCESSING))
+                .thenThrow(new OptimisticLockingFailureException("Transaction changed concurrently"));
+
+        assertThatThrownBy(() -> withdrawService.executeWithdrawal(validRequest, pendingTransaction))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        verify(balanceHoldPort, never()).release(any(), any());
+    }
+
+    @Test
+    void executeWithdrawal_WithActiveHold_SkipsWalletBalanceLookup() {
+        long walletTxId = 59974L;
+
+        when(balanceHoldPort.hasActiveHold(pendingTransaction.getId())).thenReturn(true);
+        when(walletClient.createWalletTransaction(1000L, new BigDecimal("1000.00"))).thenReturn(Optional.of(walletTxId));
+        when(paymentsClient.createPayment(any(PaymentRequest.class))).thenReturn(createSuccessfulPaymentResponse("70cfe468"));
+
+        withdrawService.executeWithdrawal(validRequest, pendingTransaction);
+
+        verify(walletClient, never()).getBalance(anyLong());
+        verify(balanceHoldPort).markDebited(pendingTransaction.getId(), 1000L);
+        verify(balanceHoldPort, never()).release(any(), any());
+    }
+
+    @Test
+    void createInitialTransaction_SavesPendingTransactionAndEnqueuesOutboxEntry() {
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any(Instant.class))).thenReturn(BigDecimal.ZERO);
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(transactionRepositoryPort.save(any(Transaction.class))).thenReturn(pendingTransaction);
+
+        Transaction result = withdrawService.createInitialTransaction(validRequest);
+
+        assertThat(result).isEqualTo(pendingTransaction);
+        verify(balanceHoldPort).hold(eq(pendingTransaction.getId()), eq(1000L),
+                eq(new BigDecimal("1000.00")), any(Instant.class));
+        verify(withdrawalOutboxPort).enqueue(pendingTransaction, validRequest);
+        verify(walletClient, never()).createWalletTransaction(anyLong(), any(BigDecimal.class));
+    }
+
+    @Test
+    void createInitialTransaction_OutstandingHoldsExceedBalance_ThrowsException() {
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any(Instant.class))).thenReturn(new BigDecimal("4500.00"));
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+
+        assertThatThrownBy(() -> withdrawService.createInitialTransaction(validRequest))
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessageContaining("Insufficient funds");
+
+        verify(transactionRepositoryPort, never()).save(any(Transaction.class));
+        verify(balanceHoldPort, never()).hold(any(), any(), any(), any());
+    }
+
+    @Test
+    void createInitialTransaction_FetchesBalanceBeforeLockingUser() {
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any(Instant.class))).thenReturn(BigDecimal.ZERO);
+        when(transactionRepositoryPort.save(any(Transaction.class))).thenReturn(pendingTransaction);
+
+        withdrawService.createInitialTransaction(validRequest);
+
+        InOrder inOrder = inOrder(walletClient, transactionManager, balanceHoldPort);
+        inOrder.verify(walletClient).getBalance(1000L);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(balanceHoldPort).lockAndSumActiveHolds(eq(1000L), any(Instant.class));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void createInitialTransaction_CountsHoldsDebitedSinceBalanceWasRequested() {
+        Instant beforeRead = Instant.now().minusSeconds(2);
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("5000.00")));
+        when(balanceHoldPort.lockAndSumActiveHolds(eq(1000L), any(Instant.class))).thenReturn(BigDecimal.ZERO);
+        when(transactionRepositoryPort.save(any(Transaction.class))).thenReturn(pendingTransaction);
+
+        withdrawService.createInitialTransaction(validRequest);
+
+        ArgumentCaptor<Instant> balanceReadAt = ArgumentCaptor.forClass(Instant.class);
+        verify(balanceHoldPort).lockAndSumActiveHolds(eq(1000L), balanceReadAt.capture());
+        // Moved back by the clock skew, so a debit marked on another node just before the read still counts
+        assertThat(balanceReadAt.getValue()).isBetween(beforeRead, Instant.now().minusSeconds(2));
+    }
+
+    @Test
+    void createInitialTransactions_RejectsOnlyItemsExceedingAvailableBalance() {
+        WithdrawRequest secondRequest = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey("test-idempotency-key-2")
+                .build();
+        Transaction savedTransaction = createTransaction(TransactionStatus.PENDING);
+
+        when(balanceHoldPort.lockAndSumActiveHolds(anyCollection(), any(Instant.class))).thenReturn(Map.of(1000L, new BigDecimal("500.00")));
+        when(walletClient.getBalance(1000L)).thenReturn(Optional.of(new BigDecimal("1600.00")));
+        when(transactionRepositoryPort.saveAll(anyList())).thenReturn(List.of(savedTransaction));
+
+        List<WithdrawService.InitialTransactionOutcome> outcomes =
+                withdrawService.createInitialTransactions(List.of(validRequest, secondRequest));
+
+        assertThat(outcomes).hasSize(2);
+        assertThat(outcomes.get(0).transaction()).isEqualTo(savedTransaction);
+        assertThat(outcomes.get(0).error()).isNull();
+        assertThat(outcomes.get(1).transaction()).isNull();
+        assertThat(outcomes.get(1).error()).isInstanceOf(InsufficientFundsException.class);
+
+        verify(walletClient, times(1)).getBalance(1000L);
+        verify(balanceHoldPort).hold(eq(savedTransaction.getId()), eq(1000L),
+                eq(new BigDecimal("1000.00")), any(Instant.class));
+        verify(withdrawalOutboxPort).enqueue(savedTransaction, validRequest);
+        verify(withdrawalOutboxPort, never()).enqueue(any(Transaction.class), eq(secondRequest));
+    }
+
     private PaymentResponse createSuccessfulPaymentResponse(String paymentId) {
         return PaymentResponse.builder()
                 .requestInfo(PaymentResponse.RequestInfo.builder()
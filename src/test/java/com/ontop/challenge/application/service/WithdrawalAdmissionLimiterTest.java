@@ -0,0 +1,161 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.application.exception.ServiceOverloadedException;
+import com.ontop.challenge.infrastructure.config.PartitionedWithdrawalExecutor;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalAdmissionLimiterTest {
+
+    @Mock
+    private PartitionedWithdrawalExecutor partitionedExecutor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WithdrawalConfig config = new WithdrawalConfig();
+
+    @BeforeEach
+    void setUp() {
+        config.getAdmission().setInitialLimit(4);
+        config.getAdmission().setMinLimit(2);
+        config.getAdmission().setMaxLimit(10);
+        lenient().when(partitionedExecutor.backlogUtilization()).thenReturn(0.0);
+    }
+
+    @Test
+    void acquire_WhenLimitReached_ShedsWithRetryAfter() {
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+        List<WithdrawalAdmissionLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(limiter.acquire());
+        }
+
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOf(ServiceOverloadedException.class)
+                .satisfies(e -> assertThat(((ServiceOverloadedException) e).getRetryAfter())
+                        .isEqualTo(Duration.ofSeconds(1)));
+        assertThat(meterRegistry.get("withdrawal.admission.rejected").counter().count()).isEqualTo(1);
+
+        permits.forEach(WithdrawalAdmissionLimiter.Permit::close);
+        limiter.acquire().close();
+    }
+
+    @Test
+    void acquire_WhenWeightDoesNotFit_ShedsAndKeepsOtherPermits() {
+        config.getAdmission().setMaxBatchShare(1.0);
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+        WithdrawalAdmissionLimiter.Permit single = limiter.acquire();
+
+        WithdrawalAdmissionLimiter.Permit batch = limiter.acquire(3);
+        assertThatThrownBy(limiter::acquire).isInstanceOf(ServiceOverloadedException.class);
+
+        batch.close();
+        assertThatThrownBy(() -> limiter.acquire(4)).isInstanceOf(ServiceOverloadedException.class);
+        single.close();
+        limiter.acquire(2).close();
+    }
+
+    @Test
+    void acquire_WhenWeightExceedsBatchShare_LeavesRoomForSingleRequests() {
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        WithdrawalAdmissionLimiter.Permit batch = limiter.acquire(50);
+        assertThat(meterRegistry.get("withdrawal.admission.in_flight").gauge().value()).isEqualTo(2);
+        WithdrawalAdmissionLimiter.Permit first = limiter.acquire();
+        WithdrawalAdmissionLimiter.Permit second = limiter.acquire();
+        assertThatThrownBy(limiter::acquire).isInstanceOf(ServiceOverloadedException.class);
+        assertThatThrownBy(() -> limiter.acquire(50)).isInstanceOf(ServiceOverloadedException.class);
+
+        batch.close();
+        first.close();
+        second.close();
+        assertThat(meterRegistry.get("withdrawal.admission.in_flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void release_WhenSingleRequestIsSlow_ShrinksLimit() {
+        config.getAdmission().setLatencyTarget(Duration.ZERO);
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        limiter.acquire().close();
+
+        assertThat(limiter.getLimit()).isLessThan(4);
+    }
+
+    @Test
+    void release_WhenBatchTakesLongerThanLatencyTarget_KeepsLimit() {
+        config.getAdmission().setLatencyTarget(Duration.ZERO);
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        limiter.acquire(2).close();
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void release_WhenFastAndBusy_GrowsLimit() {
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        for (int round = 0; round < 20; round++) {
+            List<WithdrawalAdmissionLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.acquire());
+            }
+            permits.forEach(WithdrawalAdmissionLimiter.Permit::close);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(4).isLessThanOrEqualTo(10);
+        assertThat(meterRegistry.get("withdrawal.admission.limit").gauge().value()).isGreaterThan(4);
+    }
+
+    @Test
+    void release_WhenDownstreamIsSlow_ShrinksLimitToMinimum() {
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+        limiter.recordDownstreamLatency(Duration.ofSeconds(30));
+
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire().close();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void release_WhenBacklogIsSaturated_ShrinksLimit() {
+        lenient().when(partitionedExecutor.backlogUtilization()).thenReturn(0.9);
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        limiter.acquire().close();
+
+        assertThat(limiter.getLimit()).isLessThan(4);
+    }
+
+    @Test
+    void acquire_WhenDisabled_NeverSheds() {
+        config.getAdmission().setEnabled(false);
+        WithdrawalAdmissionLimiter limiter = newLimiter();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    private WithdrawalAdmissionLimiter newLimiter() {
+        return new WithdrawalAdmissionLimiter(config, partitionedExecutor, meterRegistry);
+    }
+}
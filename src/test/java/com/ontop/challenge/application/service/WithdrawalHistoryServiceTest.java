@@ -0,0 +1,101 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalPageResponse;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort.HistoryPosition;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort.TransactionSummary;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalHistoryServiceTest {
+
+    private static final Long USER_ID = 1000L;
+
+    @Mock
+    private TransactionRepositoryPort transactionRepositoryPort;
+
+    private WithdrawalHistoryService historyService;
+
+    @BeforeEach
+    void setUp() {
+        WithdrawalConfig config = new WithdrawalConfig();
+        config.getHistory().setDefaultPageSize(2);
+        config.getHistory().setMaxPageSize(3);
+        historyService = new WithdrawalHistoryService(transactionRepositoryPort, config);
+    }
+
+    @Test
+    void getHistory_WhenMoreRowsExist_ReturnsCursorOfLastRow() {
+        TransactionSummary newest = summary(Instant.parse("2025-01-03T10:00:00.123456Z"));
+        TransactionSummary second = summary(Instant.parse("2025-01-02T10:00:00Z"));
+        TransactionSummary third = summary(Instant.parse("2025-01-01T10:00:00Z"));
+        when(transactionRepositoryPort.findHistory(eq(USER_ID), isNull(), eq(3)))
+                .thenReturn(List.of(newest, second, third));
+
+        WithdrawalPageResponse page = historyService.getHistory(USER_ID, null, null);
+
+        assertThat(page.getWithdrawals()).extracting("transactionId").containsExactly(newest.id(), second.id());
+        assertThat(WithdrawalHistoryService.decodeCursor(page.getNextCursor()))
+                .isEqualTo(new HistoryPosition(second.createdAt(), second.id()));
+    }
+
+    @Test
+    void getHistory_WithCursor_ContinuesAfterPosition() {
+        HistoryPosition position = new HistoryPosition(Instant.parse("2025-01-02T10:00:00.000001Z"), UUID.randomUUID());
+        TransactionSummary last = summary(Instant.parse("2025-01-01T10:00:00Z"));
+        when(transactionRepositoryPort.findHistory(USER_ID, position, 3)).thenReturn(List.of(last));
+
+        WithdrawalPageResponse page = historyService.getHistory(
+                USER_ID, WithdrawalHistoryService.encodeCursor(position), null);
+
+        assertThat(page.getWithdrawals()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getHistory_LimitAboveMaximum_IsCapped() {
+        when(transactionRepositoryPort.findHistory(any(), any(), eq(4))).thenReturn(List.of());
+
+        historyService.getHistory(USER_ID, null, 500);
+
+        verify(transactionRepositoryPort).findHistory(USER_ID, null, 4);
+    }
+
+    @Test
+    void getHistory_MalformedCursor_ThrowsIllegalArgument() {
+        assertThatThrownBy(() -> historyService.getHistory(USER_ID, "not a cursor", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> historyService.getHistory(USER_ID, "AAAA", null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getHistory_NonPositiveLimit_ThrowsIllegalArgument() {
+        assertThatThrownBy(() -> historyService.getHistory(USER_ID, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private TransactionSummary summary(Instant createdAt) {
+        return new TransactionSummary(UUID.randomUUID(), TransactionStatus.COMPLETED, new BigDecimal("1000.00"),
+                new BigDecimal("100.00"), new BigDecimal("900.00"), "USD", createdAt);
+    }
+}
@@ -3,16 +3,23 @@ package com.ontop.challenge.application.service;
 import com.ontop.challenge.adapters.in.dto.EventMessage;
 import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
 import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
 import com.ontop.challenge.domain.Transaction;
 import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.Optional;
 import java.util.UUID;
 
 import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
@@ -30,11 +37,34 @@ class WithdrawalListenerTest {
     @Mock
     private IdempotencyService idempotencyService;
 
+    @Mock
+    private WithdrawalOutboxPort withdrawalOutboxPort;
+
+    @Mock
+    private WithdrawalStatusService withdrawalStatusService;
+
+    @Mock
+    private WithdrawalAdmissionLimiter admissionLimiter;
+
+    @Mock
+    private TransactionRepositoryPort transactionRepositoryPort;
+
+    @Spy
+    private TransactionMapper transactionMapper = new TransactionMapper();
+
+    @Spy
+    private OutboxConfig outboxConfig = new OutboxConfig();
+
     @InjectMocks
     private WithdrawalListener withdrawalListener;
 
     private final Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(pendingTransaction));
+    }
 
     @Test
     void handleWalletWithdraw_Success_SavesResponseToRedis() {
@@ -66,11 +96,12 @@ class WithdrawalListenerTest {
         verify(withdrawService).executeWithdrawal(request, pendingTransaction);
         
         ArgumentCaptor<WithdrawalResponse> responseCaptor = ArgumentCaptor.forClass(WithdrawalResponse.class);
-        verify(idempotencyService).saveResponse(eq(idempotencyKey), responseCaptor.capture());
+        verify(idempotencyService).saveResponseAsync(eq(idempotencyKey), responseCaptor.capture());
         
         WithdrawalResponse savedResponse = responseCaptor.getValue();
         assertThat(savedResponse.getStatus()).isEqualTo(TransactionStatus.COMPLETED);
         assertThat(savedResponse.getAmount()).isEqualTo(new BigDecimal("1000.00"));
+        verify(withdrawalStatusService).complete(expectedResponse);
     }
 
     @Test
@@ -87,6 +118,12 @@ class WithdrawalListenerTest {
 
         EventMessage message = EventMessage.builder().req(request).transaction(pendingTransaction).build();
 
+        Transaction failedTransaction = new Transaction(pendingTransaction.getId(), 1000L,
+                new BigDecimal("1000.00"), new BigDecimal("100.00"), new BigDecimal("900.00"), "USD",
+                TransactionStatus.FAILED, null, null, "Service error", pendingTransaction.getDestinationAccountId(),
+                pendingTransaction.getCreatedAt(), pendingTransaction.getUpdatedAt(), 2L);
+        when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(pendingTransaction), Optional.of(failedTransaction));
         when(withdrawService.executeWithdrawal(request, pendingTransaction))
                 .thenThrow(new RuntimeException("Service error"));
 
@@ -95,10 +132,76 @@ class WithdrawalListenerTest {
         verify(withdrawService).executeWithdrawal(request, pendingTransaction);
         
         ArgumentCaptor<WithdrawalResponse> responseCaptor = ArgumentCaptor.forClass(WithdrawalResponse.class);
-        verify(idempotencyService).saveResponse(eq(idempotencyKey), responseCaptor.capture());
+        verify(idempotencyService).saveResponseAsync(eq(idempotencyKey), responseCaptor.capture());
         
         WithdrawalResponse savedResponse = responseCaptor.getValue();
         assertThat(savedResponse.getStatus()).isEqualTo(TransactionStatus.FAILED);
+        assertThat(savedResponse.getTransactionId()).isEqualTo(pendingTransaction.getId());
+        assertThat(savedResponse.getAmount()).isEqualTo(new BigDecimal("1000.00"));
+        assertThat(savedResponse.getRequestFingerprint()).isEqualTo(RequestFingerprint.of(request));
+        verify(withdrawalStatusService).complete(savedResponse);
+    }
+
+    @Test
+    void handleWalletWithdraw_WhenFailureAfterAnotherRunCompleted_SavesCompletedState() {
+        String idempotencyKey = "test-key-123";
+        WithdrawRequest request = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey(idempotencyKey)
+                .build();
+        EventMessage message = EventMessage.builder().req(request).transaction(pendingTransaction).build();
+
+        Transaction completedTransaction = new Transaction(pendingTransaction.getId(), 1000L,
+                new BigDecimal("1000.00"), new BigDecimal("100.00"), new BigDecimal("900.00"), "USD",
+                TransactionStatus.COMPLETED, "provider-1", 42L, null, pendingTransaction.getDestinationAccountId(),
+                pendingTransaction.getCreatedAt(), pendingTransaction.getUpdatedAt(), 3L);
+        when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(pendingTransaction), Optional.of(completedTransaction));
+        when(withdrawService.executeWithdrawal(request, pendingTransaction))
+                .thenThrow(new RuntimeException("Row was updated or deleted by another transaction"));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        ArgumentCaptor<WithdrawalResponse> responseCaptor = ArgumentCaptor.forClass(WithdrawalResponse.class);
+        verify(idempotencyService).saveResponseAsync(eq(idempotencyKey), responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+    }
+
+    @Test
+    void handleWalletWithdraw_WhenTransactionNoLongerPending_SkipsExecution() {
+        UUID outboxId = UUID.randomUUID();
+        String idempotencyKey = "test-key-123";
+        WithdrawRequest request = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey(idempotencyKey)
+                .build();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        Transaction completedTransaction = new Transaction(pendingTransaction.getId(), 1000L,
+                new BigDecimal("1000.00"), new BigDecimal("100.00"), new BigDecimal("900.00"), "USD",
+                TransactionStatus.COMPLETED, "provider-1", 42L, null, pendingTransaction.getDestinationAccountId(),
+                pendingTransaction.getCreatedAt(), pendingTransaction.getUpdatedAt(), 3L);
+        when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(completedTransaction));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        verify(withdrawalOutboxPort).renewLease(outboxId, outboxConfig.getLeaseDuration());
+        verify(withdrawService, never()).executeWithdrawal(any(), any());
+        ArgumentCaptor<WithdrawalResponse> responseCaptor = ArgumentCaptor.forClass(WithdrawalResponse.class);
+        verify(idempotencyService).saveResponseAsync(eq(idempotencyKey), responseCaptor.capture());
+        assertThat(responseCaptor.getValue().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+        verify(withdrawalOutboxPort).markProcessed(outboxId);
     }
 
     @Test
@@ -118,7 +221,126 @@ class WithdrawalListenerTest {
         withdrawalListener.handleWalletWithdraw(message);
 
         verify(withdrawService).executeWithdrawal(request, pendingTransaction);
-        verify(idempotencyService, never()).saveResponse(any(), any());
+        verify(idempotencyService, never()).saveResponseAsync(any(), any());
     }
-}
 
+    @Test
+    void handleWalletWithdraw_FromOutbox_WhenFinished_MarksEntryProcessed() {
+        UUID outboxId = UUID.randomUUID();
+        WithdrawRequest request = outboxRequest();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .attempts(1)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        when(withdrawService.executeWithdrawal(request, pendingTransaction)).thenReturn(WithdrawalResponse.builder()
+                .transactionId(pendingTransaction.getId())
+                .status(TransactionStatus.COMPLETED)
+                .build());
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        verify(withdrawalOutboxPort).markProcessed(outboxId);
+        verify(withdrawalOutboxPort, never()).retryLater(any(), any());
+    }
+
+    @Test
+    void handleWalletWithdraw_FromOutbox_WhenFailureLeavesPending_RetriesWithBackoff() {
+        UUID outboxId = UUID.randomUUID();
+        WithdrawRequest request = outboxRequest();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .attempts(3)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        when(withdrawService.executeWithdrawal(request, pendingTransaction))
+                .thenThrow(new RuntimeException("Service error"));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        verify(withdrawalOutboxPort).retryLater(outboxId, outboxConfig.getRetryBackoff().multipliedBy(4));
+        verify(withdrawalOutboxPort, never()).markProcessed(any());
+        verify(withdrawalStatusService, never()).complete(any());
+    }
+
+    @Test
+    void handleWalletWithdraw_FromOutbox_RetryDelayIsCapped() {
+        UUID outboxId = UUID.randomUUID();
+        WithdrawRequest request = outboxRequest();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .attempts(40)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        when(withdrawService.executeWithdrawal(request, pendingTransaction))
+                .thenThrow(new RuntimeException("Service error"));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        verify(withdrawalOutboxPort).retryLater(outboxId, outboxConfig.getMaxRetryBackoff());
+    }
+
+    @Test
+    void handleWalletWithdraw_FromOutbox_WhenTransactionCannotBeReRead_Retries() {
+        UUID outboxId = UUID.randomUUID();
+        WithdrawRequest request = outboxRequest();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .attempts(1)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(pendingTransaction))
+                .thenThrow(new RuntimeException("Connection refused"));
+        when(withdrawService.executeWithdrawal(request, pendingTransaction))
+                .thenThrow(new RuntimeException("Connection refused"));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        verify(withdrawalOutboxPort).retryLater(outboxId, outboxConfig.getRetryBackoff());
+        verify(withdrawalOutboxPort, never()).markProcessed(any());
+    }
+
+    @Test
+    void handleWalletWithdraw_FromOutbox_WhenFailureLeavesProcessing_MarksEntryProcessedWithoutRetry() {
+        UUID outboxId = UUID.randomUUID();
+        WithdrawRequest request = outboxRequest();
+        EventMessage message = EventMessage.builder()
+                .outboxId(outboxId)
+                .attempts(1)
+                .req(request)
+                .transaction(pendingTransaction)
+                .build();
+
+        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
+        when(transactionRepositoryPort.findById(pendingTransaction.getId()))
+                .thenReturn(Optional.of(pendingTransaction), Optional.of(processingTransaction));
+        when(withdrawService.executeWithdrawal(request, pendingTransaction))
+                .thenThrow(new RuntimeException("Payment provider unavailable"));
+
+        withdrawalListener.handleWalletWithdraw(message);
+
+        // The wallet may have been debited, replaying could pay twice
+        verify(withdrawalOutboxPort).markProcessed(outboxId);
+        verify(withdrawalOutboxPort, never()).retryLater(any(), any());
+        verify(withdrawalStatusService, never()).complete(any());
+    }
+
+    private WithdrawRequest outboxRequest() {
+        return WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey("test-key-123")
+                .build();
+    }
+}
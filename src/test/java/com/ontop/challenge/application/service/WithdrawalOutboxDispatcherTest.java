@@ -0,0 +1,177 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.EventMessage;
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.application.port.out.WithdrawalOutboxPort;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.OutboxConfig;
+import com.ontop.challenge.infrastructure.config.PartitionedWithdrawalExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalOutboxDispatcherTest {
+
+    @Mock
+    private WithdrawalOutboxPort outboxPort;
+
+    @Mock
+    private TransactionRepositoryPort transactionRepositoryPort;
+
+    @Mock
+    private WithdrawalListener withdrawalListener;
+
+    @Mock
+    private PartitionedWithdrawalExecutor partitionedExecutor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxConfig config;
+
+    private WithdrawalOutboxDispatcher dispatcher;
+
+    private final Transaction pendingTransaction = createTransaction(TransactionStatus.PENDING);
+
+    @BeforeEach
+    void setUp() {
+        config = new OutboxConfig();
+        config.setBatchSize(10);
+        config.setLeaseDuration(Duration.ofMinutes(1));
+        lenient().doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(partitionedExecutor).execute(any(), any(Runnable.class));
+        dispatcher = new WithdrawalOutboxDispatcher(
+                outboxPort, transactionRepositoryPort, withdrawalListener, partitionedExecutor, config, meterRegistry);
+    }
+
+    @Test
+    void dispatch_PendingTransaction_HandsEntryToListener() {
+        WithdrawalOutboxPort.OutboxEntry entry = createEntry(pendingTransaction.getId());
+        when(outboxPort.claimBatch(10, Duration.ofMinutes(1))).thenReturn(List.of(entry));
+        when(transactionRepositoryPort.findById(pendingTransaction.getId())).thenReturn(Optional.of(pendingTransaction));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<EventMessage> messageCaptor = ArgumentCaptor.forClass(EventMessage.class);
+        verify(partitionedExecutor).execute(eq(1000L), any(Runnable.class));
+        verify(withdrawalListener).handleWalletWithdraw(messageCaptor.capture());
+        assertThat(messageCaptor.getValue().getOutboxId()).isEqualTo(entry.id());
+        assertThat(messageCaptor.getValue().getTransaction()).isEqualTo(pendingTransaction);
+        assertThat(messageCaptor.getValue().getReq()).isEqualTo(entry.request());
+        verify(outboxPort, never()).markProcessed(any());
+    }
+
+    @Test
+    void dispatch_TransactionAlreadyProcessing_SkipsAndMarksProcessed() {
+        Transaction processingTransaction = createTransaction(TransactionStatus.PROCESSING);
+        WithdrawalOutboxPort.OutboxEntry entry = createEntry(processingTransaction.getId());
+        when(outboxPort.claimBatch(10, Duration.ofMinutes(1))).thenReturn(List.of(entry));
+        when(transactionRepositoryPort.findById(processingTransaction.getId()))
+                .thenReturn(Optional.of(processingTransaction));
+
+        dispatcher.dispatch();
+
+        verify(withdrawalListener, never()).handleWalletWithdraw(any());
+        verify(outboxPort).markProcessed(entry.id());
+        assertThat(meterRegistry.counter("withdrawal.outbox.orphaned").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void dispatch_TransactionAlreadyCompleted_SkipsWithoutCountingOrphan() {
+        Transaction completedTransaction = createTransaction(TransactionStatus.COMPLETED);
+        WithdrawalOutboxPort.OutboxEntry entry = createEntry(completedTransaction.getId());
+        when(outboxPort.claimBatch(10, Duration.ofMinutes(1))).thenReturn(List.of(entry));
+        when(transactionRepositoryPort.findById(completedTransaction.getId()))
+                .thenReturn(Optional.of(completedTransaction));
+
+        dispatcher.dispatch();
+
+        verify(outboxPort).markProcessed(entry.id());
+        assertThat(meterRegistry.counter("withdrawal.outbox.orphaned").count()).isZero();
+    }
+
+    @Test
+    void dispatch_PassesClaimAttemptsToListener() {
+        WithdrawalOutboxPort.OutboxEntry entry = new WithdrawalOutboxPort.OutboxEntry(
+                UUID.randomUUID(), pendingTransaction.getId(), createEntry(pendingTransaction.getId()).request(), 4);
+        when(outboxPort.claimBatch(10, Duration.ofMinutes(1))).thenReturn(List.of(entry));
+        when(transactionRepositoryPort.findById(pendingTransaction.getId())).thenReturn(Optional.of(pendingTransaction));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<EventMessage> messageCaptor = ArgumentCaptor.forClass(EventMessage.class);
+        verify(withdrawalListener).handleWalletWithdraw(messageCaptor.capture());
+        assertThat(messageCaptor.getValue().getAttempts()).isEqualTo(4);
+    }
+
+    @Test
+    void purgeProcessed_DeletesInBatchesUntilShortBatch() {
+        config.setPurgeBatchSize(2);
+        when(outboxPort.deleteProcessedBefore(any(Instant.class), eq(2))).thenReturn(2, 2, 1);
+
+        Instant before = Instant.now().minus(config.getRetention());
+        dispatcher.purgeProcessed();
+
+        ArgumentCaptor<Instant> cutoffCaptor = ArgumentCaptor.forClass(Instant.class);
+        verify(outboxPort, times(3)).deleteProcessedBefore(cutoffCaptor.capture(), eq(2));
+        assertThat(cutoffCaptor.getValue()).isAfterOrEqualTo(before);
+    }
+
+    @Test
+    void dispatch_ExecutorSaturated_ReleasesEntry() {
+        WithdrawalOutboxPort.OutboxEntry entry = createEntry(pendingTransaction.getId());
+        when(outboxPort.claimBatch(10, Duration.ofMinutes(1))).thenReturn(List.of(entry));
+        when(transactionRepositoryPort.findById(pendingTransaction.getId())).thenReturn(Optional.of(pendingTransaction));
+        doThrow(new TaskRejectedException("lane full")).when(partitionedExecutor).execute(any(), any(Runnable.class));
+
+        dispatcher.dispatch();
+
+        verify(outboxPort).release(entry.id());
+    }
+
+    @Test
+    void dispatch_WhenDisabled_DoesNotClaim() {
+        OutboxConfig config = new OutboxConfig();
+        config.setEnabled(false);
+        dispatcher = new WithdrawalOutboxDispatcher(
+                outboxPort, transactionRepositoryPort, withdrawalListener, partitionedExecutor, config, meterRegistry);
+
+        dispatcher.dispatch();
+
+        verify(outboxPort, never()).claimBatch(anyInt(), any());
+    }
+
+    private WithdrawalOutboxPort.OutboxEntry createEntry(UUID transactionId) {
+        WithdrawRequest request = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey("test-key-123")
+                .build();
+        return new WithdrawalOutboxPort.OutboxEntry(UUID.randomUUID(), transactionId, request, 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.DailyWithdrawalTotalResponse;
+import com.ontop.challenge.application.port.out.WithdrawalRollupPort;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalRollupServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2026, 10, 1);
+
+    @Mock
+    private WithdrawalRollupPort rollupPort;
+
+    private WithdrawalRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        WithdrawalConfig config = new WithdrawalConfig();
+        config.getHistory().setMaxDailyTotalsDays(31);
+        service = new WithdrawalRollupService(rollupPort, config);
+    }
+
+    @Test
+    void getDailyTotals_MapsRollupRows() {
+        LocalDate to = FROM.plusDays(30);
+        when(rollupPort.findDailyTotals(1000L, FROM, to)).thenReturn(List.of(
+                new WithdrawalRollupPort.DailyTotal(FROM, "USD", TransactionStatus.FAILED, 2,
+                        new BigDecimal("200.00"), new BigDecimal("20.00"), new BigDecimal("180.00"))));
+
+        List<DailyWithdrawalTotalResponse> totals = service.getDailyTotals(1000L, FROM, to);
+
+        assertThat(totals).singleElement().satisfies(total -> {
+            assertThat(total.getDay()).isEqualTo(FROM);
+            assertThat(total.getStatus()).isEqualTo(TransactionStatus.FAILED);
+            assertThat(total.getCount()).isEqualTo(2);
+            assertThat(total.getTotalNetAmount()).isEqualByComparingTo("180.00");
+        });
+    }
+
+    @Test
+    void getDailyTotals_RangeLongerThanConfigured_Throws() {
+        assertThatThrownBy(() -> service.getDailyTotals(1000L, FROM, FROM.plusDays(31)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(rollupPort);
+    }
+
+    @Test
+    void getDailyTotals_ReversedRange_Throws() {
+        assertThatThrownBy(() -> service.getDailyTotals(1000L, FROM, FROM.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(rollupPort);
+    }
+}
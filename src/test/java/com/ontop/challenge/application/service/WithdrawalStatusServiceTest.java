@@ -0,0 +1,150 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.port.out.TransactionRepositoryPort;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.WithdrawalConfig;
+import com.ontop.challenge.infrastructure.redis.RedisAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalStatusServiceTest {
+
+    @Mock
+    private TransactionRepositoryPort transactionRepositoryPort;
+
+    @Mock
+    private RedisAccess redisAccess;
+
+    private final TransactionMapper mapper = new TransactionMapper();
+
+    private WithdrawalStatusService withdrawalStatusService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisAccess.publishPipelined(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        withdrawalStatusService = new WithdrawalStatusService(
+                transactionRepositoryPort, mapper, redisAccess, new WithdrawalConfig(), Runnable::run);
+    }
+
+    @Test
+    void awaitTerminal_WhenMissing_ReturnsEmpty() {
+        UUID transactionId = UUID.randomUUID();
+        when(transactionRepositoryPort.findById(transactionId)).thenReturn(Optional.empty());
+
+        assertThat(withdrawalStatusService.awaitTerminal(transactionId, Duration.ofSeconds(5))).isEmpty();
+    }
+
+    @Test
+    void awaitTerminal_WhenAlreadyFailed_CompletesImmediately() {
+        Transaction transaction = createTransaction(TransactionStatus.FAILED);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        CompletableFuture<WithdrawalResponse> result =
+                withdrawalStatusService.awaitTerminal(transaction.getId(), Duration.ofSeconds(5)).orElseThrow();
+
+        assertThat(result).isCompleted();
+        assertThat(result.join().getStatus()).isEqualTo(TransactionStatus.FAILED);
+    }
+
+    @Test
+    void awaitTerminal_WhenCompletedByListener_ReturnsFinalState() {
+        Transaction transaction = createTransaction(TransactionStatus.PROCESSING);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        CompletableFuture<WithdrawalResponse> first =
+                withdrawalStatusService.awaitTerminal(transaction.getId(), Duration.ofSeconds(5)).orElseThrow();
+        CompletableFuture<WithdrawalResponse> second =
+                withdrawalStatusService.awaitTerminal(transaction.getId(), Duration.ofSeconds(5)).orElseThrow();
+        assertThat(first).isNotDone();
+
+        withdrawalStatusService.complete(WithdrawalResponse.builder()
+                .transactionId(transaction.getId())
+                .status(TransactionStatus.COMPLETED)
+                .build());
+
+        assertThat(first.join().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+        assertThat(second.join().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+    }
+
+    @Test
+    void awaitTerminal_WhenTimeoutElapses_ReturnsLatestState() {
+        Transaction transaction = createTransaction(TransactionStatus.PROCESSING);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        CompletableFuture<WithdrawalResponse> result =
+                withdrawalStatusService.awaitTerminal(transaction.getId(), Duration.ofMillis(20)).orElseThrow();
+
+        assertThat(result.join().getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+    }
+
+    @Test
+    void complete_WhenNotTerminal_KeepsWaiting() {
+        Transaction transaction = createTransaction(TransactionStatus.PENDING);
+        when(transactionRepositoryPort.findById(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        CompletableFuture<WithdrawalResponse> result =
+                withdrawalStatusService.awaitTerminal(transaction.getId(), Duration.ofSeconds(5)).orElseThrow();
+
+        withdrawalStatusService.complete(WithdrawalResponse.builder()
+                .transactionId(transaction.getId())
+                .status(TransactionStatus.PROCESSING)
+                .build());
+
+        assertThat(result).isNotDone();
+    }
+
+    @Test
+    void complete_AnnouncesCompletionToOtherNodes() {
+        UUID transactionId = UUID.randomUUID();
+
+        withdrawalStatusService.complete(WithdrawalResponse.builder()
+                .transactionId(transactionId)
+                .status(TransactionStatus.FAILED)
+                .build());
+
+        verify(redisAccess).publishPipelined(WithdrawalStatusService.COMPLETION_CHANNEL, transactionId.toString());
+    }
+
+    @Test
+    void onMessage_CompletionOnOtherNode_CompletesLocalWaitersFromDb() {
+        Transaction processing = createTransaction(TransactionStatus.PROCESSING);
+        Transaction completed = new Transaction(processing.getId(), processing.getUserId(), processing.getAmount(),
+                processing.getFee(), processing.getNetAmount(), processing.getCurrency(), TransactionStatus.COMPLETED,
+                "provider-1", 42L, null, processing.getDestinationAccountId(), processing.getCreatedAt(),
+                processing.getUpdatedAt(), 3L);
+        when(transactionRepositoryPort.findById(processing.getId()))
+                .thenReturn(Optional.of(processing), Optional.of(completed));
+        CompletableFuture<WithdrawalResponse> result =
+                withdrawalStatusService.awaitTerminal(processing.getId(), Duration.ofSeconds(5)).orElseThrow();
+        byte[] body = processing.getId().toString().getBytes(StandardCharsets.UTF_8);
+        when(redisAccess.deserialize(body)).thenReturn(processing.getId().toString());
+
+        withdrawalStatusService.onMessage(
+                new DefaultMessage(WithdrawalStatusService.COMPLETION_CHANNEL.getBytes(StandardCharsets.UTF_8), body),
+                null);
+
+        assertThat(result).isCompleted();
+        assertThat(result.join().getStatus()).isEqualTo(TransactionStatus.COMPLETED);
+    }
+}
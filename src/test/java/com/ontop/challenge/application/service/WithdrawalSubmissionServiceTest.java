@@ -0,0 +1,173 @@
+package com.ontop.challenge.application.service;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawRequest;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.adapters.out.persistence.mapper.TransactionMapper;
+import com.ontop.challenge.application.exception.IdempotentConflictException;
+import com.ontop.challenge.application.exception.InsufficientFundsException;
+import com.ontop.challenge.domain.Transaction;
+import com.ontop.challenge.domain.TransactionStatus;
+import com.ontop.challenge.infrastructure.config.IdempotencyConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.ontop.challenge.utils.TransactionUtils.createTransaction;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WithdrawalSubmissionServiceTest {
+
+    private static final String IDEMPOTENCY_KEY = "test-key-123";
+
+    @Mock
+    private WithdrawService withdrawService;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private final IdempotencyConfig config = new IdempotencyConfig();
+
+    private WithdrawalSubmissionService submissionService;
+    private WithdrawRequest request;
+
+    @BeforeEach
+    void setUp() {
+        config.setInFlightWait(Duration.ofMillis(200));
+        submissionService = new WithdrawalSubmissionService(withdrawService, idempotencyService, config, new TransactionMapper());
+        request = WithdrawRequest.builder()
+                .userId(1000L)
+                .accountId(UUID.randomUUID())
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .idempotencyKey(IDEMPOTENCY_KEY)
+                .build();
+    }
+
+    @Test
+    void submit_WhenKeyIsFree_CreatesTransactionAndPublishesPendingResponse() {
+        Transaction pending = createTransaction(TransactionStatus.PENDING);
+        when(idempotencyService.tryMarkInFlight(IDEMPOTENCY_KEY, config.getInFlightLease())).thenReturn(true);
+        when(withdrawService.createInitialTransaction(request)).thenReturn(pending);
+
+        WithdrawalResponse response = submissionService.submit(request);
+
+        assertThat(response.getTransactionId()).isEqualTo(pending.getId());
+        assertThat(response.getStatus()).isEqualTo(TransactionStatus.PENDING);
+        verify(idempotencyService).saveResponse(IDEMPOTENCY_KEY, response);
+        verify(idempotencyService, never()).clearInFlight(any());
+    }
+
+    @Test
+    void submit_WhenKeyIsInFlightElsewhere_AttachesToPublishedResponse() {
+        WithdrawalResponse published = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.PENDING)
+                .build();
+        when(idempotencyService.tryMarkInFlight(eq(IDEMPOTENCY_KEY), any())).thenReturn(false);
+        when(idempotencyService.getResponse(IDEMPOTENCY_KEY)).thenReturn(Optional.empty(), Optional.of(published));
+
+        WithdrawalResponse response = submissionService.submit(request);
+
+        assertThat(response).isEqualTo(published);
+        verify(withdrawService, never()).createInitialTransaction(any());
+    }
+
+    @Test
+    void submit_WhenInFlightElsewhereWithDifferentBody_ThrowsConflict() {
+        WithdrawRequest original = WithdrawRequest.builder()
+                .userId(request.getUserId())
+                .accountId(request.getAccountId())
+                .amount(new BigDecimal("500.00"))
+                .currency("USD")
+                .build();
+        WithdrawalResponse published = RequestFingerprint.stamp(WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.PENDING)
+                .build(), original);
+        when(idempotencyService.tryMarkInFlight(eq(IDEMPOTENCY_KEY), any())).thenReturn(false);
+        when(idempotencyService.getResponse(IDEMPOTENCY_KEY)).thenReturn(Optional.of(published));
+
+        assertThatThrownBy(() -> submissionService.submit(request))
+                .isInstanceOf(IdempotentConflictException.class);
+    }
+
+    @Test
+    void submit_WhenKeyIsFree_StampsRequestFingerprint() {
+        when(idempotencyService.tryMarkInFlight(IDEMPOTENCY_KEY, config.getInFlightLease())).thenReturn(true);
+        when(withdrawService.createInitialTransaction(request)).thenReturn(createTransaction(TransactionStatus.PENDING));
+
+        WithdrawalResponse response = submissionService.submit(request);
+
+        assertThat(response.getRequestFingerprint()).isEqualTo(RequestFingerprint.of(request));
+    }
+
+    @Test
+    void submit_WhenInFlightElsewhereAndNoResponse_ThrowsConflict() {
+        when(idempotencyService.tryMarkInFlight(eq(IDEMPOTENCY_KEY), any())).thenReturn(false);
+        when(idempotencyService.getResponse(IDEMPOTENCY_KEY)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> submissionService.submit(request))
+                .isInstanceOf(IdempotentConflictException.class);
+        verify(withdrawService, never()).createInitialTransaction(any());
+    }
+
+    @Test
+    void submit_WhenCreationFails_ClearsMarkerAndRethrows() {
+        when(idempotencyService.tryMarkInFlight(eq(IDEMPOTENCY_KEY), any())).thenReturn(true);
+        when(withdrawService.createInitialTransaction(request))
+                .thenThrow(new InsufficientFundsException("Insufficient funds"));
+
+        assertThatThrownBy(() -> submissionService.submit(request))
+                .isInstanceOf(InsufficientFundsException.class);
+        verify(idempotencyService).clearInFlight(IDEMPOTENCY_KEY);
+        verify(idempotencyService, never()).saveResponse(any(), any());
+    }
+
+    @Test
+    void submit_ConcurrentDuplicatesOnSameNode_CreateOnce() throws Exception {
+        Transaction pending = createTransaction(TransactionStatus.PENDING);
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // A duplicate that misses the local join still finds the Redis marker taken
+        when(idempotencyService.tryMarkInFlight(eq(IDEMPOTENCY_KEY), any())).thenReturn(true, false);
+        lenient().when(idempotencyService.getResponse(IDEMPOTENCY_KEY))
+                .thenReturn(Optional.of(new TransactionMapper().transactionToWithdrawalResponse(pending)));
+        when(withdrawService.createInitialTransaction(request)).thenAnswer(inv -> {
+            creating.countDown();
+            release.await();
+            return pending;
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<WithdrawalResponse> first =
+                    CompletableFuture.supplyAsync(() -> submissionService.submit(request), executor);
+            assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<WithdrawalResponse> duplicate =
+                    CompletableFuture.supplyAsync(() -> submissionService.submit(request), executor);
+
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getTransactionId()).isEqualTo(pending.getId());
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).getTransactionId()).isEqualTo(pending.getId());
+        }
+        verify(withdrawService, times(1)).createInitialTransaction(request);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ontop.challenge.infrastructure.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncConfigTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WithdrawalConfig config = new WithdrawalConfig();
+    private final VirtualThreadMetrics virtualThreadMetrics = new VirtualThreadMetrics(config, meterRegistry);
+
+    private Executor executor;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (executor instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Test
+    void withdrawalExecutor_PlatformMode_UsesBoundedPoolWithMetrics() {
+        config.getWorkerPool().setCorePoolSize(2);
+        config.getWorkerPool().setMaxPoolSize(3);
+        config.getWorkerPool().setQueueCapacity(7);
+
+        executor = new AsyncConfig().withdrawalExecutor(config, virtualThreadMetrics, meterRegistry);
+
+        assertThat(executor).isInstanceOf(ThreadPoolTaskExecutor.class);
+        ThreadPoolTaskExecutor pool = (ThreadPoolTaskExecutor) executor;
+        assertThat(pool.getCorePoolSize()).isEqualTo(2);
+        assertThat(pool.getMaxPoolSize()).isEqualTo(3);
+        assertThat(pool.getQueueCapacity()).isEqualTo(7);
+        assertThat(meterRegistry.find("executor.pool.max").tag("name", "withdrawalExecutor").gauge()).isNotNull();
+    }
+
+    @Test
+    void withdrawalExecutor_VirtualMode_RunsTrackedTasksOnVirtualThreads() throws InterruptedException {
+        config.getWorkerPool().setMode(WithdrawalConfig.WorkerPool.Mode.VIRTUAL);
+        config.getWorkerPool().setVirtualConcurrencyLimit(5);
+
+        executor = new AsyncConfig().withdrawalExecutor(config, virtualThreadMetrics, meterRegistry);
+
+        assertThat(executor).isInstanceOf(SimpleAsyncTaskExecutor.class);
+        assertThat(((SimpleAsyncTaskExecutor) executor).getConcurrencyLimit()).isEqualTo(5);
+
+        AtomicBoolean virtual = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(virtualThreadMetrics.inFlight()).isEqualTo(1);
+        release.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(virtual).isTrue();
+        assertThat(meterRegistry.find("executor.pool.max").gauge()).isNull();
+    }
+}
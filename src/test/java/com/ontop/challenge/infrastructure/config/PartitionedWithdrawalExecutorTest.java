@@ -0,0 +1,202 @@
+package com.ontop.challenge.infrastructure.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedWithdrawalExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WithdrawalConfig config = new WithdrawalConfig();
+
+    @BeforeEach
+    void setUp() {
+        config.getWorkerPool().setPartitions(4);
+        config.getWorkerPool().setLaneCapacity(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void execute_SameKey_RunsOneAtATimeInOrder() throws InterruptedException {
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(pool, config, meterRegistry);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int sequence = i;
+            executor.execute(1000L, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(sequence);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(order).isSorted().hasSize(50);
+    }
+
+    @Test
+    void execute_DifferentLanes_RunInParallel() throws InterruptedException {
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(pool, config, meterRegistry);
+        long firstUser = 1000L;
+        long secondUser = firstUser + 1;
+        while (executor.laneIndex(secondUser) == executor.laneIndex(firstUser)) {
+            secondUser++;
+        }
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (long userId : new long[]{firstUser, secondUser}) {
+            executor.execute(userId, () -> {
+                bothRunning.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertThat(bothRunning.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("withdrawal.lanes.busy").gauge().value()).isEqualTo(2);
+        release.countDown();
+    }
+
+    @Test
+    void execute_LaneFull_RejectsAndReportsSkew() {
+        config.getWorkerPool().setLaneCapacity(2);
+        List<Runnable> submitted = new CopyOnWriteArrayList<>();
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(submitted::add, config, meterRegistry);
+
+        executor.execute(1000L, () -> {});
+        executor.execute(1000L, () -> {});
+
+        assertThatThrownBy(() -> executor.execute(1000L, () -> {}))
+                .isInstanceOf(TaskRejectedException.class);
+        assertThat(submitted).hasSize(1);
+        // All load on one of four lanes
+        assertThat(meterRegistry.get("withdrawal.lanes.skew").gauge().value()).isEqualTo(4.0);
+        assertThat(meterRegistry.get("withdrawal.lanes.queued").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void backlogUtilization_CountsTasksWaitingInLanes() {
+        config.getWorkerPool().setLaneCapacity(2);
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(task -> {}, config, meterRegistry);
+
+        executor.execute(1000L, () -> {});
+        executor.execute(1000L, () -> {});
+        executor.execute(1001L, () -> {});
+
+        // 3 queued out of 4 lanes x 2 slots, the worker pool never ran the lanes
+        assertThat(executor.backlogUtilization()).isEqualTo(3 / 8.0);
+    }
+
+    @Test
+    void execute_FailingTask_DoesNotStallLane() {
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(Runnable::run, config, meterRegistry);
+        AtomicInteger completed = new AtomicInteger();
+
+        executor.execute(1000L, () -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute(1000L, completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_LongLane_GivesPoolThreadToWaitingLanesAfterBudget() {
+        List<Runnable> submitted = new ArrayList<>();
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(submitted::add, config, meterRegistry);
+        long firstUser = 1000L;
+        long secondUser = firstUser + 1;
+        while (executor.laneIndex(secondUser) == executor.laneIndex(firstUser)) {
+            secondUser++;
+        }
+        List<String> order = new ArrayList<>();
+
+        int budget = PartitionedWithdrawalExecutor.PLATFORM_DRAIN_BUDGET;
+        for (int i = 0; i < budget * 2; i++) {
+            int sequence = i;
+            executor.execute(firstUser, () -> order.add("first-" + sequence));
+        }
+        executor.execute(secondUser, () -> order.add("second"));
+
+        // Run the pool queue in FIFO order, the first lane re-queues itself behind the second
+        for (int i = 0; i < submitted.size(); i++) {
+            submitted.get(i).run();
+        }
+
+        assertThat(order).hasSize(budget * 2 + 1);
+        assertThat(order.get(budget)).isEqualTo("second");
+        assertThat(order.subList(0, budget)).allMatch(task -> task.startsWith("first-"));
+        assertThat(submitted).hasSize(3);
+        assertThat(meterRegistry.get("withdrawal.lanes.busy").gauge().value()).isZero();
+    }
+
+    @Test
+    void execute_WhenPoolRejectsRequeue_KeepsDrainingOnSameThread() {
+        List<Runnable> submitted = new ArrayList<>();
+        PartitionedWithdrawalExecutor executor = new PartitionedWithdrawalExecutor(task -> {
+            if (!submitted.isEmpty()) {
+                throw new RejectedExecutionException("Queue full");
+            }
+            submitted.add(task);
+        }, config, meterRegistry);
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < PartitionedWithdrawalExecutor.PLATFORM_DRAIN_BUDGET * 3; i++) {
+            executor.execute(1000L, completed::incrementAndGet);
+        }
+        submitted.get(0).run();
+
+        assertThat(completed.get()).isEqualTo(PartitionedWithdrawalExecutor.PLATFORM_DRAIN_BUDGET * 3);
+        assertThat(meterRegistry.get("withdrawal.lanes.busy").gauge().value()).isZero();
+    }
+
+    @Test
+    void constructor_WithoutExplicitPartitions_DerivesLanesFromWorkerMode() {
+        config.getWorkerPool().setPartitions(0);
+
+        assertThat(new PartitionedWithdrawalExecutor(pool, config, meterRegistry).laneCount()).isEqualTo(110);
+
+        config.getWorkerPool().setMode(WithdrawalConfig.WorkerPool.Mode.VIRTUAL);
+        assertThat(new PartitionedWithdrawalExecutor(pool, config, new SimpleMeterRegistry()).laneCount())
+                .isEqualTo(1000);
+    }
+
+    @Test
+    void constructor_PartitionsAboveVirtualConcurrencyLimit_Fails() {
+        config.getWorkerPool().setMode(WithdrawalConfig.WorkerPool.Mode.VIRTUAL);
+        config.getWorkerPool().setVirtualConcurrencyLimit(2);
+
+        assertThatThrownBy(() -> new PartitionedWithdrawalExecutor(pool, config, meterRegistry))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("worker-pool.partitions");
+    }
+}
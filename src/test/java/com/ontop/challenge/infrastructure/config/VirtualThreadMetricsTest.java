@@ -0,0 +1,65 @@
+package com.ontop.challenge.infrastructure.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WithdrawalConfig config = new WithdrawalConfig();
+    private final VirtualThreadMetrics metrics = new VirtualThreadMetrics(config, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        metrics.stop();
+    }
+
+    @Test
+    void start_PlatformMode_RegistersNoVirtualMeters() {
+        metrics.start();
+
+        assertThat(meterRegistry.find("withdrawal.executor.virtual.in_flight").gauge()).isNull();
+        assertThat(meterRegistry.find("withdrawal.executor.virtual.carriers").gauge()).isNull();
+    }
+
+    @Test
+    void start_VirtualMode_CountsCarriersOfRunningVirtualThreads() throws InterruptedException {
+        config.getWorkerPool().setMode(WithdrawalConfig.WorkerPool.Mode.VIRTUAL);
+        metrics.start();
+
+        CountDownLatch release = new CountDownLatch(1);
+        Thread thread = Thread.ofVirtual().start(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(meterRegistry.get("withdrawal.executor.virtual.carriers").gauge().value()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("withdrawal.executor.virtual.carrier_parallelism").gauge().value())
+                .isGreaterThanOrEqualTo(1);
+
+        release.countDown();
+        thread.join();
+    }
+
+    @Test
+    void track_CountsTaskWhileItRuns() {
+        config.getWorkerPool().setMode(WithdrawalConfig.WorkerPool.Mode.VIRTUAL);
+        metrics.start();
+
+        metrics.track(() -> {
+            assertThat(metrics.inFlight()).isEqualTo(1);
+            assertThat(meterRegistry.get("withdrawal.executor.virtual.in_flight").gauge().value()).isEqualTo(1);
+        }).run();
+
+        assertThat(metrics.inFlight()).isZero();
+    }
+}
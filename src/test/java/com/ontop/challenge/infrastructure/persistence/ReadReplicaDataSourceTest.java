@@ -0,0 +1,76 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaDataSourceTest {
+
+    @Mock
+    private ReplicaLagMonitor monitor;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private DataSource primary;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReadReplicaDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new ReadReplicaDataSource(monitor, primary, meterRegistry);
+    }
+
+    @Test
+    void getConnection_ReplicaUsable_UsesReplica() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(monitor.isUsable()).thenReturn(true);
+        when(monitor.getReplica()).thenReturn(replica);
+        when(replica.getConnection()).thenReturn(connection);
+
+        assertThat(dataSource.getConnection()).isSameAs(connection);
+        verify(primary, never()).getConnection();
+        assertThat(meterRegistry.counter("datasource.replica.fallbacks").count()).isZero();
+    }
+
+    @Test
+    void getConnection_ReplicaLagging_FallsBackToPrimary() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(monitor.isUsable()).thenReturn(false);
+        when(primary.getConnection()).thenReturn(connection);
+
+        assertThat(dataSource.getConnection()).isSameAs(connection);
+        assertThat(meterRegistry.counter("datasource.replica.fallbacks").count()).isEqualTo(1);
+    }
+
+    @Test
+    void getConnection_ReplicaRefusesConnection_MarksItUnusableAndUsesPrimary() throws SQLException {
+        Connection connection = mock(Connection.class);
+        SQLTransientConnectionException refused = new SQLTransientConnectionException("timeout");
+        when(monitor.isUsable()).thenReturn(true);
+        when(monitor.getReplica()).thenReturn(replica);
+        when(replica.getConnection()).thenThrow(refused);
+        when(primary.getConnection()).thenReturn(connection);
+
+        assertThat(dataSource.getConnection()).isSameAs(connection);
+        verify(monitor).markUnusable(refused);
+    }
+}
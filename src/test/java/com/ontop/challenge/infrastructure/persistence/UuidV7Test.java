@@ -0,0 +1,70 @@
+package com.ontop.challenge.infrastructure.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UuidV7Test {
+
+    @Test
+    void generate_SetsVersionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+
+        UUID uuid = UuidV7.generate();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(UuidV7.timestampOf(uuid).toEpochMilli())
+                .isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void next_WithinOneMillisecond_IsStrictlyIncreasing() {
+        UuidV7 generator = new UuidV7(() -> 1_700_000_000_000L, new SplittableRandom(42));
+
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            uuids.add(generator.next());
+        }
+
+        assertThat(uuids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void next_WhenCounterOverflows_AdvancesTimestampInsteadOfGoingBack() {
+        UuidV7 generator = new UuidV7(() -> 1_700_000_000_000L, new SplittableRandom(42));
+
+        UUID previous = generator.next();
+        for (int i = 0; i < 5000; i++) {
+            UUID next = generator.next();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+
+        assertThat(UuidV7.timestampOf(previous)).isAfter(Instant.ofEpochMilli(1_700_000_000_000L));
+    }
+
+    @Test
+    void next_WhenClockGoesBack_StaysOrdered() {
+        AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+        UuidV7 generator = new UuidV7(clock::get, new SplittableRandom(42));
+
+        UUID first = generator.next();
+        clock.addAndGet(-1000);
+
+        assertThat(generator.next()).isGreaterThan(first);
+    }
+
+    @Test
+    void timestampOf_RandomUuid_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.timestampOf(UUID.randomUUID()));
+    }
+}
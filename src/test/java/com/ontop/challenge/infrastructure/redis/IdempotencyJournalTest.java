@@ -0,0 +1,149 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyJournalTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private IdempotencyJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        journal = open();
+    }
+
+    @Test
+    void append_ThenGet_ReturnsLatestResponseOfKey() {
+        WithdrawalResponse pending = response(TransactionStatus.PENDING);
+        WithdrawalResponse completed = response(TransactionStatus.COMPLETED);
+
+        journal.append("key-1", pending, TTL);
+        journal.append("key-1", completed, TTL);
+
+        assertThat(journal.get("key-1")).contains(completed);
+        assertThat(journal.get("key-2")).isEmpty();
+        assertThat(journal.size()).isEqualTo(1);
+    }
+
+    @Test
+    void get_AfterTtl_ReturnsEmpty() {
+        journal.append("key-1", response(TransactionStatus.COMPLETED), TTL);
+
+        clock.addAndGet(TTL.toMillis() + 1);
+
+        assertThat(journal.get("key-1")).isEmpty();
+    }
+
+    @Test
+    void open_AfterRestart_RecoversJournaledResponses() throws Exception {
+        WithdrawalResponse response = response(TransactionStatus.COMPLETED);
+        journal.append("key-1", response, TTL);
+        journal.close();
+
+        IdempotencyJournal reopened = open();
+
+        assertThat(reopened.get("key-1")).contains(response);
+    }
+
+    @Test
+    void replay_HandsOverLiveEntriesAndClears() throws Exception {
+        WithdrawalResponse response = response(TransactionStatus.COMPLETED);
+        journal.append("key-1", response, TTL);
+        journal.append("expired", response(TransactionStatus.FAILED), Duration.ofMillis(10));
+        clock.addAndGet(20);
+
+        List<IdempotencyJournal.Entry> replayed = new ArrayList<>();
+        int count = journal.replay(replayed::add);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(replayed.get(0).key()).isEqualTo("key-1");
+        assertThat(replayed.get(0).response()).isEqualTo(response);
+        assertThat(journal.isEmpty()).isTrue();
+        journal.close();
+        assertThat(open().isEmpty()).isTrue();
+    }
+
+    @Test
+    void replay_KeepsEntriesAppendedWhileWriting() {
+        WithdrawalResponse pending = response(TransactionStatus.PENDING);
+        WithdrawalResponse completed = response(TransactionStatus.COMPLETED);
+        journal.append("key-1", pending, TTL);
+        journal.append("key-2", pending, TTL);
+
+        int replayed = journal.replay(entry -> {
+            if (entry.key().equals("key-1")) {
+                journal.append("key-1", completed, TTL);
+                journal.append("key-3", completed, TTL);
+            }
+        });
+
+        assertThat(replayed).isEqualTo(2);
+        assertThat(journal.size()).isEqualTo(2);
+        assertThat(journal.get("key-1")).contains(completed);
+        assertThat(journal.get("key-2")).isEmpty();
+        assertThat(journal.get("key-3")).contains(completed);
+    }
+
+    @Test
+    void replay_WhenWriterFails_KeepsEntries() {
+        journal.append("key-1", response(TransactionStatus.COMPLETED), TTL);
+
+        assertThrows(IllegalStateException.class, () -> journal.replay(entry -> {
+            throw new IllegalStateException("Redis down again");
+        }));
+
+        assertThat(journal.get("key-1")).isPresent();
+    }
+
+    @Test
+    void append_WhenFull_ReturnsFalse() {
+        boolean appended = true;
+        for (int i = 0; i < 1000 && appended; i++) {
+            appended = journal.append("key-" + i, response(TransactionStatus.COMPLETED), TTL);
+        }
+
+        assertThat(appended).isFalse();
+        assertThat(journal.get("key-0")).isPresent();
+    }
+
+    @Test
+    void disabled_KeepsNothing() {
+        IdempotencyJournal disabled = IdempotencyJournal.disabled();
+
+        assertThat(disabled.append("key-1", response(TransactionStatus.COMPLETED), TTL)).isFalse();
+        assertThat(disabled.get("key-1")).isEmpty();
+    }
+
+    private IdempotencyJournal open() throws Exception {
+        return IdempotencyJournal.open(dir.resolve("idempotency.journal"), 16 * 1024, 256, clock::get);
+    }
+
+    private WithdrawalResponse response(TransactionStatus status) {
+        return WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(status)
+                .amount(new BigDecimal("1000.00"))
+                .currency("USD")
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.ontop.challenge.infrastructure.config.RedisAccessConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisAccessTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private RedisAccessConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private RedisAccess redisAccess;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        config = new RedisAccessConfig();
+        config.getPipeline().setMaxWait(Duration.ofMillis(200));
+        meterRegistry = new SimpleMeterRegistry();
+        redisAccess = new RedisAccess(redisTemplate, config, new RedisProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisAccess.stop();
+    }
+
+    @Test
+    void get_RecordsLatencyPerCommandAndOutcome() {
+        when(valueOperations.get("key")).thenReturn("value");
+        when(valueOperations.get("broken")).thenThrow(new QueryTimeoutException("Redis timeout"));
+
+        assertThat(redisAccess.get("key")).isEqualTo("value");
+        assertThrows(QueryTimeoutException.class, () -> redisAccess.get("broken"));
+
+        assertThat(meterRegistry.get("redis.command.latency").tags("command", "GET", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("redis.command.latency").tags("command", "GET", "outcome", "error")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("redis.commands.in_flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void constructor_RegistersLatencyTimersForEveryCommandAndOutcome() {
+        assertThat(meterRegistry.find("redis.command.latency").timers()).hasSize(14);
+        assertThat(meterRegistry.get("redis.command.latency").tags("command", "PIPELINE", "outcome", "error")
+                .timer().count()).isZero();
+    }
+
+    @Test
+    void setPipelined_WithPipelining_SendsConcurrentWritesInOnePipeline() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            SessionCallback<?> callback = invocation.getArgument(0);
+            callback.execute(redisTemplate);
+            flushed.countDown();
+            return List.of();
+        });
+        redisAccess.start();
+
+        CompletableFuture<Void> first = redisAccess.setPipelined("key-1", "value-1", Duration.ofMinutes(1));
+        CompletableFuture<Void> second = redisAccess.setPipelined("key-2", "value-2", Duration.ofMinutes(1));
+
+        assertThat(flushed.await(2, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture.allOf(first, second).get(2, TimeUnit.SECONDS);
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(valueOperations).set("key-1", "value-1", Duration.ofMinutes(1));
+        verify(valueOperations).set("key-2", "value-2", Duration.ofMinutes(1));
+        assertThat(meterRegistry.get("redis.pipeline.size").summary().max()).isEqualTo(2);
+    }
+
+    @Test
+    void setPipelined_WhenPipelineFails_FailsEveryWrite() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new QueryTimeoutException("Redis timeout"));
+        redisAccess.start();
+
+        CompletableFuture<Void> write = redisAccess.setPipelined("key-1", "value-1", Duration.ofMinutes(1));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> write.get(2, TimeUnit.SECONDS));
+        assertThat(failure.getCause()).isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void setPipelined_WithoutPipelining_WritesDirectly() {
+        config.getPipeline().setEnabled(false);
+        redisAccess.start();
+
+        CompletableFuture<Void> write = redisAccess.setPipelined("key-1", "value-1", Duration.ofMinutes(1));
+
+        assertThat(write).isCompleted();
+        verify(valueOperations).set("key-1", "value-1", Duration.ofMinutes(1));
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+}
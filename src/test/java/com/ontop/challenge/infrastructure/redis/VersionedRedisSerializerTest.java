@@ -0,0 +1,131 @@
+package com.ontop.challenge.infrastructure.redis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ontop.challenge.adapters.in.dto.WithdrawalResponse;
+import com.ontop.challenge.domain.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionedRedisSerializerTest {
+
+    private GenericJackson2JsonRedisSerializer jsonSerializer;
+    private VersionedRedisSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.activateDefaultTyping(
+                objectMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.NON_FINAL
+        );
+        jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        serializer = new VersionedRedisSerializer(jsonSerializer, List.of(new WithdrawalResponseCodec()));
+    }
+
+    @Test
+    void withdrawalResponse_RoundTripsThroughBinaryCodec() {
+        WithdrawalResponse response = response();
+
+        byte[] bytes = serializer.serialize(response);
+
+        assertEquals(WithdrawalResponseCodec.TAG, bytes[0]);
+        assertEquals(response, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void readOnlyCodec_WritesJsonButReadsBinary() {
+        VersionedRedisSerializer reader = new VersionedRedisSerializer(
+                jsonSerializer, List.of(new WithdrawalResponseCodec()), false);
+        WithdrawalResponse response = response();
+
+        byte[] written = reader.serialize(response);
+
+        assertTrue(written[0] != WithdrawalResponseCodec.TAG);
+        assertEquals(response, reader.deserialize(written));
+        assertEquals(response, reader.deserialize(serializer.serialize(response)));
+    }
+
+    @Test
+    void withdrawalResponse_WithNullFields_RoundTrips() {
+        WithdrawalResponse response = WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.PENDING)
+                .build();
+
+        WithdrawalResponse decoded = (WithdrawalResponse) serializer.deserialize(serializer.serialize(response));
+
+        assertEquals(response, decoded);
+        assertNull(decoded.getAmount());
+        assertNull(decoded.getCreatedAt());
+    }
+
+    @Test
+    void withdrawalResponse_KeepsRequestFingerprint() {
+        WithdrawalResponse response = response();
+        response.setRequestFingerprint(0x1234_5678_9ABC_DEF0L);
+
+        WithdrawalResponse decoded = (WithdrawalResponse) serializer.deserialize(serializer.serialize(response));
+
+        assertEquals(0x1234_5678_9ABC_DEF0L, decoded.getRequestFingerprint());
+    }
+
+    @Test
+    void binaryEntry_IsSmallerThanJson() {
+        WithdrawalResponse response = response();
+
+        int binary = serializer.serialize(response).length;
+        int json = jsonSerializer.serialize(response).length;
+
+        assertTrue(binary * 3 < json, "binary " + binary + " bytes, json " + json + " bytes");
+    }
+
+    @Test
+    void legacyJsonEntry_IsStillReadable() {
+        WithdrawalResponse response = response();
+        byte[] legacy = jsonSerializer.serialize(response);
+
+        assertEquals(response, serializer.deserialize(legacy));
+    }
+
+    @Test
+    void nonResponseValues_FallBackToJson() {
+        byte[] bytes = serializer.serialize("node|key");
+
+        assertEquals('"', bytes[0]);
+        assertEquals("node|key", serializer.deserialize(bytes));
+    }
+
+    @Test
+    void unknownFormatVersion_Throws() {
+        byte[] bytes = serializer.serialize(response());
+        bytes[1] = 99;
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private WithdrawalResponse response() {
+        return WithdrawalResponse.builder()
+                .transactionId(UUID.randomUUID())
+                .status(TransactionStatus.COMPLETED)
+                .amount(new BigDecimal("1000.00"))
+                .fee(new BigDecimal("100.00"))
+                .netAmount(new BigDecimal("900.00"))
+                .currency("USD")
+                .createdAt(Instant.parse("2025-10-01T12:30:45.123456Z"))
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.ontop.challenge.utils;
+
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentRequest;
+import com.ontop.challenge.adapters.out.client.dto.payment.PaymentResponse;
+import com.ontop.challenge.application.port.out.PaymentsClientPort;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory stand-in for the payment provider that accepts every payment and records each call.
+ */
+public class LocalPaymentsProvider implements PaymentsClientPort {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public PaymentResponse createPayment(PaymentRequest request) {
+        batchSizes.add(1);
+        return accept(request);
+    }
+
+    @Override
+    public List<PaymentResponse> createPayments(List<PaymentRequest> requests) {
+        batchSizes.add(requests.size());
+        return requests.stream().map(this::accept).toList();
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+
+    private PaymentResponse accept(PaymentRequest request) {
+        return PaymentResponse.builder()
+                .requestInfo(PaymentResponse.RequestInfo.builder()
+                        .status("Processing")
+                        .build())
+                .paymentInfo(PaymentResponse.PaymentInfo.builder()
+                        .id(UUID.randomUUID().toString())
+                        .amount(request.getAmount())
+                        .currency(request.getDestination().getAccount().getCurrency())
+                        .build())
+                .build();
+    }
+}